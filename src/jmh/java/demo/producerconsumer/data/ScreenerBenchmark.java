@@ -0,0 +1,88 @@
+package demo.producerconsumer.data;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Compares the marker and hash screeners on the same input. Each invocation screens a batch of numbers
+ * with a new, empty screener, so every invocation sees the same mix of unique numbers and duplicates,
+ * and the result is the time per number. The numbers are generated up front in one of three
+ * distributions:
+ *
+ * - sequential: consecutive numbers, all unique, as from a client counting up.
+ * - random: uniform over the whole input range, almost all unique.
+ * - duplicates: drawn from a small set of values, so almost all are duplicates.
+ *
+ * Creating the marker screener clears its 119 MB of markers, which is done in the setup of each
+ * invocation and so is not measured.
+ */
+@State(Scope.Thread)
+public class ScreenerBenchmark {
+    private static final int BATCH_SIZE = 1_000_000;
+    private static final int DUPLICATE_DISTINCT_VALUES = 10_000;
+
+    @Param({"marker", "hash"})
+    public String screener;
+
+    @Param({"sequential", "random", "duplicates"})
+    public String distribution;
+
+    private int[] numbers;
+    private UniqueDataScreener underTest;
+
+    @Setup(Level.Trial)
+    public void createNumbers() {
+        Random random = new Random(42);
+        int firstNumber = random.nextInt(ApplicationConstants.MAX_INPUT_VALUE_INTEGER - BATCH_SIZE);
+        numbers = new int[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            switch (distribution) {
+                case "sequential":
+                    numbers[i] = firstNumber + i;
+                    break;
+                case "random":
+                    numbers[i] = random.nextInt(ApplicationConstants.MAX_INPUT_VALUE_INTEGER + 1);
+                    break;
+                case "duplicates":
+                    numbers[i] = firstNumber + random.nextInt(DUPLICATE_DISTINCT_VALUES);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown distribution: " + distribution);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createScreener() {
+        switch (screener) {
+            case "marker":
+                underTest = new UniqueDataScreenerMarkerImpl();
+                break;
+            case "hash":
+                underTest = new UniqueDataScreenerHashImpl();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown screener: " + screener);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int isUnique() {
+        int uniques = 0;
+        for (int number : numbers) {
+            if (underTest.isUnique(number)) {
+                uniques++;
+            }
+        }
+        return uniques;
+    }
+}
@@ -0,0 +1,71 @@
+package demo.producerconsumer.logging;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.data.UniqueDataScreenerPassThroughImpl;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of logging numbers, with the log written to a null sink so that only the logger itself is
+ * measured: encoding each number into the output buffer, and handing full buffers to the log writer.
+ * Every number is unique, so every number is encoded.
+ *
+ * - logNumber: one number per call, with the buffer handed over every logBatchSize numbers.
+ * - logNumbersAndFlush: a batch the size the consumer drains at once, logged in one call and then
+ *   flushed, so each flush hands over a partial buffer. The result is per number.
+ */
+@State(Scope.Thread)
+public class NumberLoggerBenchmark {
+    private static final int DRAIN_BATCH_SIZE = ApplicationConstants.CONSUMER_DRAIN_BATCH_SIZE;
+
+    @Param({"text", "binary"})
+    public String logFormat;
+
+    @Param({"100000"})
+    public int logBatchSize;
+
+    private NumberLogger underTest;
+    private int[] batch;
+    private int nextNumber;
+
+    @Setup
+    public void createLogger() {
+        LogEncoder logEncoder;
+        switch (logFormat) {
+            case "text":
+                logEncoder = new TextLogEncoder();
+                break;
+            case "binary":
+                logEncoder = new BinaryLogEncoder(logBatchSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown log format: " + logFormat);
+        }
+        LogWriter logWriter = new LogWriter(NullOutputStream.NULL_OUTPUT_STREAM, 1, LogDurability.NONE,
+                logEncoder.getFileHeader());
+        underTest = new NumberLogger(logWriter, new UniqueDataScreenerPassThroughImpl(), logBatchSize, null, logEncoder,
+                null);
+        batch = new int[DRAIN_BATCH_SIZE];
+        for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+            batch[i] = i * 7919 % (ApplicationConstants.MAX_INPUT_VALUE_INTEGER + 1);
+        }
+    }
+
+    @Benchmark
+    public void logNumber() {
+        underTest.logNumber(nextNumber);
+        nextNumber = nextNumber == ApplicationConstants.MAX_INPUT_VALUE_INTEGER ? 0 : nextNumber + 1;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAIN_BATCH_SIZE)
+    public void logNumbersAndFlush() {
+        underTest.logNumbers(batch, 0, DRAIN_BATCH_SIZE);
+        underTest.flushLog();
+    }
+}
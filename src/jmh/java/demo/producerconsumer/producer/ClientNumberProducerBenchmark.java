@@ -0,0 +1,155 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.logging.NumberReport;
+import demo.producerconsumer.queue.NumberQueue;
+import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
+import demo.producerconsumer.server.signalling.TerminateSignalSender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Cost per number of a client connection's processInput(): parsing each read into a chunk, counting the
+ * numbers in the connection's metrics and publishing the chunk. Each invocation runs a connection over
+ * the same pre-encoded input, read from memory in reads of up to the server's read buffer size, so the
+ * only work besides processInput() is copying the input into the read buffer. Records are split
+ * across reads, as they would be on a socket.
+ *
+ * Numbers are published to a queue that discards them, so the result does not depend on a consumer
+ * keeping up.
+ */
+@State(Scope.Thread)
+public class ClientNumberProducerBenchmark {
+    private static final int RECORDS_PER_CONNECTION = 100_000;
+
+    private ClientNumberProducer underTest;
+    private NumberPublisher numberPublisher;
+
+    @Setup
+    public void createProducer() throws IOException {
+        Random random = new Random(42);
+        StringBuilder input = new StringBuilder(RECORDS_PER_CONNECTION * 10);
+        for (int i = 0; i < RECORDS_PER_CONNECTION; i++) {
+            input.append(String.format("%09d", random.nextInt(ApplicationConstants.MAX_INPUT_VALUE_INTEGER + 1)))
+                    .append('\n');
+        }
+        numberPublisher = new NumberPublisher(new DiscardingNumberQueue());
+        underTest = new ClientNumberProducer(new InMemorySocket(input.toString().getBytes(StandardCharsets.US_ASCII)),
+                numberPublisher, new IgnoredTerminateSignalSender());
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportConnections() {
+        // Drops the metrics of the connections that have closed
+        numberPublisher.getPipelineMetrics().getReport(new NumberReport(0, 0, 0));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS_PER_CONNECTION)
+    public void processInput() {
+        underTest.doRun();
+    }
+
+    /**
+     * Socket that serves the same input every time it is read to the end, and is never closed.
+     */
+    private static class InMemorySocket extends Socket {
+        private final InputStream inputStream;
+
+        InMemorySocket(byte[] input) {
+            this.inputStream = new RepeatingInputStream(input);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        @Override
+        public synchronized void close() {
+        }
+    }
+
+    /**
+     * Stream that reaches the end of the input, then starts again from the beginning on the next read.
+     */
+    private static class RepeatingInputStream extends InputStream {
+        private final byte[] input;
+        private int position;
+
+        RepeatingInputStream(byte[] input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() {
+            if (position == input.length) {
+                position = 0;
+                return -1;
+            }
+            return input[position++];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == input.length) {
+                position = 0;
+                return -1;
+            }
+            int bytesRead = Math.min(length, input.length - position);
+            System.arraycopy(input, position, buffer, offset, bytesRead);
+            position += bytesRead;
+            return bytesRead;
+        }
+    }
+
+    /**
+     * The input has no terminate command, so there is never a signal to send.
+     */
+    private static class IgnoredTerminateSignalSender implements TerminateSignalSender {
+        @Override
+        public void signalServerStop() {
+        }
+
+        @Override
+        public void registerSignalReceiver(TerminateSignalReceiver receiver) {
+        }
+
+        @Override
+        public void unregisterSignalReceiver(TerminateSignalReceiver receiver) {
+        }
+    }
+
+    private static class DiscardingNumberQueue implements NumberQueue {
+        @Override
+        public boolean offer(int number) {
+            return true;
+        }
+
+        @Override
+        public int offerBatch(int[] numbers, int offset, int length) {
+            return length;
+        }
+
+        @Override
+        public int drainTo(int[] target, int offset, int maxNumbers) {
+            return 0;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
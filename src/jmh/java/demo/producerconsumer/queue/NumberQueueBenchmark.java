@@ -0,0 +1,140 @@
+package demo.producerconsumer.queue;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Throughput of the shared queue with 1 to 5 producer threads offering numbers one at a time, and the
+ * single consumer thread draining them in batches the size the consumer uses, as the server does.
+ * Each group of threads shares one queue. The offer result is the number of numbers each producer
+ * queues per second, and the drain result the number of batches drained per second, which can be empty.
+ *
+ * The linked queue is unbounded, so its producers stop offering while it holds more numbers than the
+ * default capacity of the ring buffer, as the server's backpressure would make them, rather than
+ * filling the heap when the consumer falls behind.
+ */
+@State(Scope.Group)
+public class NumberQueueBenchmark {
+    @Param({"ring", "linked"})
+    public String queueType;
+
+    private NumberQueue queue;
+    private boolean unbounded;
+
+    @Setup
+    public void createQueue() {
+        switch (queueType) {
+            case "ring":
+                queue = new IntRingBuffer(ApplicationConstants.DEFAULT_QUEUE_CAPACITY);
+                break;
+            case "linked":
+                queue = new LinkedNumberQueue();
+                unbounded = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown queue type: " + queueType);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConsumerState {
+        final int[] drainBuffer = new int[ApplicationConstants.CONSUMER_DRAIN_BATCH_SIZE];
+    }
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+        int nextNumber;
+    }
+
+    private boolean offer(ProducerState producer, Control control) {
+        int number = producer.nextNumber++;
+        while (!control.stopMeasurement) {
+            if ((!unbounded || queue.size() < ApplicationConstants.DEFAULT_QUEUE_CAPACITY) && queue.offer(number)) {
+                return true;
+            }
+            Thread.yield();
+        }
+        return false;
+    }
+
+    private int drain(ConsumerState consumer) {
+        return queue.drainTo(consumer.drainBuffer, 0, consumer.drainBuffer.length);
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public boolean offer1(ProducerState producer, Control control) {
+        return offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public int drain1(ConsumerState consumer) {
+        return drain(consumer);
+    }
+
+    @Benchmark
+    @Group("producers2")
+    @GroupThreads(2)
+    public boolean offer2(ProducerState producer, Control control) {
+        return offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("producers2")
+    @GroupThreads(1)
+    public int drain2(ConsumerState consumer) {
+        return drain(consumer);
+    }
+
+    @Benchmark
+    @Group("producers3")
+    @GroupThreads(3)
+    public boolean offer3(ProducerState producer, Control control) {
+        return offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("producers3")
+    @GroupThreads(1)
+    public int drain3(ConsumerState consumer) {
+        return drain(consumer);
+    }
+
+    @Benchmark
+    @Group("producers4")
+    @GroupThreads(4)
+    public boolean offer4(ProducerState producer, Control control) {
+        return offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("producers4")
+    @GroupThreads(1)
+    public int drain4(ConsumerState consumer) {
+        return drain(consumer);
+    }
+
+    @Benchmark
+    @Group("producers5")
+    @GroupThreads(5)
+    public boolean offer5(ProducerState producer, Control control) {
+        return offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("producers5")
+    @GroupThreads(1)
+    public int drain5(ConsumerState consumer) {
+        return drain(consumer);
+    }
+}
@@ -1,54 +1,281 @@
 package demo.producerconsumer;
 
+import demo.producerconsumer.config.ApplicationConfig;
 import demo.producerconsumer.constants.ApplicationConstants;
 import demo.producerconsumer.consumer.NumberMessageConsumer;
+import demo.producerconsumer.consumer.wait.BlockingWaitStrategy;
+import demo.producerconsumer.consumer.wait.BusySpinWaitStrategy;
+import demo.producerconsumer.consumer.wait.ParkingWaitStrategy;
+import demo.producerconsumer.consumer.wait.WaitStrategy;
+import demo.producerconsumer.consumer.wait.YieldingWaitStrategy;
+import demo.producerconsumer.data.PersistableDataScreener;
+import demo.producerconsumer.data.ScreeningMode;
+import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.data.UniqueDataScreenerCompressedImpl;
+import demo.producerconsumer.data.UniqueDataScreenerConcurrentImpl;
+import demo.producerconsumer.data.UniqueDataScreenerMappedImpl;
 import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.data.UniqueDataScreenerPassThroughImpl;
+import demo.producerconsumer.data.UniqueDataScreenerSliceImpl;
+import demo.producerconsumer.logging.AsyncLogWriter;
+import demo.producerconsumer.logging.BinaryLogEncoder;
+import demo.producerconsumer.logging.LogDurability;
+import demo.producerconsumer.logging.LogEncoder;
+import demo.producerconsumer.logging.LogFormat;
+import demo.producerconsumer.logging.LogRotateTask;
+import demo.producerconsumer.logging.LogSegments;
+import demo.producerconsumer.logging.LogSyncTask;
+import demo.producerconsumer.logging.LogWriter;
 import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.logging.SortedLogExporter;
+import demo.producerconsumer.logging.TextLogEncoder;
+import demo.producerconsumer.metrics.PipelineMetrics;
+import demo.producerconsumer.metrics.ServerMetrics;
+import demo.producerconsumer.metrics.StageLatencies;
+import demo.producerconsumer.persistence.CheckpointStore;
+import demo.producerconsumer.persistence.CheckpointTask;
+import demo.producerconsumer.persistence.ScreenerRecovery;
+import demo.producerconsumer.producer.BackpressureGate;
+import demo.producerconsumer.producer.NumberPublisher;
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.LinkedNumberQueue;
+import demo.producerconsumer.queue.NumberQueue;
+import demo.producerconsumer.queue.QueueType;
+import demo.producerconsumer.queue.ShardRouter;
+import demo.producerconsumer.server.ConnectionListener;
+import demo.producerconsumer.server.ConnectionMode;
+import demo.producerconsumer.server.MetricsHttpServer;
+import demo.producerconsumer.server.NioConnectionListener;
 import demo.producerconsumer.server.ServerConnectionListener;
 import demo.producerconsumer.server.ServerReporter;
+import demo.producerconsumer.server.signalling.TerminateSignalSender;
 import demo.producerconsumer.server.signalling.TerminateSignalSenderImpl;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Queue;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Timer;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
 
 public class Application {
     public static void main(String[] args) throws IOException {
         // In a production app, most of this logic would be delegated to a builder or framework that
         // wires everything together.
+        ApplicationConfig config = ApplicationConfig.fromSystemProperties();
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
-        NumberLogger logger = new NumberLogger(new FileOutputStream(ApplicationConstants.LOGFILE_NAME),
-                new UniqueDataScreenerMarkerImpl(), ApplicationConstants.DEFAULT_BATCH_WRITE_NUM);
+        // Each consumer shard has its own queue, wait strategy and logger, and all of the loggers share
+        // one writer for the log file. With a single shard, every number goes to the one consumer.
+        int shardCount = config.getConsumerShards();
+        ShardRouter shardRouter = shardCount > 1
+                ? new ShardRouter(shardCount, ApplicationConstants.MAX_INPUT_VALUE_INTEGER) : null;
+        UniqueDataScreener[] loggerScreeners = new UniqueDataScreener[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            loggerScreeners[shard] = createLoggerScreener(config, shardRouter, shard);
+        }
+
+        // With persistence, the screener is restored to match the existing log, which is appended to
+        // instead of being replaced. The config only allows this with a single consumer-side screener.
+        CheckpointStore checkpointStore = null;
+        if (config.isPersistence()) {
+            checkpointStore = new CheckpointStore(Paths.get(config.getCheckpointFile()));
+            new ScreenerRecovery(Paths.get(ApplicationConstants.LOGFILE_NAME), checkpointStore)
+                    .recover((PersistableDataScreener) loggerScreeners[0]);
+        }
+        LogWriter logWriter = createLogWriter(config, shardCount);
+
+        NumberQueue[] shardQueues = new NumberQueue[shardCount];
+        WaitStrategy[] consumerWaitStrategies = new WaitStrategy[shardCount];
+        NumberLogger[] shardLoggers = new NumberLogger[shardCount];
+        NumberMessageConsumer[] consumers = new NumberMessageConsumer[shardCount];
+        StageLatencies stageLatencies = new StageLatencies(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shardQueues[shard] = createNumberQueue(config);
+            consumerWaitStrategies[shard] = createWaitStrategy(config);
+            shardLoggers[shard] = new NumberLogger(logWriter, loggerScreeners[shard],
+                    ApplicationConstants.DEFAULT_BATCH_WRITE_NUM, checkpointStore, createLogEncoder(config),
+                    stageLatencies.getBufferResidency());
+            consumers[shard] = new NumberMessageConsumer(shardQueues[shard], shardLoggers[shard],
+                    consumerWaitStrategies[shard], stageLatencies.getQueueWaitProbe(shard),
+                    stageLatencies.getDedupLatency());
+        }
 
         TerminateSignalSenderImpl terminateServerSignaller = new TerminateSignalSenderImpl();
-        NumberMessageConsumer consumer = new NumberMessageConsumer(sharedNumberQueue, logger);
-        ServerConnectionListener connectionListener = new ServerConnectionListener(sharedNumberQueue, terminateServerSignaller);
-        terminateServerSignaller.registerSignalReceiver(consumer);
+        BackpressureGate backpressureGate = new BackpressureGate(shardQueues,
+                config.getQueueHighWatermark(), config.getQueueLowWatermark());
+        // When producers screen their own input, only unique numbers reach the loggers
+        PersistableDataScreener producerScreener = config.getScreeningMode() == ScreeningMode.PRODUCER
+                ? new UniqueDataScreenerConcurrentImpl() : null;
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(shardLoggers, shardQueues, stageLatencies);
+        NumberPublisher numberPublisher = new NumberPublisher(shardQueues, consumerWaitStrategies, shardRouter,
+                backpressureGate, producerScreener, shardLoggers[0], pipelineMetrics);
+        ConnectionListener connectionListener = createConnectionListener(config, numberPublisher, terminateServerSignaller);
+        for (NumberMessageConsumer consumer : consumers) {
+            terminateServerSignaller.registerSignalReceiver(consumer);
+        }
+        terminateServerSignaller.registerSignalReceiver(numberPublisher);
         terminateServerSignaller.registerSignalReceiver(connectionListener);
 
         // Add the metrics reporter to the timer on a 10-second schedule
         Timer reportTimer = new Timer();
-        ServerReporter reporter = new ServerReporter(logger);
+        ServerReporter reporter = new ServerReporter(shardLoggers, consumerWaitStrategies, backpressureGate,
+                logWriter, loggerScreeners, pipelineMetrics);
         reportTimer.schedule(reporter, ApplicationConstants.SERVER_REPORT_INTERVAL_MS,
                 ApplicationConstants.SERVER_REPORT_INTERVAL_MS);
+        // Checkpoint on the same timer, the final checkpoint is saved when the consumer closes the log
+        if (checkpointStore != null) {
+            long checkpointIntervalMs = TimeUnit.SECONDS.toMillis(config.getCheckpointIntervalSeconds());
+            reportTimer.schedule(new CheckpointTask(shardLoggers[0]), checkpointIntervalMs, checkpointIntervalMs);
+        }
+        // Group commit, one fsync covers every batch written since the last one
+        if (config.getLogDurability() == LogDurability.INTERVAL) {
+            reportTimer.schedule(new LogSyncTask(logWriter), config.getLogSyncIntervalMs(), config.getLogSyncIntervalMs());
+        }
+        // Close a segment that has been open too long even if no batch comes to close it
+        if (config.getLogSegmentSeconds() > 0) {
+            reportTimer.schedule(new LogRotateTask(shardLoggers, logWriter),
+                    ApplicationConstants.LOG_ROTATE_CHECK_INTERVAL_MS, ApplicationConstants.LOG_ROTATE_CHECK_INTERVAL_MS);
+        }
+
+        // The same metrics are polled over JMX, and scraped over HTTP when a metrics port is set
+        ServerMetrics serverMetrics = new ServerMetrics(shardLoggers, consumerWaitStrategies, backpressureGate,
+                logWriter, pipelineMetrics);
+        try {
+            serverMetrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        if (config.getMetricsPort() > 0) {
+            MetricsHttpServer metricsHttpServer = new MetricsHttpServer(config.getMetricsPort(), serverMetrics);
+            terminateServerSignaller.registerSignalReceiver(metricsHttpServer);
+            metricsHttpServer.start();
+        }
 
-        // Start the consumer thread
-        consumer.startConsumer();
+        // Start the consumer threads
+        for (NumberMessageConsumer consumer : consumers) {
+            consumer.startConsumer();
+        }
         // Start the listener and block until the server is ready to terminate
         connectionListener.listenForClients();
 
         // Cleanly close out resources and wait for associated threads to finish
         reportTimer.cancel();
-        consumer.waitForConsumerToFinish();
+        for (NumberMessageConsumer consumer : consumers) {
+            consumer.waitForConsumerToFinish();
+        }
         terminateServerSignaller.shutdownSignalSender();
         // Run the reporter to output the last of the metrics
         reporter.run();
+        if (config.isSortedExport()) {
+            exportSortedLog(config, loggerScreeners);
+        }
 
         // This should not be necessary as everything has already been verified as cleaned up and
         // shut down by this point, but making an explicit exit call just in case.
         System.exit(0);
     }
+
+    /**
+     * Write every unique number to the sorted log, from the logger screeners of each shard's slice in order,
+     * which have marked exactly the numbers that were logged.
+     */
+    private static void exportSortedLog(ApplicationConfig config, UniqueDataScreener[] loggerScreeners) {
+        List<SortedLogExporter.MarkerSlice> slices = SortedLogExporter.slicesOf(loggerScreeners);
+        long startTime = System.nanoTime();
+        try {
+            long exported = new SortedLogExporter(config.getLogFormat())
+                    .export(slices, Paths.get(ApplicationConstants.SORTED_LOGFILE_NAME));
+            System.out.println("Exported " + exported + " numbers in sorted order to "
+                    + ApplicationConstants.SORTED_LOGFILE_NAME + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static NumberQueue createNumberQueue(ApplicationConfig config) {
+        if (config.getQueueType() == QueueType.LINKED) {
+            return new LinkedNumberQueue();
+        }
+        return new IntRingBuffer(config.getQueueCapacity());
+    }
+
+    private static LogWriter createLogWriter(ApplicationConfig config, int shardCount) throws IOException {
+        int buffers = config.getLogWriterBuffers();
+        byte[] fileHeader = createLogEncoder(config).getFileHeader();
+        if (config.isLogSegmented()) {
+            LogSegments segments = new LogSegments(Paths.get(ApplicationConstants.LOGFILE_NAME),
+                    (long) config.getLogSegmentSizeMb() * ApplicationConstants.BYTES_PER_MEGABYTE,
+                    TimeUnit.SECONDS.toMillis(config.getLogSegmentSeconds()), config.getLogSegmentCompression());
+            return buffers > 1 ? new AsyncLogWriter(segments, shardCount, buffers, config.getLogDurability(), fileHeader)
+                    : new LogWriter(segments, shardCount, config.getLogDurability(), fileHeader);
+        }
+
+        FileOutputStream logFileStream = new FileOutputStream(ApplicationConstants.LOGFILE_NAME, config.isPersistence());
+        return buffers > 1 ? new AsyncLogWriter(logFileStream, shardCount, buffers, config.getLogDurability(), fileHeader)
+                : new LogWriter(logFileStream, shardCount, config.getLogDurability(), fileHeader);
+    }
+
+    private static LogEncoder createLogEncoder(ApplicationConfig config) {
+        if (config.getLogFormat() == LogFormat.BINARY) {
+            return new BinaryLogEncoder(ApplicationConstants.DEFAULT_BATCH_WRITE_NUM);
+        }
+        return new TextLogEncoder();
+    }
+
+    private static UniqueDataScreener createLoggerScreener(ApplicationConfig config, ShardRouter shardRouter,
+                                                           int shard) throws IOException {
+        // Numbers the producers have screened may still be queued on terminate, so for a sorted export
+        // that matches the log, the loggers mark what they actually log
+        if (config.getScreeningMode() == ScreeningMode.PRODUCER && !config.isSortedExport()) {
+            return new UniqueDataScreenerPassThroughImpl();
+        }
+        if (shardRouter == null) {
+            return createMarkerScreener(config, config.getScreenerFile(), ApplicationConstants.MAX_INPUT_VALUE_INTEGER);
+        }
+        // Each shard only needs markers for its own slice of the range
+        int firstValue = shardRouter.firstValue(shard);
+        return new UniqueDataScreenerSliceImpl(firstValue, createMarkerScreener(config,
+                config.getScreenerFile() + "." + shard, shardRouter.lastValue(shard) - firstValue));
+    }
+
+    private static UniqueDataScreener createMarkerScreener(ApplicationConfig config, String screenerFile,
+                                                           int maxValue) throws IOException {
+        switch (config.getScreenerStorage()) {
+            case MAPPED:
+                return new UniqueDataScreenerMappedImpl(Paths.get(screenerFile), maxValue);
+            case COMPRESSED:
+                return new UniqueDataScreenerCompressedImpl(maxValue);
+            default:
+                return new UniqueDataScreenerMarkerImpl(maxValue);
+        }
+    }
+
+    private static WaitStrategy createWaitStrategy(ApplicationConfig config) {
+        long maxParkNanos = TimeUnit.MICROSECONDS.toNanos(config.getWaitMaxParkMicros());
+        switch (config.getWaitStrategy()) {
+            case YIELDING:
+                return new YieldingWaitStrategy(config.getWaitSpinTries());
+            case PARKING:
+                long minParkNanos = TimeUnit.MICROSECONDS.toNanos(
+                        Math.min(ApplicationConstants.WAIT_MIN_PARK_MICROS, config.getWaitMaxParkMicros()));
+                return new ParkingWaitStrategy(config.getWaitSpinTries(), minParkNanos, maxParkNanos);
+            case BLOCKING:
+                return new BlockingWaitStrategy(config.getWaitSpinTries(), maxParkNanos);
+            default:
+                return new BusySpinWaitStrategy();
+        }
+    }
+
+    private static ConnectionListener createConnectionListener(ApplicationConfig config, NumberPublisher numberPublisher,
+                                                               TerminateSignalSender terminateSignalSender) throws IOException {
+        if (config.getConnectionMode() == ConnectionMode.NIO) {
+            return new NioConnectionListener(numberPublisher, terminateSignalSender,
+                    config.getEventLoopThreads(), config.getMaxActiveReads());
+        }
+        return new ServerConnectionListener(numberPublisher, terminateSignalSender, config.getMaxActiveReads(),
+                config.getConnectionMode() == ConnectionMode.VIRTUAL_THREADS);
+    }
 }
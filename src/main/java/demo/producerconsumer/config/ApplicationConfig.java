@@ -0,0 +1,353 @@
+package demo.producerconsumer.config;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.consumer.wait.WaitStrategyType;
+import demo.producerconsumer.data.ScreenerStorage;
+import demo.producerconsumer.data.ScreeningMode;
+import demo.producerconsumer.logging.LogDurability;
+import demo.producerconsumer.logging.LogFormat;
+import demo.producerconsumer.logging.SegmentCompression;
+import demo.producerconsumer.queue.QueueType;
+import demo.producerconsumer.server.ConnectionMode;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Startup options for the server. Each option is read from a system property prefixed with
+ * 'producerconsumer.' (for example -Dproducerconsumer.connectionMode=nio), and falls back to the
+ * default in ApplicationConstants when the property is not set. Invalid values cause an
+ * IllegalArgumentException so that a misconfigured server fails on startup instead of running
+ * with settings the operator did not ask for.
+ */
+public final class ApplicationConfig {
+    private static final String PROPERTY_PREFIX = "producerconsumer.";
+
+    private final ConnectionMode connectionMode;
+    private final int maxActiveReads;
+    private final int eventLoopThreads;
+    private final QueueType queueType;
+    private final int queueCapacity;
+    private final int queueHighWatermark;
+    private final int queueLowWatermark;
+    private final WaitStrategyType waitStrategy;
+    private final int waitSpinTries;
+    private final int waitMaxParkMicros;
+    private final ScreeningMode screeningMode;
+    private final int consumerShards;
+    private final ScreenerStorage screenerStorage;
+    private final String screenerFile;
+    private final boolean persistence;
+    private final int checkpointIntervalSeconds;
+    private final String checkpointFile;
+    private final int logWriterBuffers;
+    private final LogDurability logDurability;
+    private final int logSyncIntervalMs;
+    private final int logSegmentSizeMb;
+    private final int logSegmentSeconds;
+    private final SegmentCompression logSegmentCompression;
+    private final LogFormat logFormat;
+    private final boolean sortedExport;
+    private final int metricsPort;
+
+    ApplicationConfig(Properties properties) {
+        this.connectionMode = readEnum(properties, "connectionMode", ConnectionMode.class, ConnectionMode.THREAD_POOL);
+        this.maxActiveReads = readPositiveInt(properties, "maxActiveReads", ApplicationConstants.MAX_CLIENT_THREADS);
+        this.eventLoopThreads = readPositiveInt(properties, "eventLoopThreads", ApplicationConstants.NIO_EVENT_LOOP_THREADS);
+        this.queueType = readEnum(properties, "queueType", QueueType.class, QueueType.RING);
+        this.queueCapacity = readPositiveInt(properties, "queueCapacity", ApplicationConstants.DEFAULT_QUEUE_CAPACITY);
+        this.queueHighWatermark = readPositiveInt(properties, "queueHighWatermark",
+                percentOf(queueCapacity, ApplicationConstants.QUEUE_HIGH_WATERMARK_PERCENT));
+        this.queueLowWatermark = readPositiveInt(properties, "queueLowWatermark",
+                percentOf(queueCapacity, ApplicationConstants.QUEUE_LOW_WATERMARK_PERCENT));
+        if (queueHighWatermark > queueCapacity || queueLowWatermark >= queueHighWatermark) {
+            throw new IllegalArgumentException(PROPERTY_PREFIX + "queueLowWatermark must be less than "
+                    + PROPERTY_PREFIX + "queueHighWatermark, which must not exceed " + PROPERTY_PREFIX + "queueCapacity");
+        }
+        this.waitStrategy = readEnum(properties, "waitStrategy", WaitStrategyType.class, WaitStrategyType.BUSY_SPIN);
+        this.waitSpinTries = readPositiveInt(properties, "waitSpinTries", ApplicationConstants.WAIT_SPIN_TRIES);
+        this.waitMaxParkMicros = readPositiveInt(properties, "waitMaxParkMicros", ApplicationConstants.WAIT_MAX_PARK_MICROS);
+        this.screeningMode = readEnum(properties, "screeningMode", ScreeningMode.class, ScreeningMode.CONSUMER);
+        this.consumerShards = readPositiveInt(properties, "consumerShards", ApplicationConstants.CONSUMER_SHARDS);
+        this.screenerStorage = readEnum(properties, "screenerStorage", ScreenerStorage.class, ScreenerStorage.HEAP);
+        this.screenerFile = readString(properties, "screenerFile", ApplicationConstants.SCREENER_FILE_NAME);
+        this.persistence = readBoolean(properties, "persistence", false);
+        this.checkpointIntervalSeconds = readPositiveInt(properties, "checkpointIntervalSeconds",
+                ApplicationConstants.CHECKPOINT_INTERVAL_SECONDS);
+        this.checkpointFile = readString(properties, "checkpointFile", ApplicationConstants.CHECKPOINT_FILE_NAME);
+        this.logWriterBuffers = readPositiveInt(properties, "logWriterBuffers", ApplicationConstants.LOG_WRITER_BUFFERS);
+        this.logDurability = readEnum(properties, "logDurability", LogDurability.class, LogDurability.NONE);
+        this.logSyncIntervalMs = readPositiveInt(properties, "logSyncIntervalMs", ApplicationConstants.LOG_SYNC_INTERVAL_MS);
+        // Segmenting is off unless a size or time limit is set
+        this.logSegmentSizeMb = readPositiveInt(properties, "logSegmentSizeMb", 0);
+        this.logSegmentSeconds = readPositiveInt(properties, "logSegmentSeconds", 0);
+        this.logSegmentCompression = readEnum(properties, "logSegmentCompression", SegmentCompression.class,
+                SegmentCompression.GZIP);
+        this.logFormat = readEnum(properties, "logFormat", LogFormat.class, LogFormat.TEXT);
+        this.sortedExport = readBoolean(properties, "sortedExport", false);
+        this.metricsPort = readPositiveInt(properties, "metricsPort", 0);
+        if (persistence && (consumerShards != 1 || screeningMode != ScreeningMode.CONSUMER)) {
+            throw new IllegalArgumentException(PROPERTY_PREFIX + "persistence requires a single consumer shard and "
+                    + PROPERTY_PREFIX + "screeningMode=consumer");
+        }
+        if (persistence && isLogSegmented()) {
+            throw new IllegalArgumentException(PROPERTY_PREFIX + "persistence can not be used with a segmented log");
+        }
+        if (persistence && logFormat != LogFormat.TEXT) {
+            throw new IllegalArgumentException(PROPERTY_PREFIX + "persistence requires " + PROPERTY_PREFIX + "logFormat=text");
+        }
+    }
+
+    public static ApplicationConfig fromSystemProperties() {
+        return new ApplicationConfig(System.getProperties());
+    }
+
+    /**
+     * The engine used to accept client connections and read their input.
+     */
+    public ConnectionMode getConnectionMode() {
+        return connectionMode;
+    }
+
+    /**
+     * The maximum number of client connections that may have input read and processed at the
+     * same time.
+     */
+    public int getMaxActiveReads() {
+        return maxActiveReads;
+    }
+
+    /**
+     * The number of selector threads used when running in NIO connection mode.
+     */
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * The implementation of the queue between the client producers and the log consumer.
+     */
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    /**
+     * The number of numbers a bounded queue can hold. Must be a power of two for the ring buffer.
+     * The linked queue is bounded to this size by the backpressure watermarks instead.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * The queue size at which producers stop reading from their connections.
+     */
+    public int getQueueHighWatermark() {
+        return queueHighWatermark;
+    }
+
+    /**
+     * The queue size at which producers that were stopped by the high watermark resume reading.
+     */
+    public int getQueueLowWatermark() {
+        return queueLowWatermark;
+    }
+
+    /**
+     * How the log consumer waits when the queue is empty.
+     */
+    public WaitStrategyType getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * How many times the consumer spins on an empty queue before yielding, parking or blocking.
+     */
+    public int getWaitSpinTries() {
+        return waitSpinTries;
+    }
+
+    /**
+     * The longest the consumer parks or blocks before polling the queue again.
+     */
+    public int getWaitMaxParkMicros() {
+        return waitMaxParkMicros;
+    }
+
+    /**
+     * Which threads check incoming numbers for duplicates.
+     */
+    public ScreeningMode getScreeningMode() {
+        return screeningMode;
+    }
+
+    /**
+     * The number of consumer threads, each of which logs its own slice of the value range.
+     */
+    public int getConsumerShards() {
+        return consumerShards;
+    }
+
+    /**
+     * Where the consumer keeps its duplicate markers.
+     */
+    public ScreenerStorage getScreenerStorage() {
+        return screenerStorage;
+    }
+
+    /**
+     * The file mapped for the duplicate markers when they are kept off the heap. Each consumer shard
+     * maps its own file, named with the shard number appended.
+     */
+    public String getScreenerFile() {
+        return screenerFile;
+    }
+
+    /**
+     * Whether the log and the duplicate markers are kept across restarts, instead of starting empty.
+     */
+    public boolean isPersistence() {
+        return persistence;
+    }
+
+    /**
+     * How often the duplicate markers are checkpointed when persistence is enabled.
+     */
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    /**
+     * The file the duplicate markers are checkpointed to.
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * The number of output buffers each logging thread has. With more than one, full buffers are
+     * written to the log file on a separate thread while logging carries on in an empty one.
+     */
+    public int getLogWriterBuffers() {
+        return logWriterBuffers;
+    }
+
+    /**
+     * When the log file is forced out to disk.
+     */
+    public LogDurability getLogDurability() {
+        return logDurability;
+    }
+
+    /**
+     * How often the log file is forced out to disk in the interval durability mode.
+     */
+    public int getLogSyncIntervalMs() {
+        return logSyncIntervalMs;
+    }
+
+    /**
+     * Whether the log is split into segment files, which it is when a segment size or time limit is set.
+     */
+    public boolean isLogSegmented() {
+        return logSegmentSizeMb > 0 || logSegmentSeconds > 0;
+    }
+
+    /**
+     * The size in megabytes a log segment may grow to before the next one is started, or 0 for no limit.
+     */
+    public int getLogSegmentSizeMb() {
+        return logSegmentSizeMb;
+    }
+
+    /**
+     * The time in seconds a log segment is written to before the next one is started, or 0 for no limit.
+     */
+    public int getLogSegmentSeconds() {
+        return logSegmentSeconds;
+    }
+
+    /**
+     * How closed log segments are compressed.
+     */
+    public SegmentCompression getLogSegmentCompression() {
+        return logSegmentCompression;
+    }
+
+    /**
+     * How numbers are encoded in the log file.
+     */
+    public LogFormat getLogFormat() {
+        return logFormat;
+    }
+
+    /**
+     * Whether every unique number is written to a sorted log on terminate, read from the duplicate markers.
+     */
+    public boolean isSortedExport() {
+        return sortedExport;
+    }
+
+    /**
+     * The local port metrics are served on over HTTP in the Prometheus text format, or 0 to not serve them.
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    private static int percentOf(int value, int percent) {
+        return Math.max(1, (int) ((long) value * percent / 100));
+    }
+
+    private static int readPositiveInt(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(PROPERTY_PREFIX + name + " must be a positive integer, was: " + value);
+    }
+
+    private static boolean readBoolean(Properties properties, String name, boolean defaultValue) {
+        String value = properties.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.trim().equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.trim().equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException(PROPERTY_PREFIX + name + " must be true or false, was: " + value);
+    }
+
+    private static String readString(Properties properties, String name, String defaultValue) {
+        String value = properties.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.trim().isEmpty()) {
+            throw new IllegalArgumentException(PROPERTY_PREFIX + name + " must not be empty");
+        }
+        return value.trim();
+    }
+
+    private static <T extends Enum<T>> T readEnum(Properties properties, String name, Class<T> type, T defaultValue) {
+        String value = properties.getProperty(PROPERTY_PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(PROPERTY_PREFIX + name + " has an unknown value: " + value, e);
+        }
+    }
+}
@@ -6,9 +6,29 @@ public final class ApplicationConstants {
     // In a production app, these would all be configurable properties
     public static final int SERVER_PORT = 4000;
     public static final int MAX_CLIENT_THREADS = 5;
+    public static final int NIO_EVENT_LOOP_THREADS = 2;
     public static final int SERVER_REPORT_INTERVAL_MS = 10000;
     public static final int DEFAULT_BATCH_WRITE_NUM = 100000;
     public static final int THREADPOOL_EXPECTED_SHUTDOWN_TIME_MS = 1000;
     public static final int MAX_INPUT_VALUE_INTEGER = 999999999;
+    public static final int CLIENT_READ_BUFFER_SIZE = 65536;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1048576;
+    public static final int CONSUMER_DRAIN_BATCH_SIZE = 4096;
+    public static final int CONSUMER_SHARDS = 1;
+    public static final int QUEUE_HIGH_WATERMARK_PERCENT = 75;
+    public static final int QUEUE_LOW_WATERMARK_PERCENT = 25;
+    public static final int BACKPRESSURE_PAUSED_SELECT_MS = 1;
+    public static final int WAIT_SPIN_TRIES = 100;
+    public static final int WAIT_MIN_PARK_MICROS = 1;
+    public static final int WAIT_MAX_PARK_MICROS = 1000;
     public static final String LOGFILE_NAME = "numbers.log";
+    public static final String SORTED_LOGFILE_NAME = "numbers.sorted.log";
+    public static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+    public static final String SCREENER_FILE_NAME = "screener.bitmap";
+    public static final String CHECKPOINT_FILE_NAME = "screener.checkpoint";
+    public static final int CHECKPOINT_INTERVAL_SECONDS = 60;
+    public static final int LOG_WRITER_BUFFERS = 2;
+    public static final int LOG_SYNC_INTERVAL_MS = 100;
+    public static final int LOG_ROTATE_CHECK_INTERVAL_MS = 1000;
+    public static final int METRICS_HTTP_TIMEOUT_MS = 1000;
 }
@@ -1,30 +1,59 @@
 package demo.producerconsumer.consumer;
 
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.consumer.wait.BusySpinWaitStrategy;
+import demo.producerconsumer.consumer.wait.WaitStrategy;
 import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.metrics.LatencyHistogram;
+import demo.producerconsumer.metrics.QueueWaitProbe;
+import demo.producerconsumer.queue.NumberQueue;
 import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
 
-import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class is responsible for managing a single thread that consumes numbers written
  * to the shared queue by client threads. Messages read from the queue are passed to
  * the logging module for decisioning about writing to a log file. The assumption is that
- * large amounts of data will be streamed through this queue, so the internal thread
- * uses a busy-wait strategy that keeps polling the queue rather than doing a blocking
- * read.
+ * large amounts of data will be streamed through this queue, so by default the internal
+ * thread uses a busy-wait strategy that keeps polling the queue rather than doing a blocking
+ * read. A different WaitStrategy can be provided to trade some latency for lower CPU use when
+ * the queue is empty. Numbers are drained from the queue in batches into a reusable buffer, and
+ * each batch is passed to the logger in a single call.
+ *
+ * Optionally, every drained batch is counted towards the sample a QueueWaitProbe has in progress, and
+ * the time the logger took to screen and buffer each batch is recorded as dedup latency.
  */
 public class NumberMessageConsumer implements TerminateSignalReceiver {
-    private final Queue<Integer> sharedNumberQueue;
+    private final NumberQueue sharedNumberQueue;
     private final NumberLogger numberLogger;
     private final AtomicBoolean serverActive;
     private final Thread consumerThread;
+    private final int[] drainBuffer;
+    private final WaitStrategy waitStrategy;
+    // Null when queue waits or dedup latency are not recorded
+    private final QueueWaitProbe queueWaitProbe;
+    private final LatencyHistogram dedupLatency;
 
-    public NumberMessageConsumer(Queue<Integer> sharedNumberQueue, NumberLogger logger) {
+    public NumberMessageConsumer(NumberQueue sharedNumberQueue, NumberLogger logger) {
+        this(sharedNumberQueue, logger, new BusySpinWaitStrategy(), null, null);
+    }
+
+    /**
+     * @param waitStrategy: How the consumer thread waits while the queue is empty
+     * @param queueWaitProbe: Probe sampling the wait in this consumer's queue, or null to not sample it
+     * @param dedupLatency: Histogram to record the time taken to log each batch in, or null to not record it
+     */
+    public NumberMessageConsumer(NumberQueue sharedNumberQueue, NumberLogger logger, WaitStrategy waitStrategy,
+                                 QueueWaitProbe queueWaitProbe, LatencyHistogram dedupLatency) {
         this.sharedNumberQueue = sharedNumberQueue;
+        this.waitStrategy = waitStrategy;
+        this.queueWaitProbe = queueWaitProbe;
+        this.dedupLatency = dedupLatency;
         this.numberLogger = logger;
         this.serverActive = new AtomicBoolean(true);
         this.consumerThread = new Thread(this::doConsume);
+        this.drainBuffer = new int[ApplicationConstants.CONSUMER_DRAIN_BATCH_SIZE];
     }
 
     /**
@@ -58,14 +87,30 @@ public class NumberMessageConsumer implements TerminateSignalReceiver {
     @Override
     public void receiveTerminateSignal() {
         serverActive.set(false);
+        // Wake the consumer in case it is blocked waiting for numbers
+        waitStrategy.signalNumbersAvailable();
     }
 
     private void doConsume() {
-        Integer readVal = null;
+        int idleCount = 0;
         while(serverActive.get()) {
-            readVal = sharedNumberQueue.poll();
-            if (readVal != null) {
-                numberLogger.logNumber(readVal);
+            int numbersRead = sharedNumberQueue.drainTo(drainBuffer, 0, drainBuffer.length);
+            if (numbersRead > 0) {
+                if (queueWaitProbe != null) {
+                    queueWaitProbe.recordDrained(numbersRead);
+                }
+                if (dedupLatency != null) {
+                    long startTime = System.nanoTime();
+                    numberLogger.logNumbers(drainBuffer, 0, numbersRead);
+                    dedupLatency.record(System.nanoTime() - startTime);
+                }
+                else {
+                    numberLogger.logNumbers(drainBuffer, 0, numbersRead);
+                }
+                idleCount = 0;
+            }
+            else {
+                idleCount = waitStrategy.idle(idleCount);
             }
         }
         // Make sure the last partial batch in the logs are written out
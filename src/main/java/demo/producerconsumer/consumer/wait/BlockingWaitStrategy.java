@@ -0,0 +1,89 @@
+package demo.producerconsumer.consumer.wait;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spins for a fixed number of polls, then blocks the consumer until a producer signals that numbers
+ * have been published. An idle consumer uses no CPU at all.
+ *
+ * To keep the signal cheap for producers, they only take the lock when the consumer has announced
+ * that it is about to block. A pending signal flag covers the window where a producer publishes
+ * after the consumer found the queue empty but before it blocked, so no wakeup is lost. The wait is
+ * also bounded by a timeout as a safety net.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private final int spinTries;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock;
+    private final Condition numbersAvailable;
+    private final AtomicBoolean signalPending;
+    private volatile boolean consumerWaiting;
+
+    private volatile long idleSpinCount;
+    private volatile long parkCount;
+
+    public BlockingWaitStrategy(int spinTries, long maxWaitNanos) {
+        this.spinTries = spinTries;
+        this.maxWaitNanos = maxWaitNanos;
+        this.lock = new ReentrantLock();
+        this.numbersAvailable = lock.newCondition();
+        this.signalPending = new AtomicBoolean(false);
+    }
+
+    @Override
+    public int idle(int idleCount) {
+        if (idleCount < spinTries) {
+            idleSpinCount++;
+            return idleCount + 1;
+        }
+
+        consumerWaiting = true;
+        lock.lock();
+        try {
+            if (!signalPending.getAndSet(false)) {
+                parkCount++;
+                numbersAvailable.await(maxWaitNanos, TimeUnit.NANOSECONDS);
+                signalPending.set(false);
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            lock.unlock();
+            consumerWaiting = false;
+        }
+        // Stop counting once past the spins so the idle count can't overflow
+        return idleCount;
+    }
+
+    @Override
+    public void signalNumbersAvailable() {
+        if (!signalPending.get()) {
+            signalPending.set(true);
+        }
+        if (consumerWaiting) {
+            lock.lock();
+            try {
+                numbersAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long getIdleSpinCount() {
+        return idleSpinCount;
+    }
+
+    @Override
+    public long getYieldCount() {
+        return 0;
+    }
+
+    @Override
+    public long getParkCount() {
+        return parkCount;
+    }
+}
@@ -0,0 +1,34 @@
+package demo.producerconsumer.consumer.wait;
+
+/**
+ * Polls the queue again immediately. Gives the lowest latency, but the consumer thread uses a full
+ * core even when no producer is connected.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+    private volatile long idleSpinCount;
+
+    @Override
+    public int idle(int idleCount) {
+        idleSpinCount++;
+        return idleCount + 1;
+    }
+
+    @Override
+    public void signalNumbersAvailable() {
+    }
+
+    @Override
+    public long getIdleSpinCount() {
+        return idleSpinCount;
+    }
+
+    @Override
+    public long getYieldCount() {
+        return 0;
+    }
+
+    @Override
+    public long getParkCount() {
+        return 0;
+    }
+}
@@ -0,0 +1,68 @@
+package demo.producerconsumer.consumer.wait;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spins for a fixed number of polls, then parks the consumer thread between polls. The park time
+ * starts at the minimum and doubles on each consecutive empty poll up to the maximum, so a briefly
+ * idle consumer wakes quickly while a long idle one uses almost no CPU. The worst-case added latency
+ * is the maximum park time.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    private final int spinTries;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    private volatile long idleSpinCount;
+    private volatile long parkCount;
+
+    public ParkingWaitStrategy(int spinTries, long minParkNanos, long maxParkNanos) {
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("ParkingWaitStrategy requires 0 < minParkNanos <= maxParkNanos");
+        }
+        this.spinTries = spinTries;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public int idle(int idleCount) {
+        if (idleCount < spinTries) {
+            idleSpinCount++;
+            return idleCount + 1;
+        }
+
+        long parkNanos = parkNanosFor(idleCount - spinTries);
+        parkCount++;
+        LockSupport.parkNanos(parkNanos);
+        // Stop counting once the maximum is reached so the idle count can't overflow
+        return parkNanos < maxParkNanos ? idleCount + 1 : idleCount;
+    }
+
+    private long parkNanosFor(int parksSoFar) {
+        // Shifting further than this would overflow
+        if (parksSoFar >= Long.numberOfLeadingZeros(minParkNanos) - 1) {
+            return maxParkNanos;
+        }
+        return Math.min(maxParkNanos, minParkNanos << parksSoFar);
+    }
+
+    @Override
+    public void signalNumbersAvailable() {
+    }
+
+    @Override
+    public long getIdleSpinCount() {
+        return idleSpinCount;
+    }
+
+    @Override
+    public long getYieldCount() {
+        return 0;
+    }
+
+    @Override
+    public long getParkCount() {
+        return parkCount;
+    }
+}
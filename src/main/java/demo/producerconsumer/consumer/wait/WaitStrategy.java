@@ -0,0 +1,42 @@
+package demo.producerconsumer.consumer.wait;
+
+/**
+ * Interface for the policy the log consumer uses to wait when it finds the shared queue empty. The
+ * choice trades latency against CPU use: spinning reacts to new numbers fastest but keeps a core busy,
+ * while parking or blocking frees the core at the cost of a slower wakeup.
+ *
+ * Implementations count how often they spin, yield and park, so the trade-off can be tuned for each
+ * deployment. The counts are only written by the consumer thread, and may be read from any thread.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait before the consumer polls the queue again. Called by the consumer thread each time the
+     * queue is empty.
+     * @param idleCount: Number of consecutive times the queue has been found empty before this one
+     * @return the idle count to pass on the next call if the queue is still empty
+     */
+    public int idle(int idleCount);
+
+    /**
+     * Let a waiting consumer know that numbers have been added to the queue, or that it should check
+     * whether the server is shutting down. Called by producers after publishing, so strategies that
+     * do not block should make this a no-op.
+     */
+    public void signalNumbersAvailable();
+
+    /**
+     * @return the number of times the consumer has spun on an empty queue without giving up the CPU
+     */
+    public long getIdleSpinCount();
+
+    /**
+     * @return the number of times the consumer has yielded the CPU to other threads
+     */
+    public long getYieldCount();
+
+    /**
+     * @return the number of times the consumer thread has been parked or blocked
+     */
+    public long getParkCount();
+}
@@ -0,0 +1,15 @@
+package demo.producerconsumer.consumer.wait;
+
+/**
+ * The available WaitStrategy implementations.
+ */
+public enum WaitStrategyType {
+    // Poll the queue continuously
+    BUSY_SPIN,
+    // Spin for a while, then yield the CPU between polls
+    YIELDING,
+    // Spin for a while, then park for exponentially increasing periods
+    PARKING,
+    // Spin for a while, then block until a producer signals
+    BLOCKING
+}
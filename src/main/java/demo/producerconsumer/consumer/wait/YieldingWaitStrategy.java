@@ -0,0 +1,48 @@
+package demo.producerconsumer.consumer.wait;
+
+/**
+ * Spins for a fixed number of polls, then yields the CPU before each further poll. Latency stays low
+ * and other threads can run on the core, but an idle consumer still shows as busy since yield()
+ * returns immediately when nothing else is runnable.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+    private final int spinTries;
+
+    private volatile long idleSpinCount;
+    private volatile long yieldCount;
+
+    public YieldingWaitStrategy(int spinTries) {
+        this.spinTries = spinTries;
+    }
+
+    @Override
+    public int idle(int idleCount) {
+        if (idleCount < spinTries) {
+            idleSpinCount++;
+            return idleCount + 1;
+        }
+        yieldCount++;
+        Thread.yield();
+        // Stop counting once past the spins so the idle count can't overflow
+        return idleCount;
+    }
+
+    @Override
+    public void signalNumbersAvailable() {
+    }
+
+    @Override
+    public long getIdleSpinCount() {
+        return idleSpinCount;
+    }
+
+    @Override
+    public long getYieldCount() {
+        return yieldCount;
+    }
+
+    @Override
+    public long getParkCount() {
+        return 0;
+    }
+}
@@ -0,0 +1,31 @@
+package demo.producerconsumer.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A UniqueDataScreener whose state is a bitmap of one marker bit per value, from 0 to its max value,
+ * that can be saved and restored as raw bytes. Bit (value % 8) of byte (value / 8) is set once the
+ * value has been seen. Implementations with the same max value have the same layout, so markers saved
+ * from one can be loaded into another.
+ *
+ * Saving and loading are not thread-safe with respect to isUnique(), and the caller must make sure
+ * the screener is not in use while its markers are read or replaced.
+ */
+public interface PersistableDataScreener extends UniqueDataScreener {
+
+    /**
+     * @return the largest value this screener accepts
+     */
+    public int getMaxValue();
+
+    /**
+     * @return a read-only view of the marker bytes, positioned at the first byte
+     */
+    public ByteBuffer getMarkers();
+
+    /**
+     * Replace all markers with the given bytes. The buffer's position is not changed.
+     * @param markers: Buffer holding exactly as many marker bytes as this screener uses
+     */
+    public void loadMarkers(ByteBuffer markers);
+}
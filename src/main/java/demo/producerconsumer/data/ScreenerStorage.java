@@ -0,0 +1,13 @@
+package demo.producerconsumer.data;
+
+/**
+ * Where the consumer's duplicate markers are kept.
+ */
+public enum ScreenerStorage {
+    // A byte array on the Java heap
+    HEAP,
+    // A sparse memory-mapped file outside the Java heap
+    MAPPED,
+    // Compressed containers for each 65536-value chunk in use, sized to the numbers seen
+    COMPRESSED
+}
@@ -0,0 +1,11 @@
+package demo.producerconsumer.data;
+
+/**
+ * Where incoming numbers are checked for duplicates.
+ */
+public enum ScreeningMode {
+    // The log consumer screens each number as it is logged
+    CONSUMER,
+    // Each producer thread screens its own input before queueing it, so duplicates never reach the queue
+    PRODUCER
+}
@@ -0,0 +1,564 @@
+package demo.producerconsumer.data;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Implementation of the UniqueDataScreener whose memory grows with the numbers seen rather than with
+ * the size of the range, for input that only covers a small or clustered part of the range. The range
+ * is split into chunks of 65536 values, and a chunk only takes up memory once a number in it has been
+ * seen. Each chunk stores the low 16 bits of its numbers in whichever of three containers is smallest
+ * for how they are spread, in the style of a roaring bitmap:
+ *
+ * - Array: a sorted array of values, 2 bytes per number. Used while a chunk holds up to 4096 numbers.
+ * - Bitmap: one bit per value, 8 KB for the chunk, the same as UniqueDataScreenerMarkerImpl. Used once
+ *   a chunk holds more than 4096 scattered numbers.
+ * - Run: a sorted array of runs of consecutive values, 4 bytes per run. Used when the numbers form
+ *   few enough runs to take less space than either of the others.
+ *
+ * Containers are converted as they fill up. Finding the container is an array lookup on the chunk
+ * number, and checking a number is a binary search of at most 4096 values in an array or run
+ * container, or a single bit test in a bitmap container, so lookups are close to the speed of the flat
+ * bitmap. Input spread evenly over the whole range will fill every chunk with a bitmap container, and
+ * then takes up about the same 119 MB as UniqueDataScreenerMarkerImpl.
+ *
+ * The number of containers of each type and the memory they use can be read from any thread, for
+ * reporting. Getting the markers builds the same flat bitmap as UniqueDataScreenerMarkerImpl, so a
+ * checkpoint or sorted export still needs memory for the whole range while it runs.
+ *
+ * This class is not thread-safe. As with UniqueDataScreenerMarkerImpl, the caller must make sure
+ * only one thread checks numbers at a time.
+ */
+public class UniqueDataScreenerCompressedImpl implements PersistableDataScreener {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int BITMAP_WORDS = (1 << CHUNK_BITS) >> 6;
+    private static final int BITMAP_BYTES = BITMAP_WORDS * Long.BYTES;
+    // An array container holding more than this would be larger than a bitmap container
+    private static final int MAX_ARRAY_VALUES = BITMAP_BYTES / Character.BYTES;
+    // A run container holding more than this would be larger than a bitmap container
+    private static final int MAX_RUNS = BITMAP_BYTES / (2 * Character.BYTES);
+    // Array containers are not checked for runs until they are this big, as they are small anyway
+    private static final int MIN_RUN_CHECK_VALUES = 64;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int maxValueInclusive;
+    private Container[] containers;
+
+    // Only written by the screening thread, volatile so that they can be reported from another thread
+    private volatile int arrayContainers;
+    private volatile int bitmapContainers;
+    private volatile int runContainers;
+    private volatile long containerBytes;
+
+    public UniqueDataScreenerCompressedImpl() {
+        this(ApplicationConstants.MAX_INPUT_VALUE_INTEGER);
+    }
+
+    /**
+     * Constructs the screener object to include values 0 to maxValue (inclusive)
+     * @param maxValue
+     */
+    public UniqueDataScreenerCompressedImpl(int maxValue) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("UniqueDataScreenerCompressedImpl cannot be constructed with a negative parameter");
+        }
+
+        this.maxValueInclusive = maxValue;
+        this.containers = new Container[(maxValue >>> CHUNK_BITS) + 1];
+    }
+
+    /**
+     * Returns whether a particular number has already been seen or not. If an invalid value is provided
+     * (less than 0 or greater than the max value the object was initialized with), false is returned.
+     */
+    @Override
+    public boolean isUnique(int data) {
+        if (data < 0 || data > maxValueInclusive) {
+            return false;
+        }
+
+        int chunk = data >>> CHUNK_BITS;
+        Container container = containers[chunk];
+        if (container == null) {
+            container = new ArrayContainer(this, INITIAL_CAPACITY);
+            containers[chunk] = container;
+            arrayContainers++;
+            containerBytes += container.getSizeInBytes();
+        }
+        Container updated = container.add(data & CHUNK_MASK);
+        if (updated == null) {
+            return false;
+        }
+        if (updated != container) {
+            replaceContainer(chunk, container, updated);
+        }
+        return true;
+    }
+
+    private void replaceContainer(int chunk, Container oldContainer, Container newContainer) {
+        containers[chunk] = newContainer;
+        countContainer(oldContainer, -1);
+        countContainer(newContainer, 1);
+        containerBytes += newContainer.getSizeInBytes() - oldContainer.getSizeInBytes();
+    }
+
+    private void countContainer(Container container, int delta) {
+        if (container instanceof ArrayContainer) {
+            arrayContainers += delta;
+        }
+        else if (container instanceof BitmapContainer) {
+            bitmapContainers += delta;
+        }
+        else {
+            runContainers += delta;
+        }
+    }
+
+    /**
+     * @return the number of chunks whose numbers are held in a sorted array
+     */
+    public int getArrayContainerCount() {
+        return arrayContainers;
+    }
+
+    /**
+     * @return the number of chunks whose numbers are held in a bitmap
+     */
+    public int getBitmapContainerCount() {
+        return bitmapContainers;
+    }
+
+    /**
+     * @return the number of chunks whose numbers are held as runs of consecutive values
+     */
+    public int getRunContainerCount() {
+        return runContainers;
+    }
+
+    /**
+     * @return the bytes taken up by the arrays of every container and the table of chunks, not counting
+     * object headers
+     */
+    public long getMemoryBytes() {
+        return containerBytes + (long) containers.length * Integer.BYTES;
+    }
+
+    @Override
+    public int getMaxValue() {
+        return maxValueInclusive;
+    }
+
+    /**
+     * Build the flat bitmap of every marker, in the same layout as UniqueDataScreenerMarkerImpl.
+     */
+    @Override
+    public ByteBuffer getMarkers() {
+        byte[] markers = new byte[(maxValueInclusive >> 3) + 1];
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            if (containers[chunk] != null) {
+                containers[chunk].writeMarkers(markers, chunk << (CHUNK_BITS - 3));
+            }
+        }
+        return ByteBuffer.wrap(markers).asReadOnlyBuffer();
+    }
+
+    /**
+     * Replace all containers with ones built from the flat bitmap, each using the smallest container
+     * for the markers in its chunk.
+     */
+    @Override
+    public void loadMarkers(ByteBuffer markers) {
+        int markerBytes = (maxValueInclusive >> 3) + 1;
+        if (markers.remaining() != markerBytes) {
+            throw new IllegalArgumentException("Expected " + markerBytes + " bytes of markers, got " + markers.remaining());
+        }
+        Container[] loaded = new Container[containers.length];
+        int loadedArrays = 0;
+        int loadedBitmaps = 0;
+        int loadedRuns = 0;
+        long loadedBytes = 0;
+
+        ByteBuffer source = markers.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long[] words = new long[BITMAP_WORDS];
+        for (int chunk = 0; chunk < loaded.length; chunk++) {
+            Arrays.fill(words, 0);
+            int cardinality = 0;
+            for (int word = 0; word < BITMAP_WORDS && source.hasRemaining(); word++) {
+                if (source.remaining() >= Long.BYTES) {
+                    words[word] = source.getLong();
+                }
+                else {
+                    // The last chunk can end part way through a word
+                    for (int shift = 0; source.hasRemaining(); shift += 8) {
+                        words[word] |= (source.get() & 0xFFL) << shift;
+                    }
+                }
+                cardinality += Long.bitCount(words[word]);
+            }
+            if (cardinality == 0) {
+                continue;
+            }
+
+            int runs = countRuns(words);
+            Container container;
+            if (runs * 2 * Character.BYTES < Math.min(cardinality * Character.BYTES, BITMAP_BYTES)) {
+                container = RunContainer.fromBitmap(this, words, runs, cardinality);
+                loadedRuns++;
+            }
+            else if (cardinality <= MAX_ARRAY_VALUES) {
+                container = ArrayContainer.fromBitmap(this, words, cardinality);
+                loadedArrays++;
+            }
+            else {
+                container = new BitmapContainer(this, words.clone(), cardinality);
+                loadedBitmaps++;
+            }
+            loaded[chunk] = container;
+            loadedBytes += container.getSizeInBytes();
+        }
+
+        containers = loaded;
+        arrayContainers = loadedArrays;
+        bitmapContainers = loadedBitmaps;
+        runContainers = loadedRuns;
+        containerBytes = loadedBytes;
+    }
+
+    /**
+     * Count the runs of consecutive set bits in a chunk's bitmap, which is the number of set bits
+     * whose lower neighbour is not set.
+     */
+    private static int countRuns(long[] words) {
+        int runs = 0;
+        long carry = 0;
+        for (long word : words) {
+            runs += Long.bitCount(word & ~((word << 1) | carry));
+            carry = word >>> 63;
+        }
+        return runs;
+    }
+
+    /**
+     * The numbers seen in one chunk, as 16-bit values relative to the start of the chunk.
+     */
+    private abstract static class Container {
+        final UniqueDataScreenerCompressedImpl owner;
+
+        Container(UniqueDataScreenerCompressedImpl owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Add a value to the container.
+         * @return null if the value was already in the container, otherwise the container now holding
+         * the value, which is a new container if this one had to be converted
+         */
+        abstract Container add(int value);
+
+        abstract int getSizeInBytes();
+
+        /**
+         * Set the marker of every value in the container, in the flat bitmap layout.
+         * @param baseByte: Index of the byte holding the marker for the first value of the chunk
+         */
+        abstract void writeMarkers(byte[] markers, int baseByte);
+
+        /**
+         * Record that the container's array has grown in the owner's memory total. The size of a new
+         * container is recorded by the owner when it replaces the old one.
+         */
+        void resized(int oldBytes, int newBytes) {
+            owner.containerBytes += newBytes - oldBytes;
+        }
+
+        static void setMarker(byte[] markers, int baseByte, int value) {
+            markers[baseByte + (value >>> 3)] |= (byte) (1 << (value & 0x07));
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer(UniqueDataScreenerCompressedImpl owner, int capacity) {
+            super(owner);
+            this.values = new char[capacity];
+        }
+
+        static ArrayContainer fromBitmap(UniqueDataScreenerCompressedImpl owner, long[] words, int cardinality) {
+            ArrayContainer container = new ArrayContainer(owner, cardinality);
+            for (int word = 0; word < words.length; word++) {
+                for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+                    container.values[container.size++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            return container;
+        }
+
+        @Override
+        Container add(int value) {
+            int index = Arrays.binarySearch(values, 0, size, (char) value);
+            if (index >= 0) {
+                return null;
+            }
+            if (size == MAX_ARRAY_VALUES) {
+                return toBitmap().add(value);
+            }
+
+            int insertAt = -index - 1;
+            if (size == values.length) {
+                int oldBytes = getSizeInBytes();
+                values = Arrays.copyOf(values, Math.min(size * 2, MAX_ARRAY_VALUES));
+                resized(oldBytes, getSizeInBytes());
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = (char) value;
+            size++;
+
+            // Checking for runs at each doubling keeps the cost of the check constant per value added
+            if (size >= MIN_RUN_CHECK_VALUES && (size & (size - 1)) == 0) {
+                int runs = countRuns();
+                if (runs * 2 < size) {
+                    return RunContainer.fromArray(owner, values, size, runs);
+                }
+            }
+            return this;
+        }
+
+        private int countRuns() {
+            int runs = 1;
+            for (int i = 1; i < size; i++) {
+                if (values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        private BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(owner, words, size);
+        }
+
+        @Override
+        int getSizeInBytes() {
+            return values.length * Character.BYTES;
+        }
+
+        @Override
+        void writeMarkers(byte[] markers, int baseByte) {
+            for (int i = 0; i < size; i++) {
+                setMarker(markers, baseByte, values[i]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(UniqueDataScreenerCompressedImpl owner, long[] words, int cardinality) {
+            super(owner);
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(int value) {
+            int word = value >>> 6;
+            long bit = 1L << value;
+            if ((words[word] & bit) != 0) {
+                return null;
+            }
+            words[word] |= bit;
+            cardinality++;
+
+            // A chunk that is filling up in long stretches, such as a dense range, ends up as a few runs
+            if ((cardinality & (MAX_ARRAY_VALUES - 1)) == 0) {
+                int runs = UniqueDataScreenerCompressedImpl.countRuns(words);
+                if (runs < MAX_RUNS) {
+                    return RunContainer.fromBitmap(owner, words, runs, cardinality);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int getSizeInBytes() {
+            return BITMAP_BYTES;
+        }
+
+        @Override
+        void writeMarkers(byte[] markers, int baseByte) {
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+                // Values past the max are never set, so the bytes written never run past the end of the markers
+                for (int offset = 0; bits != 0; offset++, bits >>>= 8) {
+                    if ((bits & 0xFF) != 0) {
+                        markers[baseByte + (word << 3) + offset] = (byte) bits;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class RunContainer extends Container {
+        // Pairs of (first value, length - 1) for each run, in order
+        private char[] runs;
+        private int runCount;
+        private int cardinality;
+
+        private RunContainer(UniqueDataScreenerCompressedImpl owner, int capacity, int cardinality) {
+            super(owner);
+            this.runs = new char[capacity * 2];
+            this.cardinality = cardinality;
+        }
+
+        static RunContainer fromArray(UniqueDataScreenerCompressedImpl owner, char[] values, int size, int runCount) {
+            RunContainer container = new RunContainer(owner, runCount, size);
+            int start = 0;
+            for (int i = 1; i <= size; i++) {
+                if (i == size || values[i] != values[i - 1] + 1) {
+                    container.appendRun(values[start], i - start);
+                    start = i;
+                }
+            }
+            return container;
+        }
+
+        static RunContainer fromBitmap(UniqueDataScreenerCompressedImpl owner, long[] words, int runCount,
+                                       int cardinality) {
+            RunContainer container = new RunContainer(owner, runCount, cardinality);
+            int runStart = -1;
+            for (int value = 0; value <= BITMAP_WORDS << 6; value++) {
+                boolean set = value < BITMAP_WORDS << 6 && (words[value >>> 6] & (1L << value)) != 0;
+                if (set && runStart < 0) {
+                    runStart = value;
+                }
+                else if (!set && runStart >= 0) {
+                    container.appendRun(runStart, value - runStart);
+                    runStart = -1;
+                }
+            }
+            return container;
+        }
+
+        private void appendRun(int start, int length) {
+            runs[runCount * 2] = (char) start;
+            runs[runCount * 2 + 1] = (char) (length - 1);
+            runCount++;
+        }
+
+        private int start(int run) {
+            return runs[run * 2];
+        }
+
+        private int end(int run) {
+            return runs[run * 2] + runs[run * 2 + 1];
+        }
+
+        @Override
+        Container add(int value) {
+            // Find the last run starting at or before the value
+            int low = 0;
+            int high = runCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (start(mid) <= value) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+            int before = high;
+            if (before >= 0 && value <= end(before)) {
+                return null;
+            }
+            cardinality++;
+
+            int after = before + 1;
+            boolean joinsBefore = before >= 0 && end(before) + 1 == value;
+            boolean joinsAfter = after < runCount && value + 1 == start(after);
+            if (joinsBefore && joinsAfter) {
+                runs[before * 2 + 1] = (char) (end(after) - start(before));
+                System.arraycopy(runs, (after + 1) * 2, runs, after * 2, (runCount - after - 1) * 2);
+                runCount--;
+            }
+            else if (joinsBefore) {
+                runs[before * 2 + 1]++;
+            }
+            else if (joinsAfter) {
+                runs[after * 2] = (char) value;
+                runs[after * 2 + 1]++;
+            }
+            else {
+                return insertRun(after, value);
+            }
+            return this;
+        }
+
+        private Container insertRun(int index, int value) {
+            if (runCount == MAX_RUNS) {
+                return toBitmap().add(value);
+            }
+            if (runCount * 2 == runs.length) {
+                int oldBytes = getSizeInBytes();
+                runs = Arrays.copyOf(runs, Math.min(runs.length * 2, MAX_RUNS * 2));
+                resized(oldBytes, getSizeInBytes());
+            }
+            System.arraycopy(runs, index * 2, runs, (index + 1) * 2, (runCount - index) * 2);
+            runs[index * 2] = (char) value;
+            runs[index * 2 + 1] = 0;
+            runCount++;
+
+            // Mostly single values, which an array holds in half the space
+            if (cardinality <= MAX_ARRAY_VALUES && runCount * 2 > cardinality) {
+                return toArray();
+            }
+            return this;
+        }
+
+        private BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int run = 0; run < runCount; run++) {
+                for (int value = start(run); value <= end(run); value++) {
+                    words[value >>> 6] |= 1L << value;
+                }
+            }
+            // The value being added is already counted in the cardinality
+            return new BitmapContainer(owner, words, cardinality - 1);
+        }
+
+        private ArrayContainer toArray() {
+            ArrayContainer container = new ArrayContainer(owner, cardinality);
+            for (int run = 0; run < runCount; run++) {
+                for (int value = start(run); value <= end(run); value++) {
+                    container.values[container.size++] = (char) value;
+                }
+            }
+            return container;
+        }
+
+        @Override
+        int getSizeInBytes() {
+            return runs.length * Character.BYTES;
+        }
+
+        @Override
+        void writeMarkers(byte[] markers, int baseByte) {
+            for (int run = 0; run < runCount; run++) {
+                for (int value = start(run); value <= end(run); value++) {
+                    setMarker(markers, baseByte, value);
+                }
+            }
+        }
+    }
+}
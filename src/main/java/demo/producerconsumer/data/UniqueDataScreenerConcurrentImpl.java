@@ -0,0 +1,105 @@
+package demo.producerconsumer.data;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe implementation of the UniqueDataScreener, using the same one-bit-per-value layout as
+ * UniqueDataScreenerMarkerImpl so that it takes the same ~119 MB for the default range. The markers are
+ * held in 64-bit words of an AtomicLongArray, and a marker is set with a compare-and-set of its word.
+ *
+ * Exactly one caller sees true for each number, however many threads check it at once: the caller whose
+ * compare-and-set sets the bit is the first to see the number, and every other caller either reads the
+ * bit already set or has its compare-and-set fail and re-reads it. A failed compare-and-set caused by a
+ * different bit in the same word is simply retried. No lock is taken, so any number of producer threads
+ * can screen their input at the same time.
+ *
+ * Bit n of word w is the marker for value w * 64 + n, which is the same as the byte layout of
+ * PersistableDataScreener read as little-endian words, so the markers can be copied out and loaded
+ * back in as bytes.
+ */
+public class UniqueDataScreenerConcurrentImpl implements PersistableDataScreener {
+    private final int maxValueInclusive;
+    private final AtomicLongArray dataMarkers;
+
+    public UniqueDataScreenerConcurrentImpl() {
+        this(ApplicationConstants.MAX_INPUT_VALUE_INTEGER);
+    }
+
+    /**
+     * Constructs the screener object to include values 0 to maxValue (inclusive)
+     * @param maxValue
+     */
+    public UniqueDataScreenerConcurrentImpl(int maxValue) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("UniqueDataScreenerConcurrentImpl cannot be constructed with a negative parameter");
+        }
+
+        this.maxValueInclusive = maxValue;
+        // 64 bits per word, rounded up
+        dataMarkers = new AtomicLongArray((maxValue >> 6) + 1);
+    }
+
+    /**
+     * Returns whether a particular number has already been seen or not. Out of range values return false,
+     * the same as UniqueDataScreenerMarkerImpl.
+     */
+    @Override
+    public boolean isUnique(int data) {
+        if (data < 0 || data > maxValueInclusive) {
+            return false;
+        }
+
+        // The word index is the value divided by 64, and the bit is the value mod 64. Java only uses
+        // the low 6 bits of a long shift distance, so shifting by the value itself selects the bit.
+        int word = data >> 6;
+        long marker = 1L << data;
+
+        long current;
+        do {
+            current = dataMarkers.get(word);
+            if ((current & marker) != 0) {
+                return false;
+            }
+        } while (!dataMarkers.compareAndSet(word, current, current | marker));
+        return true;
+    }
+
+    @Override
+    public int getMaxValue() {
+        return maxValueInclusive;
+    }
+
+    /**
+     * Copies the markers out of the atomic words, so the result does not change as more numbers are seen.
+     */
+    @Override
+    public ByteBuffer getMarkers() {
+        ByteBuffer markers = ByteBuffer.allocate(dataMarkers.length() * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int word = 0; word < dataMarkers.length(); word++) {
+            markers.putLong(dataMarkers.get(word));
+        }
+        // Trim to the same number of bytes as the other implementations
+        markers.flip().limit((maxValueInclusive >> 3) + 1);
+        return markers.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void loadMarkers(ByteBuffer markers) {
+        int expectedLength = (maxValueInclusive >> 3) + 1;
+        if (markers.remaining() != expectedLength) {
+            throw new IllegalArgumentException("Expected " + expectedLength + " bytes of markers, got " + markers.remaining());
+        }
+        ByteBuffer source = markers.duplicate();
+        for (int word = 0; word < dataMarkers.length(); word++) {
+            long value = 0;
+            for (int i = 0; i < Long.BYTES && source.hasRemaining(); i++) {
+                value |= (source.get() & 0xFFL) << (i * 8);
+            }
+            dataMarkers.set(word, value);
+        }
+    }
+}
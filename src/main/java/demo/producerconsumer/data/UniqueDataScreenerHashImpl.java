@@ -1,27 +1,161 @@
 package demo.producerconsumer.data;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
- * Basic implementation of the UniqueDataScreener that stores marked strings in
- * a hash set. For large amounts of numbers, this may not be suitable due to the
- * growing memory footprint of the internal hashset as millions of messages are
- * processed. However it does provide the benefit of not limiting the input range and
- * will accept negative numbers. This would be useful for more complex implementations
- * of this app.
+ * Implementation of the UniqueDataScreener that stores marked numbers in a hash set. Unlike the marker
+ * implementations, it does not limit the input range and will accept negative numbers, and its memory
+ * grows with the number of unique values rather than the size of the range. This would be useful for
+ * more complex implementations of this app.
+ *
+ * The set is an open-addressing table of primitive ints with linear probing, so a number takes up 4
+ * bytes of table instead of a boxed Integer and a HashMap node, and a lookup is a scan of neighbouring
+ * slots in one array instead of following pointers. The table is kept less than half full, which is 8 to
+ * 16 bytes per number (a HashSet<Integer> takes around 48 bytes per number on a 64-bit JVM with
+ * compressed pointers: a 16-byte Integer, a 32-byte node and the table entry). 0 marks an empty slot,
+ * so whether 0 itself has been seen is kept in a separate flag.
+ *
+ * The table doubles in size when it reaches half full. Rather than copying every number at once, which
+ * would pause the caller for the whole copy, the old table is kept and a few of its slots are moved to
+ * the new table on each insert, while lookups check both tables. The move is finished long before the
+ * new table fills up.
  *
  * Per the requirements of this application and for optimization purposes, this class
  * is not actually used and is provided only for illustration.
+ *
+ * This class is not thread-safe.
  */
 public class UniqueDataScreenerHashImpl implements UniqueDataScreener {
-    private final Set<Integer> uniqueMessages;
+    private static final int DEFAULT_CAPACITY = 1024;
+    // Slots of the old table moved to the new one on each insert while resizing. Moving the old table
+    // takes capacity / 8 inserts, by which point the new table is about a third full.
+    private static final int REHASH_STEP = 8;
+    private static final int EMPTY = 0;
+
+    private int[] table;
+    private int mask;
+    // Number of values in the table, not counting 0
+    private int size;
+    private boolean containsZero;
+
+    // The table being moved from while resizing, or null when not resizing
+    private int[] oldTable;
+    private int oldMask;
+    private int rehashIndex;
 
     public UniqueDataScreenerHashImpl() {
-        uniqueMessages = new HashSet<>();
+        this(DEFAULT_CAPACITY / 2 - 1);
     }
 
+    /**
+     * @param expectedValues: Number of unique values the set can hold before it first has to resize
+     */
+    public UniqueDataScreenerHashImpl(int expectedValues) {
+        if (expectedValues < 0) {
+            throw new IllegalArgumentException("UniqueDataScreenerHashImpl cannot be constructed with a negative parameter");
+        }
+        // Smallest power of two that keeps the table less than half full
+        int capacity = Integer.highestOneBit(Math.max(expectedValues, 1) * 2) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    @Override
     public boolean isUnique(int data) {
-        return uniqueMessages.add(data);
+        if (data == EMPTY) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            return true;
+        }
+
+        if (oldTable != null) {
+            if (contains(oldTable, oldMask, data)) {
+                return false;
+            }
+            rehashStep();
+        }
+        if (!insert(table, mask, data)) {
+            return false;
+        }
+        size++;
+        // Always leaves empty slots, which end every probe of both tables
+        if (size >= (table.length >> 1)) {
+            startResize();
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of unique values seen
+     */
+    public int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * @return the bytes taken up by the tables, including the old table while resizing
+     */
+    public long getMemoryBytes() {
+        long slots = table.length + (oldTable == null ? 0 : oldTable.length);
+        return slots * Integer.BYTES;
+    }
+
+    private static int slot(int data, int mask) {
+        // Spreads numbers that only differ in their high bits, such as multiples of a large power of two
+        int hash = data * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean contains(int[] table, int mask, int data) {
+        for (int slot = slot(data, mask); table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == data) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the value was already in the table
+     */
+    private static boolean insert(int[] table, int mask, int data) {
+        int slot = slot(data, mask);
+        for (int current = table[slot]; current != EMPTY; current = table[slot]) {
+            if (current == data) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = data;
+        return true;
+    }
+
+    private void startResize() {
+        // Only possible if the expected size was far too small, finish the last resize first
+        while (oldTable != null) {
+            rehashStep();
+        }
+        oldTable = table;
+        oldMask = mask;
+        rehashIndex = 0;
+        table = new int[oldTable.length << 1];
+        mask = table.length - 1;
+    }
+
+    /**
+     * Move the next few slots of the old table to the new one. Values in the old table are never also
+     * in the new one, since inserts check the old table first.
+     */
+    private void rehashStep() {
+        int end = Math.min(rehashIndex + REHASH_STEP, oldTable.length);
+        for (; rehashIndex < end; rehashIndex++) {
+            int data = oldTable[rehashIndex];
+            if (data != EMPTY) {
+                insert(table, mask, data);
+            }
+        }
+        if (rehashIndex == oldTable.length) {
+            oldTable = null;
+        }
     }
 }
@@ -0,0 +1,116 @@
+package demo.producerconsumer.data;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implementation of the UniqueDataScreener that keeps the same one-bit-per-value markers as
+ * UniqueDataScreenerMarkerImpl, but off the Java heap in a memory-mapped file. The file is created
+ * at its full size without writing to it, so on file systems that support sparse files it takes no
+ * disk space until markers are set, and the operating system only loads the pages of the bitmap
+ * that are actually touched. The markers are not scanned or copied by the garbage collector, do not
+ * appear in heap dumps, and do not need to be accounted for in -Xmx.
+ *
+ * The resident memory grows with the part of the range in use, in page-sized steps: 4 KB of bitmap
+ * covers 32768 consecutive values. Input spread evenly over the whole range will still touch every page.
+ *
+ * Any markers already in the file are cleared when it is opened, so a screener always starts empty.
+ *
+ * This class is not thread-safe. As with UniqueDataScreenerMarkerImpl, the caller must make sure
+ * only one thread checks numbers at a time.
+ */
+public class UniqueDataScreenerMappedImpl implements PersistableDataScreener, Closeable {
+    private final int maxValueInclusive;
+    private final FileChannel bitmapChannel;
+    private final MappedByteBuffer dataMarkers;
+
+    public UniqueDataScreenerMappedImpl(Path bitmapFile) throws IOException {
+        this(bitmapFile, ApplicationConstants.MAX_INPUT_VALUE_INTEGER);
+    }
+
+    /**
+     * Constructs the screener object to include values 0 to maxValue (inclusive), with its markers
+     * in the given file
+     * @param bitmapFile: File to map, created if it does not exist
+     * @param maxValue
+     */
+    public UniqueDataScreenerMappedImpl(Path bitmapFile, int maxValue) throws IOException {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("UniqueDataScreenerMappedImpl cannot be constructed with a negative parameter");
+        }
+
+        this.maxValueInclusive = maxValue;
+        long numDataMarkerBuckets = ((long) maxValue >> 3) + 1;
+        this.bitmapChannel = FileChannel.open(bitmapFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // Truncating first discards any old markers, and the mapping extends the file as a sparse file
+            bitmapChannel.truncate(0);
+            this.dataMarkers = bitmapChannel.map(FileChannel.MapMode.READ_WRITE, 0, numDataMarkerBuckets);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(bitmapChannel, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether a particular number has already been seen or not. If an invalid value is provided
+     * (less than 0 or greater than the max value the object was initialized with), false is returned.
+     */
+    @Override
+    public boolean isUnique(int data) {
+        if (data < 0 || data > maxValueInclusive) {
+            return false;
+        }
+
+        // Same layout as UniqueDataScreenerMarkerImpl: byte data / 8, bit data % 8
+        int bucket = data >> 3;
+        byte marker = (byte) (1 << (data & 0x07));
+
+        byte markers = dataMarkers.get(bucket);
+        if ((markers & marker) == 0) {
+            dataMarkers.put(bucket, (byte) (markers | marker));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int getMaxValue() {
+        return maxValueInclusive;
+    }
+
+    @Override
+    public ByteBuffer getMarkers() {
+        ByteBuffer markers = dataMarkers.asReadOnlyBuffer();
+        markers.clear();
+        return markers;
+    }
+
+    @Override
+    public void loadMarkers(ByteBuffer markers) {
+        if (markers.remaining() != dataMarkers.capacity()) {
+            throw new IllegalArgumentException("Expected " + dataMarkers.capacity() + " bytes of markers, got " + markers.remaining());
+        }
+        ByteBuffer target = dataMarkers.duplicate();
+        target.clear();
+        target.put(markers.duplicate());
+    }
+
+    /**
+     * Close the bitmap file. The mapping itself stays valid until it is garbage collected, as Java does
+     * not provide a way to unmap it explicitly.
+     */
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(bitmapChannel, null);
+    }
+}
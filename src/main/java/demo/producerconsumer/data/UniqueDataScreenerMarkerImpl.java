@@ -2,6 +2,8 @@ package demo.producerconsumer.data;
 
 import demo.producerconsumer.constants.ApplicationConstants;
 
+import java.nio.ByteBuffer;
+
 /**
  * Implementation of the UniqueDataScreener that optimizes memory usage. The data
  * is assumed to be any non-negative integer between 0 and the constructor value, which
@@ -20,7 +22,7 @@ import demo.producerconsumer.constants.ApplicationConstants;
  * Since this application is intended to stream large amounts of data, it is likely the number of
  * unique values will surpass this threshold, so this marker implementation will be used internally.
  */
-public class UniqueDataScreenerMarkerImpl implements UniqueDataScreener {
+public class UniqueDataScreenerMarkerImpl implements PersistableDataScreener {
     private final int maxValueInclusive;
     private final byte[] dataMarkers;
 
@@ -38,10 +40,9 @@ public class UniqueDataScreenerMarkerImpl implements UniqueDataScreener {
         }
 
         this.maxValueInclusive = maxValue;
-        int numDataMarkerBuckets = maxValueInclusive / 8;
-        if (maxValueInclusive % 8 > 0) {
-            numDataMarkerBuckets++;
-        }
+        // One byte for every full or partial group of 8 values from 0 to maxValue. maxValue itself is
+        // in bucket maxValue / 8, so there is always one more bucket than that.
+        int numDataMarkerBuckets = (maxValueInclusive >> 3) + 1;
         dataMarkers = new byte[numDataMarkerBuckets];
     }
 
@@ -78,4 +79,22 @@ public class UniqueDataScreenerMarkerImpl implements UniqueDataScreener {
         }
         return false;
     }
+
+    @Override
+    public int getMaxValue() {
+        return maxValueInclusive;
+    }
+
+    @Override
+    public ByteBuffer getMarkers() {
+        return ByteBuffer.wrap(dataMarkers).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void loadMarkers(ByteBuffer markers) {
+        if (markers.remaining() != dataMarkers.length) {
+            throw new IllegalArgumentException("Expected " + dataMarkers.length + " bytes of markers, got " + markers.remaining());
+        }
+        markers.duplicate().get(dataMarkers);
+    }
 }
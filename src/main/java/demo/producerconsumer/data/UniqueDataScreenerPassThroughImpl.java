@@ -0,0 +1,13 @@
+package demo.producerconsumer.data;
+
+/**
+ * UniqueDataScreener that treats every number as unique. Used by the NumberLogger when numbers have
+ * already been screened for duplicates before they were queued, so they are not screened twice.
+ */
+public class UniqueDataScreenerPassThroughImpl implements UniqueDataScreener {
+
+    @Override
+    public boolean isUnique(int data) {
+        return true;
+    }
+}
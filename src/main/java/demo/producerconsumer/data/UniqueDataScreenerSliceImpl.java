@@ -0,0 +1,42 @@
+package demo.producerconsumer.data;
+
+/**
+ * UniqueDataScreener for a slice of the value range that does not start at 0, such as the slice owned
+ * by one consumer shard. Numbers are shifted down by the first value in the slice and screened by a
+ * delegate sized for just the slice, so a shard's markers only take up memory for its own slice.
+ * Numbers below the slice map to negative values, which the delegate rejects as invalid.
+ *
+ * Thread-safe if the delegate is thread-safe.
+ */
+public class UniqueDataScreenerSliceImpl implements UniqueDataScreener {
+    private final int firstValue;
+    private final UniqueDataScreener sliceScreener;
+
+    /**
+     * @param firstValue: The smallest number in the slice
+     * @param sliceScreener: Screener for values 0 to (last value in the slice - firstValue)
+     */
+    public UniqueDataScreenerSliceImpl(int firstValue, UniqueDataScreener sliceScreener) {
+        this.firstValue = firstValue;
+        this.sliceScreener = sliceScreener;
+    }
+
+    /**
+     * @return the smallest number in the slice, which is value 0 of the slice screener
+     */
+    public int getFirstValue() {
+        return firstValue;
+    }
+
+    public UniqueDataScreener getSliceScreener() {
+        return sliceScreener;
+    }
+
+    @Override
+    public boolean isUnique(int data) {
+        if (data < firstValue) {
+            return false;
+        }
+        return sliceScreener.isUnique(data - firstValue);
+    }
+}
@@ -0,0 +1,281 @@
+package demo.producerconsumer.logging;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LogWriter that writes on its own I/O thread, so a logger does not wait for the disk each time its
+ * buffer fills up. When a logger submits a full buffer, it is queued for the I/O thread and the logger
+ * is straight away handed an empty buffer to keep filling. Each logger has a fixed number of buffers
+ * (two for double-buffering, three for triple-buffering): the one being filled, and spares that are
+ * either queued, being written, or free. The spares are allocated the first time they are needed.
+ *
+ * If every spare buffer is still waiting to be written when a logger submits, the logger has to wait
+ * for the I/O thread to free one. This is when the disk is the bottleneck, and it is counted, along
+ * with how long loggers waited in total. The time taken to hand over a buffer and to write a buffer
+ * are also recorded.
+ *
+ * The loggers never take the writer's own lock, which the I/O thread holds for the whole of each write,
+ * including any force after the batch and any move to the next segment. An interval sync only takes
+ * that lock to read and update the durable position, so the I/O thread keeps writing while the disk
+ * flushes. Submitting a buffer only takes a short private
+ * lock that the I/O thread never holds while writing, so a logger with a free spare buffer carries on
+ * filling it while the disk is busy.
+ *
+ * A write that fails on the I/O thread is reported to the loggers by the next submit(), awaitWritten()
+ * or sync() call.
+ *
+ * All operations on this class are thread-safe.
+ */
+public class AsyncLogWriter extends LogWriter {
+    // Queued to tell the I/O thread to stop once everything before it is written
+    private static final PendingBatch STOP_WRITING = new PendingBatch(ByteBuffer.allocate(0), 0, 0);
+
+    private final BlockingQueue<PendingBatch> pendingBatches = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ByteBuffer> freeBuffers = new LinkedBlockingQueue<>();
+    private final Thread ioThread = new Thread(this::doWrite, "log-writer");
+    private final int maxSpareBuffers;
+    private final AtomicInteger spareBuffers = new AtomicInteger();
+    private volatile IOException writeFailure;
+
+    // Guards the buffer counts, and is waited on for buffers to be written. Never held during I/O.
+    private final Object progressLock = new Object();
+    private long buffersSubmitted;
+    private long buffersWritten;
+
+    private final AtomicLong swapCount = new AtomicLong();
+    private final AtomicLong totalSwapNanos = new AtomicLong();
+    private final AtomicLong stallCount = new AtomicLong();
+    private final AtomicLong totalStallNanos = new AtomicLong();
+    private final AtomicLong totalWriteNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+
+    /**
+     * @param sharedByLoggers: Number of loggers that will write to, and then close, this writer
+     * @param buffersPerLogger: Number of buffers each logger can have filled or waiting to be written,
+     *                        at least 2
+     */
+    public AsyncLogWriter(OutputStream outputLogStream, int sharedByLoggers, int buffersPerLogger) {
+        this(outputLogStream, sharedByLoggers, buffersPerLogger, LogDurability.NONE, NO_FILE_HEADER);
+    }
+
+    /**
+     * @param durability: When the log is forced out to disk. Forcing after every batch is done on the
+     *                  I/O thread, and submit() does not wait for it, so it only holds up the loggers
+     *                  once their spare buffers run out.
+     * @param fileHeader: Bytes the log format starts a file with, written if the log file is empty
+     */
+    public AsyncLogWriter(OutputStream outputLogStream, int sharedByLoggers, int buffersPerLogger,
+                          LogDurability durability, byte[] fileHeader) {
+        super(outputLogStream, sharedByLoggers, durability, fileHeader);
+        this.maxSpareBuffers = checkBuffers(sharedByLoggers, buffersPerLogger);
+        this.ioThread.start();
+    }
+
+    /**
+     * Create a writer that splits the log into segments. Moving on to the next segment, including
+     * forcing and closing the last one, is done on the I/O thread, so like any other write it only holds
+     * up the loggers once their spare buffers run out.
+     * @param fileHeader: Bytes the log format starts a file with, written at the start of every segment
+     */
+    public AsyncLogWriter(LogSegments segments, int sharedByLoggers, int buffersPerLogger,
+                          LogDurability durability, byte[] fileHeader) throws IOException {
+        super(segments, sharedByLoggers, durability, fileHeader);
+        this.maxSpareBuffers = checkBuffers(sharedByLoggers, buffersPerLogger);
+        this.ioThread.start();
+    }
+
+    /**
+     * Queue a full buffer to be written by the I/O thread, and get back an empty buffer. Only blocks
+     * if all of the spare buffers are still waiting to be written.
+     */
+    @Override
+    public ByteBuffer submit(ByteBuffer logLines, int records) throws IOException {
+        checkWriteFailure();
+        long startTime = System.nanoTime();
+        synchronized (progressLock) {
+            buffersSubmitted++;
+        }
+        pendingBatches.add(new PendingBatch(logLines, records, startTime));
+
+        ByteBuffer emptyBuffer = takeFreeBuffer(logLines.capacity());
+        swapCount.incrementAndGet();
+        totalSwapNanos.addAndGet(System.nanoTime() - startTime);
+        return emptyBuffer;
+    }
+
+    /**
+     * Wait for the I/O thread to write every buffer submitted so far.
+     */
+    @Override
+    public void awaitWritten() throws IOException {
+        synchronized (progressLock) {
+            long target = buffersSubmitted;
+            while (buffersWritten < target && writeFailure == null) {
+                try {
+                    progressLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the log to be written", e);
+                }
+            }
+        }
+        checkWriteFailure();
+    }
+
+    /**
+     * Once the last logger has closed the writer, let the I/O thread write everything it has been
+     * given, and then close the file.
+     */
+    @Override
+    public void close() {
+        if (releaseLogger()) {
+            pendingBatches.add(STOP_WRITING);
+            try {
+                ioThread.join();
+            } catch (InterruptedException ignored) {
+            }
+            closeOutput();
+        }
+    }
+
+    /**
+     * @return the number of buffers handed over by loggers
+     */
+    public long getSwapCount() {
+        return swapCount.get();
+    }
+
+    /**
+     * @return the total time loggers spent handing over buffers, including any time stalled
+     */
+    public long getTotalSwapNanos() {
+        return totalSwapNanos.get();
+    }
+
+    /**
+     * @return the number of times a logger had to wait for the I/O thread to free a buffer
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    /**
+     * @return the total time loggers spent waiting for the I/O thread to free a buffer
+     */
+    public long getTotalStallNanos() {
+        return totalStallNanos.get();
+    }
+
+    /**
+     * @return the number of buffers written by the I/O thread
+     */
+    public long getBuffersWritten() {
+        synchronized (progressLock) {
+            return buffersWritten;
+        }
+    }
+
+    /**
+     * @return the total time the I/O thread spent writing buffers
+     */
+    public long getTotalWriteNanos() {
+        return totalWriteNanos.get();
+    }
+
+    /**
+     * @return the longest time taken to write a single buffer since this was last called
+     */
+    public long getAndResetMaxWriteNanos() {
+        return maxWriteNanos.getAndSet(0);
+    }
+
+    private static int checkBuffers(int sharedByLoggers, int buffersPerLogger) {
+        if (buffersPerLogger < 2) {
+            throw new IllegalArgumentException("AsyncLogWriter requires at least 2 buffers per logger");
+        }
+        return sharedByLoggers * (buffersPerLogger - 1);
+    }
+
+    private ByteBuffer takeFreeBuffer(int capacity) throws IOException {
+        ByteBuffer freeBuffer = freeBuffers.poll();
+        if (freeBuffer != null) {
+            return freeBuffer;
+        }
+        if (spareBuffers.getAndUpdate(spares -> spares < maxSpareBuffers ? spares + 1 : spares) < maxSpareBuffers) {
+            return ByteBuffer.allocate(capacity);
+        }
+
+        long stallStart = System.nanoTime();
+        try {
+            freeBuffer = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a free log buffer", e);
+        }
+        stallCount.incrementAndGet();
+        totalStallNanos.addAndGet(System.nanoTime() - stallStart);
+        return freeBuffer;
+    }
+
+    private void checkWriteFailure() throws IOException {
+        IOException failure = writeFailure;
+        if (failure != null) {
+            throw new IOException("An earlier write to the log failed", failure);
+        }
+    }
+
+    private void doWrite() {
+        while (true) {
+            PendingBatch batch;
+            try {
+                batch = pendingBatches.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == STOP_WRITING) {
+                return;
+            }
+            ByteBuffer logLines = batch.logLines;
+
+            if (writeFailure == null) {
+                long startTime = System.nanoTime();
+                try {
+                    write(logLines, batch.records);
+                } catch (IOException e) {
+                    writeFailure = e;
+                    e.printStackTrace();
+                }
+                long endTime = System.nanoTime();
+                long writeNanos = endTime - startTime;
+                getWriteLatency().record(endTime - batch.submitNanos);
+                totalWriteNanos.addAndGet(writeNanos);
+                maxWriteNanos.accumulateAndGet(writeNanos, Math::max);
+            }
+
+            logLines.clear();
+            freeBuffers.add(logLines);
+            synchronized (progressLock) {
+                buffersWritten++;
+                progressLock.notifyAll();
+            }
+        }
+    }
+
+    private static class PendingBatch {
+        private final ByteBuffer logLines;
+        private final int records;
+        private final long submitNanos;
+
+        PendingBatch(ByteBuffer logLines, int records, long submitNanos) {
+            this.logLines = logLines;
+            this.records = records;
+            this.submitNanos = submitNanos;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package demo.producerconsumer.logging;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes the binary log described by BinaryLogFormat. Appended numbers are held until the batch is
+ * finished, and then sorted and written as one block of delta encoded varints, so the numbers within a
+ * batch are logged in ascending order rather than the order they were received in.
+ */
+public class BinaryLogEncoder implements LogEncoder {
+    private final int[] batchNumbers;
+    private final CRC32 crc;
+    private int batchRecords;
+
+    /**
+     * @param batchSize: Largest number of records that will be appended to a batch
+     */
+    public BinaryLogEncoder(int batchSize) {
+        this.batchNumbers = new int[Math.max(1, batchSize)];
+        this.crc = new CRC32();
+    }
+
+    @Override
+    public byte[] getFileHeader() {
+        byte[] header = new byte[BinaryLogFormat.FILE_HEADER_LENGTH];
+        putInt(header, 0, (int) (BinaryLogFormat.MAGIC >>> 32));
+        putInt(header, 4, (int) BinaryLogFormat.MAGIC);
+        putInt(header, 8, BinaryLogFormat.FORMAT_VERSION);
+        return header;
+    }
+
+    @Override
+    public int getMaxBatchLength(int records) {
+        return BinaryLogFormat.BLOCK_HEADER_LENGTH + records * BinaryLogFormat.MAX_VARINT_LENGTH;
+    }
+
+    /**
+     * Hold the number until the batch is finished. Nothing is written to the buffer yet.
+     */
+    @Override
+    public int append(int number, byte[] buffer, int length) {
+        batchNumbers[batchRecords++] = number;
+        return length;
+    }
+
+    @Override
+    public int finishBatch(byte[] buffer, int length) {
+        int records = batchRecords;
+        batchRecords = 0;
+        Arrays.sort(batchNumbers, 0, records);
+        int offset = BinaryLogFormat.BLOCK_HEADER_LENGTH;
+        int previous = 0;
+        for (int i = 0; i < records; i++) {
+            offset = putVarint(buffer, offset, batchNumbers[i] - previous);
+            previous = batchNumbers[i];
+        }
+
+        int payloadLength = offset - BinaryLogFormat.BLOCK_HEADER_LENGTH;
+        crc.reset();
+        crc.update(buffer, BinaryLogFormat.BLOCK_HEADER_LENGTH, payloadLength);
+        putInt(buffer, 0, records);
+        putInt(buffer, 4, payloadLength);
+        putInt(buffer, 8, (int) crc.getValue());
+        return offset;
+    }
+
+    private static int putVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,27 @@
+package demo.producerconsumer.logging;
+
+/**
+ * Layout of the binary log. All integers are big-endian. A file starts with a header:
+ *
+ *   magic (8 bytes), format version (int)
+ *
+ * followed by any number of blocks, one for each batch written by a logger:
+ *
+ *   record count (int), payload length (int), CRC32 of the payload (int), payload
+ *
+ * The payload holds the numbers of the batch in ascending order. The first number, and then the
+ * difference between each number and the one before it, is packed as an unsigned varint: 7 bits per
+ * byte, least significant group first, with the high bit set on every byte but the last. Numbers are
+ * unique and close together once sorted, so most of them take one or two bytes instead of the ten of
+ * a text record.
+ */
+final class BinaryLogFormat {
+    private BinaryLogFormat() {}
+
+    static final long MAGIC = 0x50434E554D424C31L; // "PCNUMBL1"
+    static final int FORMAT_VERSION = 1;
+    static final int FILE_HEADER_LENGTH = 12;
+    static final int BLOCK_HEADER_LENGTH = 12;
+    // A number up to 999999999 needs 30 bits, which is 5 groups of 7 bits
+    static final int MAX_VARINT_LENGTH = 5;
+}
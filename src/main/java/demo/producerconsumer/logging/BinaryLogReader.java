@@ -0,0 +1,123 @@
+package demo.producerconsumer.logging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Streams the numbers back out of a binary log file, one block at a time, so a log of any size can be
+ * read with a fixed amount of memory per block. The header and every block's checksum are checked, and
+ * an IOException is thrown if the file is not a binary log, a block is corrupt, or the file ends part way
+ * through a block. An empty file is read as a log with no blocks.
+ *
+ * Not thread-safe, each reader should be used by one thread.
+ */
+public class BinaryLogReader {
+    private final DataInputStream input;
+    private final CRC32 crc;
+    private byte[] payload;
+    private int[] numbers;
+    private int blockLength;
+
+    /**
+     * @param logStream: Stream positioned at the start of the log file. Closing it is left to the caller.
+     */
+    public BinaryLogReader(InputStream logStream) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(logStream));
+        this.crc = new CRC32();
+        this.payload = new byte[0];
+        this.numbers = new int[0];
+        readFileHeader();
+    }
+
+    /**
+     * Read the next block of the log.
+     * @return the numbers in the block in ascending order, in an array that is reused by the next call
+     *         and may be longer than the block, or null at the end of the log
+     * @see #getBlockLength()
+     */
+    public int[] readBlock() throws IOException {
+        int records;
+        try {
+            records = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        try {
+            int payloadLength = input.readInt();
+            int expectedCrc = input.readInt();
+            if (records < 0 || payloadLength < records
+                    || payloadLength > (long) records * BinaryLogFormat.MAX_VARINT_LENGTH) {
+                throw new IOException("Corrupt block header in binary log");
+            }
+            if (payload.length < payloadLength) {
+                payload = new byte[payloadLength];
+            }
+            if (numbers.length < records) {
+                numbers = new int[records];
+            }
+            input.readFully(payload, 0, payloadLength);
+
+            crc.reset();
+            crc.update(payload, 0, payloadLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Checksum does not match for block in binary log");
+            }
+            decode(records, payloadLength);
+            blockLength = records;
+            return numbers;
+        } catch (EOFException e) {
+            throw new IOException("Binary log ends part way through a block", e);
+        }
+    }
+
+    /**
+     * @return the number of numbers in the block last returned by readBlock()
+     */
+    public int getBlockLength() {
+        return blockLength;
+    }
+
+    private void decode(int records, int payloadLength) throws IOException {
+        int offset = 0;
+        int previous = 0;
+        for (int i = 0; i < records; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte next;
+            do {
+                if (offset >= payloadLength || shift > 28) {
+                    throw new IOException("Corrupt varint in binary log");
+                }
+                next = payload[offset++];
+                delta |= (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            previous += delta;
+            numbers[i] = previous;
+        }
+        if (offset != payloadLength) {
+            throw new IOException("Corrupt block payload in binary log");
+        }
+    }
+
+    private void readFileHeader() throws IOException {
+        long magic;
+        try {
+            magic = input.readLong();
+        } catch (EOFException e) {
+            // Nothing was logged, so the header was never written
+            return;
+        }
+        if (magic != BinaryLogFormat.MAGIC) {
+            throw new IOException("Not a binary log file");
+        }
+        int version = input.readInt();
+        if (version != BinaryLogFormat.FORMAT_VERSION) {
+            throw new IOException("Unsupported binary log version: " + version);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package demo.producerconsumer.logging;
+
+/**
+ * When the log file is forced out to the storage device, trading logging throughput for how many logged
+ * numbers can be lost if the machine loses power. Whatever the mode, a checkpoint of the screener
+ * always forces the log first, so it never marks a number that is not durably in the log.
+ */
+public enum LogDurability {
+    // Left to the operating system, only forced for checkpoints
+    NONE,
+    // Forced after every batch is written, nothing written is ever lost
+    BATCH,
+    // Forced on a fixed interval, so one fsync covers every batch written in that interval
+    INTERVAL,
+    // Forced once when the log is closed on terminate
+    TERMINATE
+}
@@ -0,0 +1,36 @@
+package demo.producerconsumer.logging;
+
+/**
+ * Encodes the numbers logged by a NumberLogger into the bytes written to the log file. The logger appends
+ * each unique number to a batch in its output buffer, and finishes the batch before handing the buffer to
+ * the LogWriter. An encoder may write each record into the buffer as it is appended, or hold the batch
+ * and encode all of it when the batch is finished.
+ *
+ * Each logger has its own encoder, and only calls it while holding the logger's lock.
+ */
+public interface LogEncoder {
+
+    /**
+     * @return the bytes every log file starts with, which may be empty
+     */
+    byte[] getFileHeader();
+
+    /**
+     * @return the largest number of bytes a batch of this many records can be encoded to
+     */
+    int getMaxBatchLength(int records);
+
+    /**
+     * Add a number to the batch being encoded into the buffer.
+     * @param length: Number of bytes of the batch already in the buffer
+     * @return the number of bytes of the batch now in the buffer
+     */
+    int append(int number, byte[] buffer, int length);
+
+    /**
+     * Finish encoding the batch into the buffer, ready to be written, and start a new batch.
+     * @param length: Number of bytes of the batch already in the buffer
+     * @return the number of bytes of the finished batch in the buffer
+     */
+    int finishBatch(byte[] buffer, int length);
+}
@@ -0,0 +1,11 @@
+package demo.producerconsumer.logging;
+
+/**
+ * How numbers are encoded in the log file.
+ */
+public enum LogFormat {
+    // One 9-digit number per line, encoded by TextLogEncoder
+    TEXT,
+    // Checksummed blocks of sorted, delta encoded varints, encoded by BinaryLogEncoder
+    BINARY
+}
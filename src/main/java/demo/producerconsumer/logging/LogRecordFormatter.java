@@ -0,0 +1,59 @@
+package demo.producerconsumer.logging;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formats numbers as log records: 9 ASCII digits with leading 0's, followed by the server-native line
+ * separator. Records are written directly into a caller's byte array, two digits at a time from a lookup
+ * table, so formatting a number creates no objects and needs only four divisions.
+ *
+ * This class is stateless and thread-safe.
+ */
+public final class LogRecordFormatter {
+    private LogRecordFormatter() {}
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // The tens and ones digit of every number from 0 to 99
+    private static final byte[] TENS_DIGITS = new byte[100];
+    private static final byte[] ONES_DIGITS = new byte[100];
+    static {
+        for (int i = 0; i < 100; i++) {
+            TENS_DIGITS[i] = (byte) ('0' + i / 10);
+            ONES_DIGITS[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    /**
+     * @return a copy of the bytes that end every record, for readers that check records byte for byte
+     */
+    public static byte[] getLineSeparator() {
+        return LINE_SEPARATOR.clone();
+    }
+
+    /**
+     * Write the record for a number into the buffer.
+     * @param number: Number from 0 to 999999999
+     * @param buffer: Buffer with at least NumberLogger.LOG_RECORD_LENGTH bytes free at the offset
+     * @param offset: Index in the buffer to write the record at
+     * @return the index just past the end of the record
+     */
+    public static int writeRecord(int number, byte[] buffer, int offset) {
+        // Fill in the 9 digits from the right, two at a time, leaving a single leading digit
+        int remaining = number;
+        for (int pairEnd = offset + NumberLogger.LOG_NUMBER_LENGTH - 1; pairEnd > offset; pairEnd -= 2) {
+            int quotient = remaining / 100;
+            int pair = remaining - quotient * 100;
+            buffer[pairEnd - 1] = TENS_DIGITS[pair];
+            buffer[pairEnd] = ONES_DIGITS[pair];
+            remaining = quotient;
+        }
+        buffer[offset] = (byte) ('0' + remaining);
+
+        int end = offset + NumberLogger.LOG_NUMBER_LENGTH;
+        for (byte separatorByte : LINE_SEPARATOR) {
+            buffer[end++] = separatorByte;
+        }
+        return end;
+    }
+}
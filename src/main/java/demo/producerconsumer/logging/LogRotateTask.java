@@ -0,0 +1,41 @@
+package demo.producerconsumer.logging;
+
+import java.io.IOException;
+import java.util.TimerTask;
+
+/**
+ * Closes a log segment once it has been open for longer than its time limit, for when traffic is too
+ * slow for the next batch to close it. The loggers' partial batches are flushed first, so numbers still
+ * waiting in an output buffer are not held back until the buffer fills. A segment that already has
+ * records is closed before a flushed batch is written, like before any batch written after the time
+ * limit, and otherwise the flushed batches fill it before it is closed. The segment is rotated under the
+ * writer's lock. Extends from a TimerTask so that it can be run in a timer.
+ */
+public class LogRotateTask extends TimerTask {
+    private final NumberLogger[] loggers;
+    private final LogWriter logWriter;
+
+    /**
+     * @param loggers: Every logger writing to the log writer
+     */
+    public LogRotateTask(NumberLogger[] loggers, LogWriter logWriter) {
+        this.loggers = loggers;
+        this.logWriter = logWriter;
+    }
+
+    @Override
+    public void run() {
+        if (!logWriter.isSegmentTimeLimitReached()) {
+            return;
+        }
+        for (NumberLogger logger : loggers) {
+            logger.flushLog();
+        }
+        try {
+            logWriter.awaitWritten();
+            logWriter.rotateExpiredSegment();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
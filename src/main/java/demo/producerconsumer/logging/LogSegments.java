@@ -0,0 +1,245 @@
+package demo.producerconsumer.logging;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Splits the log into numbered segment files, so that no single file grows without limit and closed
+ * segments can be compressed and shipped on their own. For a log file named numbers.log, the segments
+ * are numbers.000001.log, numbers.000002.log and so on. A LogWriter moves on to the next segment when
+ * the current one would grow past the size limit, or has been open longer than the time limit, so
+ * segments always hold whole batches of records. The time limit is checked before each batch is
+ * written, and by a LogRotateTask on a schedule, so a segment is still closed when no more batches come.
+ *
+ * Closed segments are compressed on a background thread, so that logging does not wait for them. A
+ * segment is compressed to a temporary file which is forced to disk and renamed into place before the
+ * plain segment is deleted, so a crash never leaves a segment missing.
+ *
+ * A manifest, numbers.manifest, lists every closed segment in order along with its record count, one
+ * segment per line. Read in order, the segments in the manifest followed by the segment currently being
+ * written make up the whole de-duplicated log. The manifest is rewritten, by renaming a temporary file
+ * over it, each time a segment is closed or compressed.
+ *
+ * Segments and the manifest left by a previous run are deleted on startup, in the same way that a
+ * single log file is started empty.
+ *
+ * All operations on this class are thread-safe.
+ */
+public class LogSegments {
+    private static final String MANIFEST_EXTENSION = ".manifest";
+    private static final String COMPRESSED_EXTENSION = ".gz";
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private final Path directory;
+    private final String baseName;
+    private final String extension;
+    private final long maxSegmentBytes;
+    private final long maxSegmentNanos;
+    private final SegmentCompression compression;
+    private final Path manifestFile;
+    private final ExecutorService compressor;
+
+    // Only accessed while holding the lock
+    private final List<ManifestEntry> closedSegments;
+    private int segmentNumber;
+    private long segmentOpenedNanos;
+
+    /**
+     * @param logFile: Name of the unsegmented log file, which the segment and manifest names are based on
+     * @param maxSegmentBytes: Size a segment may grow to, or 0 for no size limit
+     * @param maxSegmentMillis: Time a segment may be open for, or 0 for no time limit
+     * @param compression: How closed segments are compressed
+     */
+    public LogSegments(Path logFile, long maxSegmentBytes, long maxSegmentMillis,
+                       SegmentCompression compression) throws IOException {
+        Path absoluteLogFile = logFile.toAbsolutePath();
+        String logFileName = absoluteLogFile.getFileName().toString();
+        int extensionStart = logFileName.lastIndexOf('.');
+        this.directory = absoluteLogFile.getParent();
+        this.baseName = extensionStart > 0 ? logFileName.substring(0, extensionStart) : logFileName;
+        this.extension = extensionStart > 0 ? logFileName.substring(extensionStart) : "";
+        this.maxSegmentBytes = maxSegmentBytes > 0 ? maxSegmentBytes : Long.MAX_VALUE;
+        this.maxSegmentNanos = maxSegmentMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(maxSegmentMillis) : Long.MAX_VALUE;
+        this.compression = compression;
+        this.manifestFile = directory.resolve(baseName + MANIFEST_EXTENSION);
+        this.closedSegments = new ArrayList<>();
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "log-compressor"));
+        deletePreviousSegments();
+    }
+
+    /**
+     * Create the next segment file and start timing how long it has been open.
+     * @return stream for writing the new segment
+     */
+    public synchronized FileOutputStream openNextSegment() throws IOException {
+        segmentNumber++;
+        segmentOpenedNanos = System.nanoTime();
+        return new FileOutputStream(segmentFile(segmentNumber).toFile());
+    }
+
+    /**
+     * @param segmentBytes: Bytes already written to the current segment
+     * @param length: Bytes about to be written
+     * @return true if the current segment should be closed before the bytes are written. An empty
+     *         segment is never closed, so a single batch larger than the size limit still gets written.
+     */
+    public synchronized boolean isSegmentFull(long segmentBytes, int length) {
+        return segmentBytes > 0 && segmentBytes + length > maxSegmentBytes || isSegmentExpired(segmentBytes);
+    }
+
+    /**
+     * @param segmentBytes: Bytes already written to the current segment
+     * @return true if the current segment has been open for longer than the time limit. An empty segment
+     *         never expires.
+     */
+    public synchronized boolean isSegmentExpired(long segmentBytes) {
+        return segmentBytes > 0 && isTimeLimitReached();
+    }
+
+    /**
+     * @return true if the current segment has been open for longer than the time limit, whether or not
+     *         anything has been written to it
+     */
+    public synchronized boolean isTimeLimitReached() {
+        return System.nanoTime() - segmentOpenedNanos >= maxSegmentNanos;
+    }
+
+    /**
+     * Add the current segment to the manifest and queue it to be compressed. The caller must have forced
+     * the segment to disk and closed it. An empty segment is deleted instead.
+     * @param records: Number of records written to the segment
+     */
+    public synchronized void closeSegment(long records) throws IOException {
+        Path segmentFile = segmentFile(segmentNumber);
+        if (records == 0) {
+            Files.deleteIfExists(segmentFile);
+            return;
+        }
+        ManifestEntry entry = new ManifestEntry(segmentFile.getFileName().toString(), records);
+        closedSegments.add(entry);
+        writeManifest();
+        if (compression == SegmentCompression.GZIP) {
+            compressor.execute(() -> compressSegment(segmentFile, entry));
+        }
+    }
+
+    /**
+     * Close the last segment and wait for every closed segment to be compressed.
+     * @param records: Number of records written to the last segment
+     */
+    public void close(long records) throws IOException {
+        closeSegment(records);
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of the segment currently being written, starting from 1
+     */
+    public synchronized int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    /**
+     * @return the path of the manifest listing the closed segments
+     */
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+
+    Path segmentFile(int number) {
+        return directory.resolve(String.format("%s.%06d%s", baseName, number, extension));
+    }
+
+    private void compressSegment(Path segmentFile, ManifestEntry entry) {
+        Path compressedFile = segmentFile.resolveSibling(segmentFile.getFileName() + COMPRESSED_EXTENSION);
+        Path tempFile = compressedFile.resolveSibling(compressedFile.getFileName() + ".tmp");
+        try {
+            FileOutputStream tempStream = new FileOutputStream(tempFile.toFile());
+            try (InputStream segmentStream = Files.newInputStream(segmentFile)) {
+                GZIPOutputStream gzipStream = new GZIPOutputStream(tempStream, COPY_BUFFER_SIZE);
+                IOUtils.copy(segmentStream, gzipStream, COPY_BUFFER_SIZE);
+                gzipStream.finish();
+                tempStream.getFD().sync();
+            } finally {
+                IOUtils.closeQuietly(tempStream, null);
+            }
+            moveIntoPlace(tempFile, compressedFile);
+
+            synchronized (this) {
+                entry.fileName = compressedFile.getFileName().toString();
+                writeManifest();
+            }
+            Files.delete(segmentFile);
+        } catch (IOException e) {
+            // The plain segment is left in place and stays in the manifest
+            e.printStackTrace();
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (ManifestEntry entry : closedSegments) {
+            manifest.append(entry.fileName).append(' ').append(entry.records).append(System.lineSeparator());
+        }
+        Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            tempChannel.write(StandardCharsets.US_ASCII.encode(manifest.toString()));
+            tempChannel.force(true);
+        }
+        moveIntoPlace(tempFile, manifestFile);
+    }
+
+    private void deletePreviousSegments() throws IOException {
+        Pattern segmentName = Pattern.compile(Pattern.quote(baseName) + "\\.\\d{6,}" + Pattern.quote(extension)
+                + "(" + Pattern.quote(COMPRESSED_EXTENSION) + ")?(\\.tmp)?");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                file -> segmentName.matcher(file.getFileName().toString()).matches())) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.deleteIfExists(manifestFile);
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class ManifestEntry {
+        private String fileName;
+        private final long records;
+
+        ManifestEntry(String fileName, long records) {
+            this.fileName = fileName;
+            this.records = records;
+        }
+    }
+}
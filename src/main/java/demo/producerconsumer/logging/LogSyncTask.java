@@ -0,0 +1,25 @@
+package demo.producerconsumer.logging;
+
+import java.io.IOException;
+import java.util.TimerTask;
+
+/**
+ * Forces the log out to disk on a schedule, for the interval durability mode. Extends from a TimerTask
+ * so that it can be run in a timer.
+ */
+public class LogSyncTask extends TimerTask {
+    private final LogWriter logWriter;
+
+    public LogSyncTask(LogWriter logWriter) {
+        this.logWriter = logWriter;
+    }
+
+    @Override
+    public void run() {
+        try {
+            logWriter.sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package demo.producerconsumer.logging;
+
+import demo.producerconsumer.metrics.LatencyHistogram;
+import org.apache.commons.io.IOUtils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes batches of log lines to the log file. Each batch is written and flushed while holding the
+ * writer's lock, so when several NumberLoggers share one writer their batches are appended whole and
+ * lines from different loggers are never interleaved.
+ *
+ * Log lines are already encoded as ASCII bytes by the loggers, and are written to the file's channel
+ * exactly as they are, with no character encoding or extra copy into a stream buffer. The writer keeps
+ * track of its position in the log file, and can force what it has written out to disk, so that a
+ * checkpoint is never recorded for data that could still be lost.
+ *
+ * Besides forcing the log when asked to by sync(), the writer forces it according to its LogDurability:
+ * after every batch, or when the log is closed. In the interval mode, sync() is called on a schedule by
+ * a LogSyncTask. The time taken by every force is recorded, so the cost of each mode can be seen, as is
+ * the time from each batch being submitted until it has been written. A sync does not hold the writer's
+ * lock while waiting for the disk, so batches carry on being written during an interval sync.
+ *
+ * When given LogSegments, the writer splits the log into segment files instead of writing one file.
+ * Before a batch that would take the current segment past its limits, the segment is forced to disk,
+ * closed and handed back to LogSegments to be compressed, and the writer moves on to a new segment. The
+ * writer's position counts the bytes written to every segment, as if they were one file. A LogRotateTask
+ * closes a segment that has been open too long when no batch comes to close it.
+ *
+ * A log format that starts each file with a header, such as the binary format, gives the header to the
+ * writer. It is written ahead of the first batch in an empty log file, and in every segment.
+ *
+ * A writer shared by several loggers is only closed once every one of them has closed it.
+ *
+ * All operations on this class are thread-safe.
+ */
+public class LogWriter {
+    static final byte[] NO_FILE_HEADER = new byte[0];
+
+    // Replaced when moving on to the next segment
+    private OutputStream outputStream;
+    // Null unless writing to a file, in which case writes go straight to the channel
+    private FileChannel fileChannel;
+    // Null unless the log is split into segments
+    private final LogSegments segments;
+    private long segmentBytes;
+    private long segmentRecords;
+    private final byte[] fileHeader;
+    private boolean fileHeaderPending;
+    private final LogDurability durability;
+    private final LatencyHistogram syncLatency;
+    private final LatencyHistogram writeLatency;
+    private long position;
+    private long durablePosition;
+    private int openLoggers;
+    private boolean closed;
+
+    public LogWriter(OutputStream outputLogStream) {
+        this(outputLogStream, 1, LogDurability.NONE, NO_FILE_HEADER);
+    }
+
+    /**
+     * @param sharedByLoggers: Number of loggers that will write to, and then close, this writer
+     * @param durability: When the log is forced out to disk, besides when sync() is called
+     * @param fileHeader: Bytes the log format starts a file with, written if the log file is empty
+     */
+    public LogWriter(OutputStream outputLogStream, int sharedByLoggers, LogDurability durability,
+                     byte[] fileHeader) {
+        this.openLoggers = sharedByLoggers;
+        this.durability = durability;
+        this.syncLatency = new LatencyHistogram();
+        this.writeLatency = new LatencyHistogram();
+        this.segments = null;
+        this.fileHeader = fileHeader;
+        setOutput(outputLogStream);
+        // A file opened for appending starts at the end of its existing contents
+        if (fileChannel != null) {
+            try {
+                this.position = fileChannel.position();
+                this.durablePosition = position;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read the log file position", e);
+            }
+        }
+        this.fileHeaderPending = fileHeader.length > 0 && position == 0;
+    }
+
+    /**
+     * Create a writer that splits the log into segments, starting with a new, empty segment.
+     * @param segments: Segments of the log, which decide when the writer moves on to the next segment
+     * @param fileHeader: Bytes the log format starts a file with, written at the start of every segment
+     */
+    public LogWriter(LogSegments segments, int sharedByLoggers, LogDurability durability,
+                     byte[] fileHeader) throws IOException {
+        this.openLoggers = sharedByLoggers;
+        this.durability = durability;
+        this.syncLatency = new LatencyHistogram();
+        this.writeLatency = new LatencyHistogram();
+        this.segments = segments;
+        this.fileHeader = fileHeader;
+        setOutput(segments.openNextSegment());
+        this.fileHeaderPending = fileHeader.length > 0;
+    }
+
+    private void setOutput(OutputStream outputLogStream) {
+        this.outputStream = outputLogStream;
+        this.fileChannel = outputLogStream instanceof FileOutputStream
+                ? ((FileOutputStream) outputLogStream).getChannel() : null;
+    }
+
+    /**
+     * Append a batch of complete log records to the log file, and force it to disk if every batch is
+     * to be durable.
+     * @param logLines: Buffer holding the encoded records between its position and limit. The position
+     *                is advanced past the records that were written.
+     * @param records: Number of records in the batch
+     */
+    public synchronized void write(ByteBuffer logLines, int records) throws IOException {
+        if (segments != null && segments.isSegmentFull(segmentBytes, logLines.remaining())) {
+            nextSegment();
+        }
+        if (fileHeaderPending) {
+            fileHeaderPending = false;
+            writeBytes(ByteBuffer.wrap(fileHeader));
+        }
+        writeBytes(logLines);
+        segmentRecords += records;
+        if (durability == LogDurability.BATCH) {
+            force();
+        }
+    }
+
+    private void writeBytes(ByteBuffer bytes) throws IOException {
+        int length = bytes.remaining();
+        if (fileChannel != null) {
+            while (bytes.hasRemaining()) {
+                fileChannel.write(bytes);
+            }
+        }
+        else {
+            outputStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), length);
+            outputStream.flush();
+            bytes.position(bytes.limit());
+        }
+        position += length;
+        segmentBytes += length;
+    }
+
+    /**
+     * @return true if the log is split into segments and the current one has been open for longer than
+     *         the time limit, whether or not anything has been written to it
+     */
+    public synchronized boolean isSegmentTimeLimitReached() {
+        return segments != null && !closed && segments.isTimeLimitReached();
+    }
+
+    /**
+     * Move on to the next segment if the current one has been open for longer than the time limit, even
+     * though no batch has been written to close it. An empty segment is left open.
+     */
+    public synchronized void rotateExpiredSegment() throws IOException {
+        if (segments != null && !closed && segments.isSegmentExpired(segmentBytes)) {
+            nextSegment();
+        }
+    }
+
+    /**
+     * Close the current segment and move on to a new one. The closed segment is forced to disk first,
+     * since it is compressed and deleted in the background.
+     */
+    private void nextSegment() throws IOException {
+        force();
+        outputStream.close();
+        segments.closeSegment(segmentRecords);
+        setOutput(segments.openNextSegment());
+        segmentBytes = 0;
+        segmentRecords = 0;
+        fileHeaderPending = fileHeader.length > 0;
+    }
+
+    /**
+     * Hand over a full buffer of log lines to be written, and get back an empty buffer to fill next.
+     * This writer writes the lines before returning and hands back the same buffer, cleared.
+     * @param logLines: Buffer holding the encoded records between its position and limit
+     * @param records: Number of records in the buffer
+     * @return an empty buffer, of at least the same capacity, to collect the next lines in
+     */
+    public ByteBuffer submit(ByteBuffer logLines, int records) throws IOException {
+        long startTime = System.nanoTime();
+        write(logLines, records);
+        writeLatency.record(System.nanoTime() - startTime);
+        logLines.clear();
+        return logLines;
+    }
+
+    /**
+     * Wait until every buffer submitted so far has been written. Lines submitted to this writer are
+     * written before submit() returns, so there is never anything to wait for.
+     */
+    public void awaitWritten() throws IOException {
+    }
+
+    /**
+     * @return the number of bytes in the log file, including any that were there before it was opened
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of bytes in the log file that have been forced out to the storage device
+     */
+    public synchronized long getDurablePosition() {
+        return durablePosition;
+    }
+
+    public LogDurability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return the latencies of forcing the log to disk
+     */
+    public LatencyHistogram getSyncLatency() {
+        return syncLatency;
+    }
+
+    /**
+     * @return the latencies from a batch being submitted until it has been written, including any force
+     *         after the batch and, for an asynchronous writer, the time it was queued for the I/O thread
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * Force everything submitted so far out to the storage device. When not writing to a file, only
+     * waits for it to be written.
+     * @return the number of bytes in the log file that are now durable, which a checkpoint can safely
+     *         refer to
+     */
+    public long sync() throws IOException {
+        awaitWritten();
+        return force();
+    }
+
+    /**
+     * Force everything written so far out to the storage device, and record how long it took. The
+     * writer's lock is only held to read the position and to record it as durable, not while forcing,
+     * so batches can be written while an interval sync is waiting for the disk. When called while
+     * already holding the lock, as on a segment rotation or close, the lock stays held throughout.
+     */
+    protected long force() throws IOException {
+        FileChannel forceChannel;
+        long forcePosition;
+        synchronized (this) {
+            if (fileChannel == null) {
+                durablePosition = position;
+                return durablePosition;
+            }
+            if (durablePosition >= position) {
+                return durablePosition;
+            }
+            forceChannel = fileChannel;
+            forcePosition = position;
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            forceChannel(forceChannel);
+        } catch (ClosedChannelException e) {
+            // A segment rotation or close in the meantime forced the channel before closing it
+            synchronized (this) {
+                if (durablePosition < forcePosition) {
+                    throw e;
+                }
+                return durablePosition;
+            }
+        }
+        syncLatency.record(System.nanoTime() - startTime);
+        synchronized (this) {
+            durablePosition = Math.max(durablePosition, forcePosition);
+            return durablePosition;
+        }
+    }
+
+    /**
+     * Force the file's contents, not its metadata, out to the storage device.
+     */
+    protected void forceChannel(FileChannel channel) throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Close the log file once the last logger sharing this writer has closed it.
+     */
+    public void close() {
+        if (releaseLogger()) {
+            closeOutput();
+        }
+    }
+
+    /**
+     * Record that one of the loggers sharing this writer has closed it.
+     * @return true if it was the last one
+     */
+    protected synchronized boolean releaseLogger() {
+        openLoggers--;
+        return openLoggers == 0;
+    }
+
+    /**
+     * Close the log file, forcing it to disk first unless durability is left to the operating system.
+     * The last segment of a segmented log is always forced, and closed like any other segment.
+     */
+    protected synchronized void closeOutput() {
+        closed = true;
+        try {
+            if (durability != LogDurability.NONE || segments != null) {
+                force();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        IOUtils.closeQuietly(outputStream, null);
+        if (segments != null) {
+            try {
+                segments.close(segmentRecords);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,49 +1,124 @@
 package demo.producerconsumer.logging;
 
+import demo.producerconsumer.data.PersistableDataScreener;
 import demo.producerconsumer.data.UniqueDataScreener;
-import org.apache.commons.io.IOUtils;
+import demo.producerconsumer.metrics.LatencyHistogram;
+import demo.producerconsumer.persistence.CheckpointStore;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class is responsible for logging unique numbers to the logfile. A UniqueDataScreener instance
  * is used to determine if the value is unique across all input seen so far, and then makes a
  * determination about whether to log the value and update the metrics. To minimize disk io, logged
  * values are held in a buffer in memory and written out only when the buffer reaches a threshold size.
+ * Each value is encoded straight into a reusable byte buffer by the logger's LogEncoder, and the buffer is
+ * handed to the LogWriter as it is, so logging a number creates no objects. The LogWriter hands back an
+ * empty buffer to carry on with, which with an AsyncLogWriter is a different buffer while the full one
+ * is written on the writer's own thread.
  * The application is responsible for closing the log, and explicitly flushing a partial batch on
  * shutdown or any other desired situation. Batching is necessary as disk io is slow and can hamper
  * performance when the application is streaming large amounts of data.
  *
+ * When the consumer is sharded, each shard has its own logger, screening its own slice of the value
+ * range into its own output buffer, and all of them share a single LogWriter for the log file.
+ *
  * A report of metrics can be retrieved at any time detailing the number of unique values seen,
- * and the number of unique and duplicates seen since the last report was retrieved.
+ * and the number of unique and duplicates seen since the last report was retrieved. The counts are
+ * LongAdders that only ever grow, added to once per call rather than once per number, and a report is
+ * the difference to the counts at the last report, so getting a report never takes the logger's lock
+ * or holds up logging.
  *
- * All operations on this class are thread-safe.
+ * All operations on this class are thread-safe. Duplicates found by screening on the producer threads
+ * are counted with recordDuplicates(), which does not take the logger's lock.
  *
- * All numbers written to the log file will be 9-characters long with appropriate leading 0's
+ * By default, all numbers written to the log file will be 9-characters long with appropriate leading 0's
  * added to meet this 9-character length. Each entry will be on a separate line in the log file,
- * separated by a server-native newline sequence.
+ * separated by a server-native newline sequence. A BinaryLogEncoder can be given instead, to write
+ * each batch as a compact block.
+ *
+ * When a CheckpointStore is provided, the screener's markers can be checkpointed along with the length
+ * of the log they match, so that a restarted server can carry on from the same log. A checkpoint flushes
+ * the output buffer and forces the log to disk first, so it never marks a number that is not in the log.
+ * A final checkpoint is saved when the log is closed.
+ *
+ * Optionally, the logger records how long each batch was held in its output buffer, from the first number
+ * going in until the buffer is handed to the log writer.
  */
 public class NumberLogger {
 
-    private static final int EXPECTED_NUMBER_LENGTH = 9;
-    private final OutputStreamWriter logWriter;
-    private final int logWriteThreshold;
+    public static final int LOG_NUMBER_LENGTH = 9;
+    public static final int LOG_RECORD_LENGTH = LOG_NUMBER_LENGTH + System.lineSeparator().length();
+
+    private final LogWriter logWriter;
+    private final int logBatchSize;
+    private final LogEncoder logEncoder;
     private final UniqueDataScreener dataScreener;
+    private final CheckpointStore checkpointStore;
+    // Null when residency is not recorded
+    private final LatencyHistogram bufferResidency;
+    // Held for the whole of a checkpoint, and taken before the logger's lock
+    private final Object checkpointLock;
+    // Markers copied for the last checkpoint, reused by the next. Only accessed while holding checkpointLock.
+    private ByteBuffer checkpointMarkers;
+    // Set if a batch could not be written, after which the markers no longer match the log
+    private boolean logWriteFailed;
 
-    private volatile int totalNumbersLogged;
-    private volatile int loggedSinceLastReport;
-    private volatile int dupesSinceLastReport;
+    // Numbers already in the log when it was opened
+    private final long initialNumbersLogged;
+    private final LongAdder numbersLogged;
+    private final LongAdder duplicates;
+    private final LongAdder flushes;
+    // Counts at the last report, guarded by reportLock rather than the logger's lock
+    private final Object reportLock;
+    private long reportedNumbersLogged;
+    private long reportedDuplicates;
 
-    // Calls accessing the builder are already synchronized so no need to use threadsafe StringBuffer
-    private final StringBuilder outputBuffer;
+    // Formatted records waiting to be written. Only accessed while holding the logger's lock.
+    private byte[] outputBuffer;
+    private ByteBuffer outputView;
+    private int outputLength;
+    private int outputRecords;
+    private long outputStartNanos;
 
     public NumberLogger(OutputStream outputLogStream, UniqueDataScreener dataScreener, int logBatchSize) {
-        this.logWriter = new OutputStreamWriter(outputLogStream);
-        this.outputBuffer = new StringBuilder();
-        this.logWriteThreshold = logBatchSize * (EXPECTED_NUMBER_LENGTH + System.lineSeparator().length());
+        this(new LogWriter(outputLogStream), dataScreener, logBatchSize, null, new TextLogEncoder(), null);
+    }
+
+    /**
+     * Create a logger that writes through a log writer which may be shared with the loggers of other shards.
+     * With a checkpoint store, the logger continues an existing log, and numbers already in the log count
+     * towards the total uniques.
+     * @param logWriter: Writer for the log file, which may be shared with the loggers of other shards
+     * @param dataScreener: Must be a PersistableDataScreener if a checkpoint store is provided
+     * @param checkpointStore: Store that checkpoints are saved to, or null to not checkpoint
+     * @param logEncoder: Encoder for the log format, whose file header the log writer must have been given
+     * @param bufferResidency: Histogram to record how long each batch is held in the output buffer in, or
+     *                       null to not record it
+     */
+    public NumberLogger(LogWriter logWriter, UniqueDataScreener dataScreener, int logBatchSize,
+                        CheckpointStore checkpointStore, LogEncoder logEncoder, LatencyHistogram bufferResidency) {
+        if (checkpointStore != null && !(dataScreener instanceof PersistableDataScreener)) {
+            throw new IllegalArgumentException("NumberLogger can only checkpoint a PersistableDataScreener");
+        }
+        this.logWriter = logWriter;
+        // Always room for at least one record, so a batch size of 0 writes each record as it is logged
+        this.outputBuffer = new byte[logEncoder.getMaxBatchLength(Math.max(1, logBatchSize))];
+        this.outputView = ByteBuffer.wrap(outputBuffer);
+        this.logBatchSize = logBatchSize;
+        this.logEncoder = logEncoder;
         this.dataScreener = dataScreener;
+        this.checkpointStore = checkpointStore;
+        this.bufferResidency = bufferResidency;
+        this.numbersLogged = new LongAdder();
+        this.duplicates = new LongAdder();
+        this.flushes = new LongAdder();
+        this.reportLock = new Object();
+        this.checkpointLock = new Object();
+        this.initialNumbersLogged = checkpointStore != null ? logWriter.getPosition() / LOG_RECORD_LENGTH : 0;
     }
 
     /**
@@ -54,54 +129,188 @@ public class NumberLogger {
      *
      * Thread-safe and will block if multiple threads attempt to call simultaneously.
      */
-    public synchronized void logNumber(Integer number) {
-        if (dataScreener.isUnique(number)) {
-            outputBuffer.append(String.format("%09d", number));
-            outputBuffer.append(System.lineSeparator());
-            totalNumbersLogged++;
-            loggedSinceLastReport++;
-
-            if (outputBuffer.length() >= logWriteThreshold) {
-                flushLog();
-            }
+    public synchronized void logNumber(int number) {
+        if (logIfUnique(number)) {
+            numbersLogged.increment();
         }
         else {
-            dupesSinceLastReport++;
+            duplicates.increment();
+        }
+    }
+
+    /**
+     * Log each unique number in the buffer, in order, with the same behavior as logNumber(). The
+     * lock is only taken once for the whole batch.
+     *
+     * Thread-safe and will block if multiple threads attempt to call simultaneously.
+     * @param numbers: Buffer holding the numbers to log
+     * @param offset: Index in the buffer of the first number to log
+     * @param length: Number of numbers to log
+     */
+    public synchronized void logNumbers(int[] numbers, int offset, int length) {
+        int end = offset + length;
+        int logged = 0;
+        for (int i = offset; i < end; i++) {
+            if (logIfUnique(numbers[i])) {
+                logged++;
+            }
         }
+        numbersLogged.add(logged);
+        duplicates.add(length - logged);
+    }
+
+    /**
+     * @return true if the number was unique and logged, false if it was a duplicate
+     */
+    private boolean logIfUnique(int number) {
+        if (!dataScreener.isUnique(number)) {
+            return false;
+        }
+        if (outputRecords == 0 && bufferResidency != null) {
+            outputStartNanos = System.nanoTime();
+        }
+        outputLength = logEncoder.append(number, outputBuffer, outputLength);
+        outputRecords++;
+
+        if (outputRecords >= logBatchSize) {
+            flushLog();
+        }
+        return true;
+    }
+
+    /**
+     * Count duplicates that were screened out before reaching the logger, so that they are included
+     * in the next report.
+     *
+     * Thread-safe and does not block.
+     */
+    public void recordDuplicates(int count) {
+        duplicates.add(count);
     }
 
     /**
-     * Flush all unique numbers held in memory that have not yet been written to disk.
+     * Hand all unique numbers held in memory that have not yet been written to the log writer.
      * Thread-safe and will block if multiple threads attempt to call simultaneously.
      */
     public synchronized void flushLog() {
-        String outputVal = outputBuffer.toString();
-        outputBuffer.setLength(0);
+        if (outputRecords == 0) {
+            return;
+        }
+        outputView.clear();
+        outputView.limit(logEncoder.finishBatch(outputBuffer, outputLength));
+        int records = outputRecords;
+        outputLength = 0;
+        outputRecords = 0;
+        flushes.increment();
+        if (bufferResidency != null) {
+            bufferResidency.record(System.nanoTime() - outputStartNanos);
+        }
         try {
-            logWriter.write(outputVal);
-            logWriter.flush();
+            outputView = logWriter.submit(outputView, records);
+            outputBuffer = outputView.array();
         } catch (IOException e) {
+            logWriteFailed = true;
             e.printStackTrace();
         }
     }
 
     /**
-     * Close the log file.
+     * Write out any buffered numbers, force the log to disk, and save a checkpoint of the screener
+     * matching the log. Does nothing if this logger has no checkpoint store. Checkpoints stop being
+     * saved once writing to the log has failed, since the markers would include numbers not in the log.
+     *
+     * The logger's lock is only held to flush the output buffer and copy the markers, so logging carries
+     * on while the log is forced and the copy is written. The copy is kept for the next checkpoint, so a
+     * checkpointing logger holds its markers twice. The checkpoint records the log's position when the
+     * markers were copied. Any batch still queued for an asynchronous writer at that point lands after
+     * it, and is replayed on recovery, which marks its numbers again.
+     *
+     * Thread-safe and will block if multiple threads attempt to checkpoint simultaneously.
+     */
+    public void checkpoint() {
+        if (checkpointStore == null) {
+            return;
+        }
+        synchronized (checkpointLock) {
+            PersistableDataScreener screener = (PersistableDataScreener) dataScreener;
+            long checkpointPosition;
+            synchronized (this) {
+                flushLog();
+                if (logWriteFailed) {
+                    System.out.println("Skipping checkpoint, the log file could not be written");
+                    return;
+                }
+                checkpointPosition = logWriter.getPosition();
+                ByteBuffer markers = screener.getMarkers();
+                if (checkpointMarkers == null || checkpointMarkers.capacity() != markers.remaining()) {
+                    checkpointMarkers = ByteBuffer.allocate(markers.remaining());
+                }
+                checkpointMarkers.clear();
+                checkpointMarkers.put(markers);
+                checkpointMarkers.flip();
+            }
+            try {
+                // Makes at least the checkpointed part of the log durable
+                logWriter.sync();
+                checkpointStore.save(screener.getMaxValue(), checkpointMarkers, checkpointPosition);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Close the log file, after saving a final checkpoint if checkpointing. A log writer shared with
+     * other loggers is closed once they have all closed it.
      * Thread-safe and will block if multiple threads attempt to call simultaneously.
      */
-    public synchronized void closeLog() {
-        IOUtils.closeQuietly(logWriter, null);
+    public void closeLog() {
+        synchronized (checkpointLock) {
+            checkpoint();
+            logWriter.close();
+        }
+    }
+
+    /**
+     * @return the number of batches handed to the log writer
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * Thread-safe and does not block.
+     * @return the unique numbers in the log, including any that were there when the logger was created
+     */
+    public long getTotalUniques() {
+        return initialNumbersLogged + numbersLogged.sum();
+    }
+
+    /**
+     * Thread-safe and does not block.
+     * @return the duplicates screened out since the logger was created, including those recorded with
+     *         recordDuplicates()
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
     }
 
     /**
      * Retrieve a report of the data metrics. Calling this function will reset the metrics
      * that record since the last report was retrieved.
+     *
+     * Thread-safe, and does not block logging.
      * @return
      */
-    public synchronized NumberReport getReport() {
-        NumberReport retVal = new NumberReport(dupesSinceLastReport, loggedSinceLastReport, totalNumbersLogged);
-        dupesSinceLastReport = 0;
-        loggedSinceLastReport = 0;
-        return retVal;
+    public NumberReport getReport() {
+        synchronized (reportLock) {
+            long logged = numbersLogged.sum();
+            long dupes = duplicates.sum();
+            NumberReport retVal = new NumberReport(dupes - reportedDuplicates, logged - reportedNumbersLogged,
+                    initialNumbersLogged + logged);
+            reportedNumbersLogged = logged;
+            reportedDuplicates = dupes;
+            return retVal;
+        }
     }
 }
@@ -1,39 +1,107 @@
 package demo.producerconsumer.logging;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
 
 /**
- * Simple read-only POJO containing metrics for the data seen during this application run.
+ * Simple read-only POJO containing metrics for the data seen during this application run. A report
+ * from a NumberLogger only has the number counts. A report extended by PipelineMetrics also has the
+ * metrics of the rest of the pipeline, which are 0 or empty otherwise.
  */
 public class NumberReport {
-    private final int dupesThisRun;
-    private final int uniquesThisRun;
-    private final int totalUniques;
+    private final long dupesThisRun;
+    private final long uniquesThisRun;
+    private final long totalUniques;
+    private final long numbersReceivedThisRun;
+    private final long invalidDisconnectsThisRun;
+    private final long flushesThisRun;
+    private final long queueDepth;
+    private final int openConnections;
+    private final Map<String, Long> connectionNumbersThisRun;
 
-    public NumberReport(int dupesThisRun, int uniquesThisRun, int totalUniques) {
+    public NumberReport(long dupesThisRun, long uniquesThisRun, long totalUniques) {
+        this(dupesThisRun, uniquesThisRun, totalUniques, 0, 0, 0, 0, 0, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * @param numbersReceivedThisRun: Valid numbers received from clients, before duplicates are removed
+     * @param invalidDisconnectsThisRun: Connections dropped because the client sent an invalid record
+     * @param flushesThisRun: Batches handed to the log writer
+     * @param queueDepth: Numbers waiting in the queues when the report was made
+     * @param openConnections: Client connections open when the report was made
+     * @param connectionNumbersThisRun: Numbers received on each connection that received any, by client address
+     */
+    public NumberReport(long dupesThisRun, long uniquesThisRun, long totalUniques, long numbersReceivedThisRun,
+                        long invalidDisconnectsThisRun, long flushesThisRun, long queueDepth, int openConnections,
+                        Map<String, Long> connectionNumbersThisRun) {
         this.dupesThisRun = dupesThisRun;
         this.uniquesThisRun = uniquesThisRun;
         this.totalUniques = totalUniques;
+        this.numbersReceivedThisRun = numbersReceivedThisRun;
+        this.invalidDisconnectsThisRun = invalidDisconnectsThisRun;
+        this.flushesThisRun = flushesThisRun;
+        this.queueDepth = queueDepth;
+        this.openConnections = openConnections;
+        this.connectionNumbersThisRun = Collections.unmodifiableMap(connectionNumbersThisRun);
     }
 
-    public int getDupesThisRun() {
+    public long getDupesThisRun() {
         return dupesThisRun;
     }
 
-    public int getUniquesThisRun() {
+    public long getUniquesThisRun() {
         return uniquesThisRun;
     }
 
-    public int getTotalUniques() {
+    public long getTotalUniques() {
         return totalUniques;
     }
 
+    public long getNumbersReceivedThisRun() {
+        return numbersReceivedThisRun;
+    }
+
+    public long getInvalidDisconnectsThisRun() {
+        return invalidDisconnectsThisRun;
+    }
+
+    public long getFlushesThisRun() {
+        return flushesThisRun;
+    }
+
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getOpenConnections() {
+        return openConnections;
+    }
+
+    public Map<String, Long> getConnectionNumbersThisRun() {
+        return connectionNumbersThisRun;
+    }
+
+    /**
+     * @return the fraction of the numbers screened this run that were duplicates, or 0 if there were none
+     */
+    public double getDuplicateRate() {
+        long screened = dupesThisRun + uniquesThisRun;
+        return screened == 0 ? 0 : (double) dupesThisRun / screened;
+    }
+
     @Override
     public String toString() {
         return "NumberReport{" +
                 "dupesThisRun=" + dupesThisRun +
                 ", uniquesThisRun=" + uniquesThisRun +
                 ", totalUniques=" + totalUniques +
+                ", numbersReceivedThisRun=" + numbersReceivedThisRun +
+                ", invalidDisconnectsThisRun=" + invalidDisconnectsThisRun +
+                ", flushesThisRun=" + flushesThisRun +
+                ", queueDepth=" + queueDepth +
+                ", openConnections=" + openConnections +
+                ", connectionNumbersThisRun=" + connectionNumbersThisRun +
                 '}';
     }
 
@@ -42,11 +110,16 @@ public class NumberReport {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         NumberReport that = (NumberReport) o;
-        return dupesThisRun == that.dupesThisRun && uniquesThisRun == that.uniquesThisRun && totalUniques == that.totalUniques;
+        return dupesThisRun == that.dupesThisRun && uniquesThisRun == that.uniquesThisRun && totalUniques == that.totalUniques
+                && numbersReceivedThisRun == that.numbersReceivedThisRun
+                && invalidDisconnectsThisRun == that.invalidDisconnectsThisRun && flushesThisRun == that.flushesThisRun
+                && queueDepth == that.queueDepth && openConnections == that.openConnections
+                && connectionNumbersThisRun.equals(that.connectionNumbersThisRun);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(dupesThisRun, uniquesThisRun, totalUniques);
+        return Objects.hash(dupesThisRun, uniquesThisRun, totalUniques, numbersReceivedThisRun,
+                invalidDisconnectsThisRun, flushesThisRun, queueDepth, openConnections, connectionNumbersThisRun);
     }
 }
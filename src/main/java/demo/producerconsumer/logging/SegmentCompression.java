@@ -0,0 +1,11 @@
+package demo.producerconsumer.logging;
+
+/**
+ * How closed log segments are compressed.
+ */
+public enum SegmentCompression {
+    // Left as plain text
+    NONE,
+    // Compressed to a .gz file, which can be read back with gunzip or zcat
+    GZIP
+}
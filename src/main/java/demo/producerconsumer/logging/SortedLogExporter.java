@@ -0,0 +1,228 @@
+package demo.producerconsumer.logging;
+
+import demo.producerconsumer.data.PersistableDataScreener;
+import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.data.UniqueDataScreenerSliceImpl;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Writes every number marked in a screener's bitmap to a log file in ascending order. The screener
+ * already holds the whole de-duplicated set, so scanning its markers gives a sorted log straight away,
+ * instead of sorting the unsorted log after the fact.
+ *
+ * The markers are read as little-endian 64-bit words, so bit n of word w is the marker for value
+ * w * 64 + n, and the values in a word are found with Long.numberOfTrailingZeros, skipping empty words
+ * and unset bits without testing them one at a time. The range is split into chunks which are encoded
+ * in parallel on the common fork-join pool, one wave of chunks at a time, and then written to the file
+ * in order. Each chunk is sized from the number of markers it holds, counted with Long.bitCount, so only
+ * a wave of chunks is held in memory at once.
+ *
+ * The export is written to a temporary file and renamed into place when it is complete. Markers set
+ * while an export is running may or may not be included in it.
+ */
+public class SortedLogExporter {
+    // Marker bytes scanned by a single fork-join task, covering about a million values
+    private static final int CHUNK_BYTES = 1 << 17;
+
+    private final LogFormat logFormat;
+    private final int chunkBytes;
+
+    public SortedLogExporter(LogFormat logFormat) {
+        this(logFormat, CHUNK_BYTES);
+    }
+
+    SortedLogExporter(LogFormat logFormat, int chunkBytes) {
+        this.logFormat = logFormat;
+        // Chunks always hold whole words
+        this.chunkBytes = Math.max(Long.BYTES, chunkBytes & ~(Long.BYTES - 1));
+    }
+
+    /**
+     * Export the numbers marked in each slice of the range, in the order the slices are given.
+     * @param slices: Marker bitmaps, in ascending order of the first value they cover
+     * @param exportFile: File to write the sorted log to, replaced if it exists
+     * @return the number of numbers exported
+     */
+    public long export(List<MarkerSlice> slices, Path exportFile) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (MarkerSlice slice : slices) {
+            int length = slice.markers.remaining();
+            for (int start = 0; start < length; start += chunkBytes) {
+                chunks.add(new Chunk(slice, start, Math.min(length, start + chunkBytes)));
+            }
+        }
+
+        Path absoluteExportFile = exportFile.toAbsolutePath();
+        Path tempFile = absoluteExportFile.resolveSibling(absoluteExportFile.getFileName() + ".tmp");
+        long exported = 0;
+        FileChannel exportChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(exportChannel, ByteBuffer.wrap(createEncoder(0).getFileHeader()));
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            int waveSize = pool.getParallelism() + 1;
+            for (int waveStart = 0; waveStart < chunks.size(); waveStart += waveSize) {
+                List<Chunk> wave = chunks.subList(waveStart, Math.min(chunks.size(), waveStart + waveSize));
+                for (Future<EncodedChunk> encoded : pool.invokeAll(wave)) {
+                    EncodedChunk chunk = getResult(encoded);
+                    writeFully(exportChannel, chunk.bytes);
+                    exported += chunk.records;
+                }
+            }
+            exportChannel.force(false);
+        } finally {
+            IOUtils.closeQuietly(exportChannel, null);
+        }
+
+        try {
+            Files.move(tempFile, absoluteExportFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, absoluteExportFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return exported;
+    }
+
+    private LogEncoder createEncoder(int records) {
+        if (logFormat == LogFormat.BINARY) {
+            return new BinaryLogEncoder(records);
+        }
+        return new TextLogEncoder();
+    }
+
+    private static EncodedChunk getResult(Future<EncodedChunk> encoded) throws IOException {
+        try {
+            return encoded.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted exporting the sorted log", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not export the sorted log", e.getCause());
+        }
+    }
+
+    /**
+     * Get the marker slices of the loggers' screeners, which cover every number that was logged.
+     * @param loggerScreeners: Screener of each shard's logger, in ascending order of their slices, each a
+     *                       PersistableDataScreener or a UniqueDataScreenerSliceImpl of one
+     * @throws IllegalArgumentException if a screener does not keep markers, as when the loggers only pass
+     *                                  on numbers screened by the producers
+     */
+    public static List<MarkerSlice> slicesOf(UniqueDataScreener[] loggerScreeners) {
+        List<MarkerSlice> slices = new ArrayList<>();
+        for (UniqueDataScreener loggerScreener : loggerScreeners) {
+            int firstValue = 0;
+            UniqueDataScreener markerScreener = loggerScreener;
+            if (loggerScreener instanceof UniqueDataScreenerSliceImpl) {
+                firstValue = ((UniqueDataScreenerSliceImpl) loggerScreener).getFirstValue();
+                markerScreener = ((UniqueDataScreenerSliceImpl) loggerScreener).getSliceScreener();
+            }
+            if (!(markerScreener instanceof PersistableDataScreener)) {
+                throw new IllegalArgumentException("Sorted export needs logger screeners that keep markers");
+            }
+            slices.add(new MarkerSlice(firstValue, ((PersistableDataScreener) markerScreener).getMarkers()));
+        }
+        return slices;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * The marker bitmap of one slice of the value range, laid out as in PersistableDataScreener.
+     */
+    public static class MarkerSlice {
+        private final int firstValue;
+        private final ByteBuffer markers;
+
+        /**
+         * @param firstValue: Value of the first marker in the bitmap
+         * @param markers: Marker bytes between the buffer's position and limit
+         */
+        public MarkerSlice(int firstValue, ByteBuffer markers) {
+            this.firstValue = firstValue;
+            this.markers = markers.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static class EncodedChunk {
+        private final ByteBuffer bytes;
+        private final int records;
+
+        EncodedChunk(ByteBuffer bytes, int records) {
+            this.bytes = bytes;
+            this.records = records;
+        }
+    }
+
+    private class Chunk implements Callable<EncodedChunk> {
+        private final MarkerSlice slice;
+        private final int start;
+        private final int end;
+
+        Chunk(MarkerSlice slice, int start, int end) {
+            this.slice = slice;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public EncodedChunk call() {
+            // Each task reads its own view, since a buffer's position is not thread-safe
+            ByteBuffer markers = slice.markers.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int wholeWordsEnd = start + ((end - start) & ~(Long.BYTES - 1));
+
+            int records = 0;
+            for (int offset = start; offset < wholeWordsEnd; offset += Long.BYTES) {
+                records += Long.bitCount(markers.getLong(offset));
+            }
+            for (int offset = wholeWordsEnd; offset < end; offset++) {
+                records += Integer.bitCount(markers.get(offset) & 0xFF);
+            }
+            if (records == 0) {
+                return new EncodedChunk(ByteBuffer.allocate(0), 0);
+            }
+
+            LogEncoder encoder = createEncoder(records);
+            byte[] buffer = new byte[encoder.getMaxBatchLength(records)];
+            int length = 0;
+            for (int offset = start; offset < wholeWordsEnd; offset += Long.BYTES) {
+                long word = markers.getLong(offset);
+                int wordValue = slice.firstValue + offset * 8;
+                while (word != 0) {
+                    length = encoder.append(wordValue + Long.numberOfTrailingZeros(word), buffer, length);
+                    // Clear the lowest set bit
+                    word &= word - 1;
+                }
+            }
+            for (int offset = wholeWordsEnd; offset < end; offset++) {
+                int bits = markers.get(offset) & 0xFF;
+                int byteValue = slice.firstValue + offset * 8;
+                while (bits != 0) {
+                    length = encoder.append(byteValue + Integer.numberOfTrailingZeros(bits), buffer, length);
+                    bits &= bits - 1;
+                }
+            }
+            length = encoder.finishBatch(buffer, length);
+            return new EncodedChunk(ByteBuffer.wrap(buffer, 0, length), records);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package demo.producerconsumer.logging;
+
+/**
+ * Encodes the classic text log: each number as 9 digits with leading zeros, followed by the server-native
+ * line separator. Each record is written into the output buffer as it is appended, in the order the
+ * numbers were logged.
+ */
+public class TextLogEncoder implements LogEncoder {
+
+    @Override
+    public byte[] getFileHeader() {
+        return LogWriter.NO_FILE_HEADER;
+    }
+
+    @Override
+    public int getMaxBatchLength(int records) {
+        return records * NumberLogger.LOG_RECORD_LENGTH;
+    }
+
+    @Override
+    public int append(int number, byte[] buffer, int length) {
+        return LogRecordFormatter.writeRecord(number, buffer, length);
+    }
+
+    @Override
+    public int finishBatch(byte[] buffer, int length) {
+        return length;
+    }
+}
@@ -0,0 +1,63 @@
+package demo.producerconsumer.metrics;
+
+/**
+ * Counts the numbers received on a single client connection. Only the thread that reads the connection
+ * records numbers, so the count is a plain volatile field rather than an atomic, while it may be read
+ * from any thread. Each number is also added to the PipelineMetrics totals the connection belongs to.
+ *
+ * A connection that has closed is kept by its PipelineMetrics until the next report, so the numbers it
+ * received since the last report are still counted.
+ */
+public class ConnectionMetrics {
+    private final String clientAddress;
+    private final PipelineMetrics pipelineMetrics;
+    private volatile long numbersReceived;
+    private volatile boolean closed;
+
+    // Only accessed by PipelineMetrics while it builds a report
+    long reportedNumbers;
+
+    ConnectionMetrics(String clientAddress, PipelineMetrics pipelineMetrics) {
+        this.clientAddress = clientAddress;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    /**
+     * Count the valid numbers parsed from one read of the connection.
+     */
+    public void recordNumbers(int count) {
+        if (count > 0) {
+            numbersReceived += count;
+            pipelineMetrics.recordNumbers(count);
+        }
+    }
+
+    /**
+     * Count the connection being dropped because the client sent an invalid record.
+     */
+    public void recordInvalidInput() {
+        pipelineMetrics.recordInvalidDisconnect();
+    }
+
+    /**
+     * Mark the connection as closed, after which it is dropped from the open connections once reported.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            pipelineMetrics.recordClose();
+        }
+    }
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    public long getNumbersReceived() {
+        return numbersReceived;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
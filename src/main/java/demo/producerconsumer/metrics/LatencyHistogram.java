@@ -0,0 +1,175 @@
+package demo.producerconsumer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of a latency, in nanoseconds, so that its percentiles can be reported.
+ * Latencies are counted in log-scaled buckets in the style of an HDR histogram: each range between two
+ * powers of two is split into 16 equal sub-buckets, so recording a latency is a single atomic increment
+ * and the histogram has a fixed size no matter how many latencies are recorded. A percentile is reported
+ * as the upper bound of the bucket it falls in, which is within about 6% of the real value, and latencies
+ * below 16 ns are counted exactly. The largest latency is tracked exactly.
+ *
+ * The bucket counts only ever grow. getAndReset() returns the latencies recorded since it was last
+ * called, as the difference to the counts it saw then, so each report covers the latencies recorded
+ * since the last one. The running totals can be read at the same time without allocating, for
+ * monitoring that scrapes cumulative counters, and reading them does not disturb the reports.
+ *
+ * Recording and reading the totals are thread-safe and non-blocking. getAndReset() is thread-safe and
+ * only blocks other calls to it.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    // Latencies below 2^SUB_BUCKET_BITS each have their own bucket. Above that, the bucket of a latency
+    // is its power of two and the next SUB_BUCKET_BITS bits below its highest bit.
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLong maxLatency;
+    private final LongAdder totalLatency;
+    // Bucket counts at the last getAndReset(), guarded by this
+    private final long[] reportedCounts;
+
+    public LatencyHistogram() {
+        this.bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+        this.maxLatency = new AtomicLong();
+        this.totalLatency = new LongAdder();
+        this.reportedCounts = new long[BUCKET_COUNT];
+    }
+
+    /**
+     * @param latencyNanos: Latency to record, negative values are recorded as 0
+     */
+    public void record(long latencyNanos) {
+        long latency = Math.max(0, latencyNanos);
+        bucketCounts.incrementAndGet(bucketOf(latency));
+        maxLatency.accumulateAndGet(latency, Math::max);
+        totalLatency.add(latency);
+    }
+
+    static int bucketOf(long latency) {
+        if (latency < SUB_BUCKETS) {
+            return (int) latency;
+        }
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(latency);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((latency >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        // The top bucket ends at Long.MAX_VALUE, which this wraps around to
+        return lowerBound + ((1L << shift) - 1);
+    }
+
+    /**
+     * Retrieve the latencies recorded since the last call. Does not change the running totals.
+     */
+    public synchronized Snapshot getAndReset() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            long count = bucketCounts.get(bucket);
+            counts[bucket] = count - reportedCounts[bucket];
+            reportedCounts[bucket] = count;
+        }
+        return new Snapshot(counts, maxLatency.getAndSet(0));
+    }
+
+    /**
+     * @return the number of latencies recorded since the histogram was created
+     */
+    @Override
+    public long getTotalCount() {
+        return countBuckets(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return the sum of every latency recorded since the histogram was created
+     */
+    @Override
+    public long getTotalNanos() {
+        return totalLatency.sum();
+    }
+
+    /**
+     * Count the latencies recorded since the histogram was created that are no larger than a bound. Only
+     * buckets that end at or below the bound are counted, so latencies just below it can be left out when
+     * the bound falls inside a bucket.
+     * @param latencyNanos: Bound on the latencies to count
+     */
+    public long getTotalCountAtOrBelow(long latencyNanos) {
+        if (latencyNanos < 0) {
+            return 0;
+        }
+        int lastBucket = bucketOf(latencyNanos);
+        if (upperBoundOf(lastBucket) != latencyNanos && lastBucket != BUCKET_COUNT - 1) {
+            lastBucket--;
+        }
+        return countBuckets(lastBucket);
+    }
+
+    private long countBuckets(int lastBucket) {
+        long count = 0;
+        for (int bucket = 0; bucket <= lastBucket; bucket++) {
+            count += bucketCounts.get(bucket);
+        }
+        return count;
+    }
+
+    /**
+     * The latencies recorded by a histogram over one period.
+     */
+    public static class Snapshot {
+        private final long[] bucketCounts;
+        private final long maxLatency;
+        private final long count;
+
+        Snapshot(long[] bucketCounts, long maxLatency) {
+            this.bucketCounts = bucketCounts;
+            this.maxLatency = maxLatency;
+            long total = 0;
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            this.count = total;
+        }
+
+        /**
+         * @return the number of latencies recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the largest latency recorded, or 0 if none were
+         */
+        public long getMax() {
+            return maxLatency;
+        }
+
+        /**
+         * @param percentile: Percentage of latencies, from 0 to 100, that are no larger than the result
+         * @return the upper bound of the bucket holding the percentile, no larger than the maximum
+         *         latency, or 0 if no latencies were recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                seen += bucketCounts[bucket];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(bucket), maxLatency);
+                }
+            }
+            return 0;
+        }
+    }
+}
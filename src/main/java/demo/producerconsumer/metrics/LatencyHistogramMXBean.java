@@ -0,0 +1,11 @@
+package demo.producerconsumer.metrics;
+
+/**
+ * Running totals of a LatencyHistogram, exposed over JMX. A mean latency over any period can be
+ * worked out from the change in both totals.
+ */
+public interface LatencyHistogramMXBean {
+    long getTotalCount();
+
+    long getTotalNanos();
+}
@@ -0,0 +1,170 @@
+package demo.producerconsumer.metrics;
+
+import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.logging.NumberReport;
+import demo.producerconsumer.queue.NumberQueue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics for the whole pipeline, from the client connections to the log. Counters that every producer
+ * updates are LongAdders, which spread concurrent increments over separate cells instead of contending
+ * on one value, and are only added up when a report is built. Everything else is read from the parts
+ * of the pipeline that already track it: flushes from each shard's NumberLogger, and queue depth from
+ * each shard's queue. The stage latency histograms that the parts of the pipeline record in are kept
+ * here too, so that they can be reported together.
+ *
+ * Counters only ever grow, and a report is built from the difference to the values at the last report,
+ * so building one never stops or resets anything the pipeline is writing to. Counts made while a report
+ * is being built are included in either that report or the next one.
+ *
+ * Recording is thread-safe and non-blocking. Building a report is thread-safe and only blocks other
+ * reports.
+ */
+public class PipelineMetrics {
+    private final NumberLogger[] shardLoggers;
+    private final NumberQueue[] shardQueues;
+    private final StageLatencies stageLatencies;
+    private final LongAdder numbersReceived;
+    private final LongAdder invalidDisconnects;
+    private final Set<ConnectionMetrics> connections;
+    private final AtomicInteger openConnections;
+
+    // Values at the last report, guarded by this
+    private long reportedNumbersReceived;
+    private long reportedInvalidDisconnects;
+    private long reportedFlushes;
+
+    /**
+     * @param shardLoggers: Logger of each consumer shard, whose flushes are reported
+     * @param shardQueues: Queue of each consumer shard, whose depth is reported
+     */
+    public PipelineMetrics(NumberLogger[] shardLoggers, NumberQueue[] shardQueues) {
+        this(shardLoggers, shardQueues, new StageLatencies(shardQueues.length));
+    }
+
+    /**
+     * @param stageLatencies: Latencies of each stage, with a queue wait probe for every shard
+     */
+    public PipelineMetrics(NumberLogger[] shardLoggers, NumberQueue[] shardQueues, StageLatencies stageLatencies) {
+        this.shardLoggers = shardLoggers;
+        this.shardQueues = shardQueues;
+        this.stageLatencies = stageLatencies;
+        this.numbersReceived = new LongAdder();
+        this.invalidDisconnects = new LongAdder();
+        this.connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        this.openConnections = new AtomicInteger();
+    }
+
+    /**
+     * Start counting a new client connection. The caller must close the returned metrics when the
+     * connection closes.
+     * @param clientAddress: Address of the client, used to identify the connection in reports
+     */
+    public ConnectionMetrics openConnection(String clientAddress) {
+        ConnectionMetrics connectionMetrics = new ConnectionMetrics(clientAddress, this);
+        connections.add(connectionMetrics);
+        openConnections.incrementAndGet();
+        return connectionMetrics;
+    }
+
+    public StageLatencies getStageLatencies() {
+        return stageLatencies;
+    }
+
+    void recordNumbers(int count) {
+        numbersReceived.add(count);
+    }
+
+    void recordInvalidDisconnect() {
+        invalidDisconnects.increment();
+    }
+
+    void recordClose() {
+        openConnections.decrementAndGet();
+    }
+
+    /**
+     * @return the valid numbers received on every connection, before duplicates are removed
+     */
+    public long getNumbersReceived() {
+        return numbersReceived.sum();
+    }
+
+    /**
+     * @return the connections dropped because the client sent an invalid record
+     */
+    public long getInvalidDisconnects() {
+        return invalidDisconnects.sum();
+    }
+
+    /**
+     * @return the batches every shard has handed to the log writer
+     */
+    public long getFlushCount() {
+        long flushes = 0;
+        for (NumberLogger shardLogger : shardLoggers) {
+            flushes += shardLogger.getFlushCount();
+        }
+        return flushes;
+    }
+
+    /**
+     * @return an estimate of the numbers waiting in every shard's queue
+     */
+    public long getQueueDepth() {
+        long depth = 0;
+        for (NumberQueue shardQueue : shardQueues) {
+            depth += shardQueue.size();
+        }
+        return depth;
+    }
+
+    public int getOpenConnectionCount() {
+        return openConnections.get();
+    }
+
+    /**
+     * Extend a report of the numbers logged with the pipeline's metrics since the last report: the numbers
+     * received in total and on each connection that received any, invalid-input disconnects and flushes,
+     * along with the current queue depth and open connections. Connections that have closed are dropped
+     * once they have been reported.
+     * @param numberReport: Report of the numbers logged by every shard since the last report
+     */
+    public synchronized NumberReport getReport(NumberReport numberReport) {
+        Map<String, Long> connectionNumbers = new LinkedHashMap<>();
+        int openConnections = 0;
+        for (ConnectionMetrics connectionMetrics : connections) {
+            // Read closed first, so no numbers received before the close are missed
+            boolean closed = connectionMetrics.isClosed();
+            long received = connectionMetrics.getNumbersReceived();
+            if (received > connectionMetrics.reportedNumbers) {
+                connectionNumbers.put(connectionMetrics.getClientAddress(), received - connectionMetrics.reportedNumbers);
+                connectionMetrics.reportedNumbers = received;
+            }
+            if (closed) {
+                connections.remove(connectionMetrics);
+            }
+            else {
+                openConnections++;
+            }
+        }
+
+        long received = getNumbersReceived();
+        long invalid = getInvalidDisconnects();
+        long flushes = getFlushCount();
+        NumberReport report = new NumberReport(numberReport.getDupesThisRun(), numberReport.getUniquesThisRun(),
+                numberReport.getTotalUniques(), received - reportedNumbersReceived, invalid - reportedInvalidDisconnects,
+                flushes - reportedFlushes, getQueueDepth(), openConnections, connectionNumbers);
+        reportedNumbersReceived = received;
+        reportedInvalidDisconnects = invalid;
+        reportedFlushes = flushes;
+        return report;
+    }
+}
@@ -0,0 +1,178 @@
+package demo.producerconsumer.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Writes metrics in the Prometheus text exposition format into a reusable byte buffer. Names, help
+ * text and label values are expected to be ASCII constants, and are copied a character at a time, while
+ * numbers are written digit by digit, so writing metrics creates no objects. The buffer grows if a
+ * response does not fit, so once it has grown to fit the largest response it is reused as it is.
+ *
+ * Latencies are written as histograms in seconds, with the buckets in LATENCY_BUCKET_NANOS.
+ *
+ * This class is not thread-safe.
+ */
+public class PrometheusTextWriter {
+    // Upper bounds of the histogram buckets, from 1 us to 10 s, and the same bounds as written in seconds
+    private static final long[] LATENCY_BUCKET_NANOS = {
+            1_000L, 5_000L, 10_000L, 50_000L, 100_000L, 500_000L, 1_000_000L, 5_000_000L, 10_000_000L,
+            50_000_000L, 100_000_000L, 500_000_000L, 1_000_000_000L, 5_000_000_000L, 10_000_000_000L};
+    private static final String[] LATENCY_BUCKET_LABELS = {
+            "0.000001", "0.000005", "0.00001", "0.00005", "0.0001", "0.0005", "0.001", "0.005", "0.01",
+            "0.05", "0.1", "0.5", "1", "5", "10"};
+    private static final int NANOS_PER_SECOND_DIGITS = 9;
+
+    private byte[] buffer;
+    private int length;
+    // Digits of a number are written here backwards, then copied to the buffer in order
+    private final byte[] digits;
+
+    /**
+     * @param initialCapacity: Size in bytes of the buffer, which grows if a response does not fit
+     */
+    public PrometheusTextWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(1, initialCapacity)];
+        this.digits = new byte[20];
+    }
+
+    /**
+     * Empty the buffer, to start writing the next response.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * @return the buffer holding the response, which is only valid up to getLength()
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Write a counter that only ever grows.
+     */
+    public void writeCounter(String name, String help, long value) {
+        writeHeader(name, help, "counter");
+        append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Write a counter of time, given in nanoseconds and written in seconds.
+     */
+    public void writeCounterSeconds(String name, String help, long nanos) {
+        writeHeader(name, help, "counter");
+        append(name).append(' ').appendSeconds(nanos).append('\n');
+    }
+
+    /**
+     * Write a gauge, which can go up and down.
+     */
+    public void writeGauge(String name, String help, long value) {
+        writeHeader(name, help, "gauge");
+        append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Write the help and type of a histogram, to be followed by one or more writeHistogram() calls
+     * with the same name.
+     */
+    public void writeHistogramHeader(String name, String help) {
+        writeHeader(name, help, "histogram");
+    }
+
+    /**
+     * Write the buckets, sum and count of a latency histogram, in seconds, labelled to tell it apart from
+     * the other histograms with the same name.
+     */
+    public void writeHistogram(String name, String labelName, String labelValue, LatencyHistogram histogram) {
+        for (int bucket = 0; bucket < LATENCY_BUCKET_NANOS.length; bucket++) {
+            long count = histogram.getTotalCountAtOrBelow(LATENCY_BUCKET_NANOS[bucket]);
+            writeBucket(name, labelName, labelValue, LATENCY_BUCKET_LABELS[bucket], count);
+        }
+        // Read after the buckets, so counts that grew in the meantime keep the buckets cumulative
+        long totalCount = histogram.getTotalCount();
+        writeBucket(name, labelName, labelValue, "+Inf", totalCount);
+        append(name).append("_sum{").append(labelName).append("=\"").append(labelValue).append("\"} ")
+                .appendSeconds(histogram.getTotalNanos()).append('\n');
+        append(name).append("_count{").append(labelName).append("=\"").append(labelValue).append("\"} ")
+                .append(totalCount).append('\n');
+    }
+
+    private void writeBucket(String name, String labelName, String labelValue, String bound, long count) {
+        append(name).append("_bucket{").append(labelName).append("=\"").append(labelValue).append("\",le=\"")
+                .append(bound).append("\"} ").append(count).append('\n');
+    }
+
+    private void writeHeader(String name, String help, String type) {
+        append("# HELP ").append(name).append(' ').append(help).append('\n');
+        append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Append an ASCII string.
+     */
+    public PrometheusTextWriter append(String text) {
+        int textLength = text.length();
+        ensureCapacity(textLength);
+        for (int i = 0; i < textLength; i++) {
+            buffer[length++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    public PrometheusTextWriter append(char character) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) character;
+        return this;
+    }
+
+    /**
+     * Append a number in decimal.
+     */
+    public PrometheusTextWriter append(long value) {
+        if (value < 0) {
+            append('-');
+        }
+        // Digits are taken off the negative value, which also covers Long.MIN_VALUE
+        long remaining = value < 0 ? value : -value;
+        int digitCount = 0;
+        do {
+            digits[digitCount++] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        ensureCapacity(digitCount);
+        while (digitCount > 0) {
+            buffer[length++] = digits[--digitCount];
+        }
+        return this;
+    }
+
+    /**
+     * Append a time given in nanoseconds as a decimal number of seconds.
+     */
+    private PrometheusTextWriter appendSeconds(long nanos) {
+        long fraction = Math.abs(nanos % 1_000_000_000L);
+        if (nanos < 0 && nanos > -1_000_000_000L) {
+            append('-');
+        }
+        append(nanos / 1_000_000_000L).append('.');
+        ensureCapacity(NANOS_PER_SECOND_DIGITS);
+        for (int digit = NANOS_PER_SECOND_DIGITS - 1; digit >= 0; digit--) {
+            buffer[length + digit] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        length += NANOS_PER_SECOND_DIGITS;
+        return this;
+    }
+
+    private void ensureCapacity(int extraBytes) {
+        if (length + extraBytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extraBytes));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package demo.producerconsumer.metrics;
+
+import demo.producerconsumer.queue.NumberQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples how long numbers wait in one shard's queue, without putting timestamps in the queue. After
+ * publishing a batch, a producer takes a sample if none is in progress, noting the time and the position
+ * of the end of the batch: the numbers drained from the queue so far plus the numbers in it. The consumer
+ * counts every number it drains, and once the count reaches that position the time since the sample is
+ * recorded in the queue wait histogram. So there is at most one sample per shard in progress, and each
+ * costs two reads of the clock.
+ *
+ * The drained count is read before the queue size, so numbers drained in between make the position
+ * slightly early rather than past the end of the batch. The consumer may drain the whole batch while a
+ * producer is still taking the sample, so the producer checks the count again once the sample is
+ * pending, and whichever of the two sees the batch drained first records it. A sample is therefore
+ * never left waiting for later traffic with its batch already gone.
+ *
+ * The queue size is an estimate, and can include numbers other producers queued just after the batch,
+ * so the wait recorded can be slightly longer than the batch's own wait.
+ *
+ * Any number of producers can take samples at the same time, but only the shard's consumer may
+ * count drained numbers.
+ */
+public class QueueWaitProbe {
+    private static final int IDLE = 0;
+    private static final int CLAIMED = 1;
+    private static final int PENDING = 2;
+    // Held while checking a pending sample, so its fields cannot be replaced by a new sample meanwhile
+    private static final int COMPLETING = 3;
+
+    private final LatencyHistogram queueWait;
+    private final AtomicInteger state;
+    // Numbers the consumer has drained from the queue, which only ever grows
+    private final AtomicLong drained;
+    // Written by the producer that claimed the sample before it is PENDING, and only read after that
+    private long sampleNanos;
+    private long drainedTarget;
+
+    /**
+     * @param queueWait: Histogram the sampled waits are recorded in
+     */
+    public QueueWaitProbe(LatencyHistogram queueWait) {
+        this.queueWait = queueWait;
+        this.state = new AtomicInteger(IDLE);
+        this.drained = new AtomicLong();
+    }
+
+    /**
+     * Start a sample at the end of a batch that was just published to the queue, unless a sample is
+     * already in progress. Called by producers.
+     */
+    public void sampleQueued(NumberQueue queue) {
+        if (state.get() != IDLE || !state.compareAndSet(IDLE, CLAIMED)) {
+            return;
+        }
+        sampleNanos = System.nanoTime();
+        long drainedSoFar = drained.get();
+        int numbersAhead = queue.size();
+        // If the consumer has already drained the batch, there is nothing left to time
+        if (numbersAhead <= 0) {
+            state.set(IDLE);
+            return;
+        }
+        drainedTarget = drainedSoFar + numbersAhead;
+        state.set(PENDING);
+        // The consumer skips the sample while it is claimed, so it may have drained the batch already
+        tryRecord();
+    }
+
+    /**
+     * Count numbers drained from the queue, and record the sample once they reach the end of its batch.
+     * Called by the consumer.
+     */
+    public void recordDrained(int count) {
+        drained.addAndGet(count);
+        if (state.get() == PENDING) {
+            tryRecord();
+        }
+    }
+
+    private void tryRecord() {
+        while (state.compareAndSet(PENDING, COMPLETING)) {
+            if (drained.get() >= drainedTarget) {
+                queueWait.record(System.nanoTime() - sampleNanos);
+                state.set(IDLE);
+                return;
+            }
+            state.set(PENDING);
+            // The consumer skips the sample while it is being checked, so check again for its last drain
+            if (drained.get() < drainedTarget) {
+                return;
+            }
+        }
+    }
+}
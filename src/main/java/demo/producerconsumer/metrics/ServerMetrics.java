@@ -0,0 +1,207 @@
+package demo.producerconsumer.metrics;
+
+import demo.producerconsumer.consumer.wait.WaitStrategy;
+import demo.producerconsumer.logging.AsyncLogWriter;
+import demo.producerconsumer.logging.LogWriter;
+import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.producer.BackpressureGate;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics the ServerReporter prints, as running totals and current values that monitoring can poll:
+ * registered as MBeans for JMX, and written in the Prometheus text format for a MetricsHttpServer to
+ * serve. Unlike the reports, reading the metrics does not reset anything, so any number of monitors can
+ * read them without affecting each other or the reports.
+ *
+ * Every value is read from counters that the pipeline updates without locks, so reading the metrics
+ * never takes the locks of the loggers or the log writer, and writing them in the Prometheus format
+ * creates no objects.
+ *
+ * All operations on this class are thread-safe, except writePrometheus(), which may only be called by
+ * the thread that owns the PrometheusTextWriter.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final String JMX_DOMAIN = "demo.producerconsumer";
+    private static final String STAGE_LATENCY_METRIC = "producerconsumer_stage_latency_seconds";
+
+    private final NumberLogger[] shardLoggers;
+    private final WaitStrategy[] consumerWaitStrategies;
+    private final BackpressureGate backpressureGate;
+    // Null unless the log is written asynchronously
+    private final AsyncLogWriter asyncLogWriter;
+    private final PipelineMetrics pipelineMetrics;
+    private final String[] stageNames;
+    private final LatencyHistogram[] stageLatencies;
+
+    /**
+     * @param backpressureGate: Gate whose throttling is reported, or null if backpressure is not used
+     * @param logWriter: Writer whose write and fsync latencies are reported, or null to not report them
+     */
+    public ServerMetrics(NumberLogger[] shardLoggers, WaitStrategy[] consumerWaitStrategies,
+                         BackpressureGate backpressureGate, LogWriter logWriter, PipelineMetrics pipelineMetrics) {
+        this.shardLoggers = shardLoggers;
+        this.consumerWaitStrategies = consumerWaitStrategies;
+        this.backpressureGate = backpressureGate;
+        this.asyncLogWriter = logWriter instanceof AsyncLogWriter ? (AsyncLogWriter) logWriter : null;
+        this.pipelineMetrics = pipelineMetrics;
+
+        StageLatencies stages = pipelineMetrics.getStageLatencies();
+        if (logWriter != null) {
+            this.stageNames = new String[] {"parse", "queue_wait", "dedup", "buffer", "write", "fsync"};
+            this.stageLatencies = new LatencyHistogram[] {stages.getParseLatency(), stages.getQueueWaitLatency(),
+                    stages.getDedupLatency(), stages.getBufferResidency(), logWriter.getWriteLatency(),
+                    logWriter.getSyncLatency()};
+        }
+        else {
+            this.stageNames = new String[] {"parse", "queue_wait", "dedup", "buffer"};
+            this.stageLatencies = new LatencyHistogram[] {stages.getParseLatency(), stages.getQueueWaitLatency(),
+                    stages.getDedupLatency(), stages.getBufferResidency()};
+        }
+    }
+
+    /**
+     * Register these metrics as demo.producerconsumer:type=Server, and the latency of each stage as
+     * demo.producerconsumer:type=StageLatency,stage=[stage].
+     */
+    public void registerMBeans(MBeanServer mBeanServer) throws JMException {
+        mBeanServer.registerMBean(this, new ObjectName(JMX_DOMAIN + ":type=Server"));
+        for (int stage = 0; stage < stageNames.length; stage++) {
+            mBeanServer.registerMBean(stageLatencies[stage],
+                    new ObjectName(JMX_DOMAIN + ":type=StageLatency,stage=" + stageNames[stage]));
+        }
+    }
+
+    /**
+     * Write every metric to the end of the writer's buffer in the Prometheus text format.
+     */
+    public void writePrometheus(PrometheusTextWriter writer) {
+        writer.writeCounter("producerconsumer_numbers_received_total",
+                "Valid numbers received from clients, before duplicates are removed.", getNumbersReceived());
+        writer.writeGauge("producerconsumer_unique_numbers",
+                "Unique numbers in the log, including any logged before the server started.", getTotalUniques());
+        writer.writeCounter("producerconsumer_duplicates_total", "Duplicate numbers screened out.", getDuplicates());
+        writer.writeCounter("producerconsumer_invalid_disconnects_total",
+                "Client connections dropped because the client sent an invalid record.", getInvalidDisconnects());
+        writer.writeCounter("producerconsumer_log_flushes_total", "Batches handed to the log writer.", getLogFlushes());
+        writer.writeGauge("producerconsumer_queue_depth", "Numbers waiting in the queues.", getQueueDepth());
+        writer.writeGauge("producerconsumer_open_connections", "Open client connections.", getOpenConnections());
+        writer.writeCounter("producerconsumer_consumer_idle_spins_total",
+                "Times the consumers spun on an empty queue.", getConsumerIdleSpins());
+        writer.writeCounter("producerconsumer_consumer_yields_total",
+                "Times the consumers yielded the CPU while waiting for input.", getConsumerYields());
+        writer.writeCounter("producerconsumer_consumer_parks_total",
+                "Times the consumers parked or blocked while waiting for input.", getConsumerParks());
+        if (backpressureGate != null) {
+            writer.writeCounter("producerconsumer_backpressure_throttles_total",
+                    "Times client connections were throttled by backpressure.", backpressureGate.getTotalThrottleCount());
+            writer.writeCounterSeconds("producerconsumer_backpressure_throttled_seconds_total",
+                    "Time client connections spent throttled by backpressure.", backpressureGate.getTotalThrottledNanos());
+        }
+        if (asyncLogWriter != null) {
+            writer.writeCounter("producerconsumer_log_writer_stalls_total",
+                    "Times a logger waited for the log writer to free a buffer.", asyncLogWriter.getStallCount());
+            writer.writeCounterSeconds("producerconsumer_log_writer_stalled_seconds_total",
+                    "Time loggers spent waiting for the log writer to free a buffer.", asyncLogWriter.getTotalStallNanos());
+        }
+
+        writer.writeHistogramHeader(STAGE_LATENCY_METRIC,
+                "Latency of each stage from reading client input to writing the log, timed once per batch.");
+        for (int stage = 0; stage < stageNames.length; stage++) {
+            writer.writeHistogram(STAGE_LATENCY_METRIC, "stage", stageNames[stage], stageLatencies[stage]);
+        }
+    }
+
+    @Override
+    public long getNumbersReceived() {
+        return pipelineMetrics.getNumbersReceived();
+    }
+
+    @Override
+    public long getTotalUniques() {
+        long totalUniques = 0;
+        for (NumberLogger shardLogger : shardLoggers) {
+            totalUniques += shardLogger.getTotalUniques();
+        }
+        return totalUniques;
+    }
+
+    @Override
+    public long getDuplicates() {
+        long duplicates = 0;
+        for (NumberLogger shardLogger : shardLoggers) {
+            duplicates += shardLogger.getDuplicateCount();
+        }
+        return duplicates;
+    }
+
+    @Override
+    public long getInvalidDisconnects() {
+        return pipelineMetrics.getInvalidDisconnects();
+    }
+
+    @Override
+    public long getLogFlushes() {
+        return pipelineMetrics.getFlushCount();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return pipelineMetrics.getQueueDepth();
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return pipelineMetrics.getOpenConnectionCount();
+    }
+
+    @Override
+    public long getConsumerIdleSpins() {
+        long idleSpins = 0;
+        for (WaitStrategy consumerWaitStrategy : consumerWaitStrategies) {
+            idleSpins += consumerWaitStrategy.getIdleSpinCount();
+        }
+        return idleSpins;
+    }
+
+    @Override
+    public long getConsumerYields() {
+        long yields = 0;
+        for (WaitStrategy consumerWaitStrategy : consumerWaitStrategies) {
+            yields += consumerWaitStrategy.getYieldCount();
+        }
+        return yields;
+    }
+
+    @Override
+    public long getConsumerParks() {
+        long parks = 0;
+        for (WaitStrategy consumerWaitStrategy : consumerWaitStrategies) {
+            parks += consumerWaitStrategy.getParkCount();
+        }
+        return parks;
+    }
+
+    @Override
+    public long getThrottleCount() {
+        return backpressureGate == null ? 0 : backpressureGate.getTotalThrottleCount();
+    }
+
+    @Override
+    public long getThrottledMillis() {
+        return backpressureGate == null ? 0 : TimeUnit.NANOSECONDS.toMillis(backpressureGate.getTotalThrottledNanos());
+    }
+
+    @Override
+    public long getLogWriterStalls() {
+        return asyncLogWriter == null ? 0 : asyncLogWriter.getStallCount();
+    }
+
+    @Override
+    public long getLogWriterStalledMillis() {
+        return asyncLogWriter == null ? 0 : TimeUnit.NANOSECONDS.toMillis(asyncLogWriter.getTotalStallNanos());
+    }
+}
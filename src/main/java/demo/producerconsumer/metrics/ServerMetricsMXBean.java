@@ -0,0 +1,35 @@
+package demo.producerconsumer.metrics;
+
+/**
+ * Running totals and current values of the server's metrics, exposed over JMX. Counters only ever grow
+ * while the server runs, so a rate over any period is the change in a counter divided by the period.
+ */
+public interface ServerMetricsMXBean {
+    long getNumbersReceived();
+
+    long getTotalUniques();
+
+    long getDuplicates();
+
+    long getInvalidDisconnects();
+
+    long getLogFlushes();
+
+    long getQueueDepth();
+
+    int getOpenConnections();
+
+    long getConsumerIdleSpins();
+
+    long getConsumerYields();
+
+    long getConsumerParks();
+
+    long getThrottleCount();
+
+    long getThrottledMillis();
+
+    long getLogWriterStalls();
+
+    long getLogWriterStalledMillis();
+}
@@ -0,0 +1,63 @@
+package demo.producerconsumer.metrics;
+
+/**
+ * Latency histograms for the stages a number passes through between being read from a client and
+ * being written to the log. Each stage is timed once per batch rather than once per number, so the
+ * clock is read a few times per batch at most:
+ *
+ * - Parse: parsing the bytes of one read from a client connection.
+ * - Queue wait: from a batch being published to a shard's queue until the consumer has drained it,
+ *   sampled by each shard's QueueWaitProbe.
+ * - Dedup: screening and buffering one batch drained from a queue.
+ * - Buffer residency: from the first number going into a logger's output buffer until the buffer is
+ *   handed to the log writer.
+ *
+ * The time from a buffer being handed to the log writer until it is written, and the time taken by
+ * fsync, are recorded by the LogWriter itself.
+ *
+ * All operations on this class are thread-safe.
+ */
+public class StageLatencies {
+    private final LatencyHistogram parseLatency;
+    private final LatencyHistogram queueWaitLatency;
+    private final LatencyHistogram dedupLatency;
+    private final LatencyHistogram bufferResidency;
+    private final QueueWaitProbe[] queueWaitProbes;
+
+    /**
+     * @param shardCount: Number of consumer shards, each with its own queue to probe
+     */
+    public StageLatencies(int shardCount) {
+        this.parseLatency = new LatencyHistogram();
+        this.queueWaitLatency = new LatencyHistogram();
+        this.dedupLatency = new LatencyHistogram();
+        this.bufferResidency = new LatencyHistogram();
+        this.queueWaitProbes = new QueueWaitProbe[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            queueWaitProbes[shard] = new QueueWaitProbe(queueWaitLatency);
+        }
+    }
+
+    public LatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+
+    public LatencyHistogram getQueueWaitLatency() {
+        return queueWaitLatency;
+    }
+
+    public LatencyHistogram getDedupLatency() {
+        return dedupLatency;
+    }
+
+    public LatencyHistogram getBufferResidency() {
+        return bufferResidency;
+    }
+
+    /**
+     * @return the probe for the queue of the given shard, which all of the shard's queue waits are recorded by
+     */
+    public QueueWaitProbe getQueueWaitProbe(int shard) {
+        return queueWaitProbes[shard];
+    }
+}
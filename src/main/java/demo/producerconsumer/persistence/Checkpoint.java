@@ -0,0 +1,35 @@
+package demo.producerconsumer.persistence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Simple read-only POJO for a checkpoint loaded from disk: the screener markers that were saved, and
+ * the length of the log file they match. Every number in the log up to that length is marked, and
+ * nothing after it is.
+ */
+public class Checkpoint {
+    private final int maxValue;
+    private final long logOffset;
+    private final ByteBuffer markers;
+
+    public Checkpoint(int maxValue, long logOffset, ByteBuffer markers) {
+        this.maxValue = maxValue;
+        this.logOffset = logOffset;
+        this.markers = markers;
+    }
+
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    public long getLogOffset() {
+        return logOffset;
+    }
+
+    /**
+     * @return a read-only view of the saved marker bytes
+     */
+    public ByteBuffer getMarkers() {
+        return markers.duplicate();
+    }
+}
@@ -0,0 +1,151 @@
+package demo.producerconsumer.persistence;
+
+import demo.producerconsumer.data.PersistableDataScreener;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves and loads checkpoints of a screener's markers. A checkpoint file is a fixed size header followed
+ * by the raw marker bytes:
+ *
+ *   magic (8 bytes), format version (int), screener max value (int), log offset (long),
+ *   marker length (long), CRC32 of the marker bytes (long)
+ *
+ * A checkpoint is written to a temporary file, forced to disk, and then renamed over the previous
+ * checkpoint, so a crash part way through writing leaves the previous checkpoint in place. The rename
+ * is atomic on file systems that support it.
+ *
+ * Loading maps the file instead of reading it, and only checks the header and CRC, so the time to load
+ * depends on the size of the marker bitmap and not on how many numbers were logged. A file that is
+ * missing, truncated, or fails its checks is reported and treated as not existing.
+ */
+public class CheckpointStore {
+    private static final long MAGIC = 0x5043434B50543031L; // "PCCKPT01"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 40;
+
+    private final Path checkpointFile;
+    private final Path tempFile;
+
+    public CheckpointStore(Path checkpointFile) {
+        this.checkpointFile = checkpointFile.toAbsolutePath();
+        this.tempFile = this.checkpointFile.resolveSibling(this.checkpointFile.getFileName() + ".tmp");
+    }
+
+    /**
+     * Write a checkpoint of the screener's markers. The caller must make sure the screener is not
+     * changed while this runs, and that the log is on disk up to logOffset.
+     * @param logOffset: Length of the log file that the markers match
+     */
+    public void save(PersistableDataScreener screener, long logOffset) throws IOException {
+        save(screener.getMaxValue(), screener.getMarkers(), logOffset);
+    }
+
+    /**
+     * Write a checkpoint of markers copied from a screener, so the screener can carry on being used
+     * while the checkpoint is written. The log must be on disk up to logOffset.
+     * @param maxValue: Largest value of the screener the markers were copied from
+     * @param markers: Marker bytes between the buffer's position and limit, which are not changed
+     * @param logOffset: Length of the log file that the markers match
+     */
+    public void save(int maxValue, ByteBuffer markers, long logOffset) throws IOException {
+        markers = markers.duplicate();
+        CRC32 crc = new CRC32();
+        crc.update(markers.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putLong(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(maxValue)
+                .putLong(logOffset)
+                .putLong(markers.remaining())
+                .putLong(crc.getValue());
+        header.flip();
+
+        FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            while (header.hasRemaining()) {
+                tempChannel.write(header);
+            }
+            while (markers.hasRemaining()) {
+                tempChannel.write(markers);
+            }
+            tempChannel.force(true);
+        } finally {
+            IOUtils.closeQuietly(tempChannel, null);
+        }
+
+        try {
+            Files.move(tempFile, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+    }
+
+    /**
+     * Load the last checkpoint that was saved.
+     * @return the checkpoint, or null if there is no usable checkpoint
+     */
+    public Checkpoint load() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(checkpointFile, StandardOpenOption.READ)) {
+            long fileLength = channel.size();
+            if (fileLength < HEADER_LENGTH) {
+                System.out.println("Ignoring checkpoint " + checkpointFile + ": file is truncated");
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            long magic = mapped.getLong();
+            int version = mapped.getInt();
+            int maxValue = mapped.getInt();
+            long logOffset = mapped.getLong();
+            long markerLength = mapped.getLong();
+            long expectedCrc = mapped.getLong();
+            if (magic != MAGIC || version != FORMAT_VERSION) {
+                System.out.println("Ignoring checkpoint " + checkpointFile + ": not a checkpoint file");
+                return null;
+            }
+            if (markerLength != fileLength - HEADER_LENGTH || logOffset < 0) {
+                System.out.println("Ignoring checkpoint " + checkpointFile + ": file is truncated");
+                return null;
+            }
+
+            ByteBuffer markers = mapped.slice().asReadOnlyBuffer();
+            CRC32 crc = new CRC32();
+            crc.update(markers.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                System.out.println("Ignoring checkpoint " + checkpointFile + ": checksum does not match");
+                return null;
+            }
+            return new Checkpoint(maxValue, logOffset, markers);
+        }
+    }
+
+    /**
+     * Force the rename of the checkpoint file to disk. Not every platform allows a directory to be
+     * opened, in which case the rename will reach the disk whenever the file system next syncs.
+     */
+    private void syncDirectory() {
+        Path directory = checkpointFile.getParent();
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package demo.producerconsumer.persistence;
+
+import demo.producerconsumer.logging.NumberLogger;
+
+import java.util.TimerTask;
+
+/**
+ * Checkpoints the logger's screener on a schedule. Extends from a TimerTask so that it can be run in a timer.
+ */
+public class CheckpointTask extends TimerTask {
+    private final NumberLogger logger;
+
+    public CheckpointTask(NumberLogger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void run() {
+        logger.checkpoint();
+    }
+}
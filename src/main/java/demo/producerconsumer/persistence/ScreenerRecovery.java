@@ -0,0 +1,215 @@
+package demo.producerconsumer.persistence;
+
+import demo.producerconsumer.data.PersistableDataScreener;
+import demo.producerconsumer.logging.LogRecordFormatter;
+import demo.producerconsumer.logging.NumberLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restores a screener to match an existing log file on startup, so numbers logged by an earlier run are
+ * still recognised as duplicates. The last checkpoint is loaded if it matches the log, and then any
+ * records logged after the checkpoint are read from the log and marked. Without a usable checkpoint the
+ * whole log is read.
+ *
+ * Every record in the log has the same length, so the log can be split at record boundaries without
+ * reading it first. The part of the log to replay is memory-mapped in chunks that are parsed in parallel
+ * on the common fork-join pool, so a large log is read as fast as the disk allows rather than one line
+ * at a time. Each chunk is parsed into a buffer of numbers without holding any lock, and the numbers are
+ * then marked in the screener, which is not thread-safe, while holding the screener's lock.
+ *
+ * A record that was only partly written when the server stopped is found at the end of the log by its
+ * length, or by not being 9 digits and a line separator. The log is truncated back to the end of the
+ * last valid record, so that new records are appended after it. An invalid record anywhere else means
+ * the log is corrupt rather than torn, so recovery fails instead of deleting the valid records after it.
+ */
+public class ScreenerRecovery {
+    // Records parsed by a single fork-join task, about 5 MB of log
+    private static final int REPLAY_CHUNK_RECORDS = 1 << 19;
+
+    private final Path logFile;
+    private final CheckpointStore checkpointStore;
+    private final int chunkRecords;
+    private final byte[] lineSeparator;
+
+    public ScreenerRecovery(Path logFile, CheckpointStore checkpointStore) {
+        this(logFile, checkpointStore, REPLAY_CHUNK_RECORDS);
+    }
+
+    ScreenerRecovery(Path logFile, CheckpointStore checkpointStore, int chunkRecords) {
+        this.logFile = logFile;
+        this.checkpointStore = checkpointStore;
+        this.chunkRecords = chunkRecords;
+        this.lineSeparator = LogRecordFormatter.getLineSeparator();
+    }
+
+    /**
+     * Bring the screener up to date with the log file. The screener must be empty and not in use.
+     */
+    public void recover(PersistableDataScreener screener) throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+
+        try (FileChannel logChannel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long replayFrom = loadCheckpoint(screener, logChannel.size());
+            long logLength = logChannel.size();
+            long completeLength = logLength - logLength % NumberLogger.LOG_RECORD_LENGTH;
+
+            long startTime = System.nanoTime();
+            long validLength = Math.min(completeLength, replay(logChannel, screener, replayFrom, completeLength));
+            // Only the last record can have been torn by a crash
+            if (validLength < completeLength - NumberLogger.LOG_RECORD_LENGTH) {
+                throw new IOException("Invalid record at byte " + validLength + " of " + logFile.getFileName()
+                        + ", " + (logLength - validLength) + " bytes before the end of the log. Only an incomplete "
+                        + "last record is removed on startup, so the log must be repaired or moved away by hand");
+            }
+            System.out.println("Replayed " + (validLength - replayFrom) / NumberLogger.LOG_RECORD_LENGTH
+                    + " numbers from " + logFile.getFileName() + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+
+            if (validLength < logLength) {
+                System.out.println("Truncating " + (logLength - validLength) + " bytes of an incomplete last record from "
+                        + logFile.getFileName());
+                logChannel.truncate(validLength);
+                logChannel.force(true);
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the first invalid record, or Long.MAX_VALUE if every record was valid
+     */
+    private long replay(FileChannel logChannel, PersistableDataScreener screener, long start, long end) throws IOException {
+        try {
+            return ForkJoinPool.commonPool().invoke(new ReplayTask(logChannel, screener, chunkRecords, lineSeparator, start, end));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Load the checkpoint into the screener if it is usable with this log.
+     * @return the offset in the log that the screener is up to date with
+     */
+    private long loadCheckpoint(PersistableDataScreener screener, long logLength) throws IOException {
+        Checkpoint checkpoint = checkpointStore.load();
+        if (checkpoint == null) {
+            return 0;
+        }
+        if (checkpoint.getMaxValue() != screener.getMaxValue()) {
+            System.out.println("Ignoring checkpoint: it was saved for a different range of numbers");
+            return 0;
+        }
+        if (checkpoint.getLogOffset() > logLength || checkpoint.getLogOffset() % NumberLogger.LOG_RECORD_LENGTH != 0) {
+            System.out.println("Ignoring checkpoint: it does not match " + logFile.getFileName());
+            return 0;
+        }
+        screener.loadMarkers(checkpoint.getMarkers());
+        System.out.println("Loaded checkpoint covering "
+                + checkpoint.getLogOffset() / NumberLogger.LOG_RECORD_LENGTH + " logged numbers");
+        return checkpoint.getLogOffset();
+    }
+
+    /**
+     * Replays the records from start to end, splitting the range in half until each part is small
+     * enough to parse in one go. The result is the offset of the first invalid record in the range,
+     * or Long.MAX_VALUE if every record was valid.
+     */
+    private static class ReplayTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel logChannel;
+        private final transient PersistableDataScreener screener;
+        private final int chunkRecords;
+        private final byte[] lineSeparator;
+        private final long start;
+        private final long end;
+
+        ReplayTask(FileChannel logChannel, PersistableDataScreener screener, int chunkRecords, byte[] lineSeparator,
+                   long start, long end) {
+            this.logChannel = logChannel;
+            this.screener = screener;
+            this.chunkRecords = chunkRecords;
+            this.lineSeparator = lineSeparator;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute() {
+            long records = (end - start) / NumberLogger.LOG_RECORD_LENGTH;
+            if (records <= chunkRecords) {
+                return replayChunk((int) records);
+            }
+
+            long middle = start + (records / 2) * NumberLogger.LOG_RECORD_LENGTH;
+            ReplayTask firstHalf = new ReplayTask(logChannel, screener, chunkRecords, lineSeparator, start, middle);
+            ReplayTask secondHalf = new ReplayTask(logChannel, screener, chunkRecords, lineSeparator, middle, end);
+            firstHalf.fork();
+            long secondInvalid = secondHalf.compute();
+            return Math.min(firstHalf.join(), secondInvalid);
+        }
+
+        private long replayChunk(int records) {
+            if (records == 0) {
+                return Long.MAX_VALUE;
+            }
+            MappedByteBuffer chunk;
+            try {
+                chunk = logChannel.map(FileChannel.MapMode.READ_ONLY, start, (long) records * NumberLogger.LOG_RECORD_LENGTH);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            int[] numbers = new int[records];
+            int count = 0;
+            long firstInvalid = Long.MAX_VALUE;
+            for (int record = 0; record < records; record++) {
+                int number = parseRecord(chunk, record * NumberLogger.LOG_RECORD_LENGTH, lineSeparator);
+                if (number < 0) {
+                    firstInvalid = start + (long) record * NumberLogger.LOG_RECORD_LENGTH;
+                    break;
+                }
+                numbers[count++] = number;
+            }
+
+            synchronized (screener) {
+                for (int i = 0; i < count; i++) {
+                    screener.isUnique(numbers[i]);
+                }
+            }
+            return firstInvalid;
+        }
+    }
+
+    /**
+     * @return the number in the record, or -1 if the record is not 9 digits followed by a line separator
+     */
+    private static int parseRecord(ByteBuffer records, int start, byte[] lineSeparator) {
+        int number = 0;
+        for (int i = 0; i < NumberLogger.LOG_NUMBER_LENGTH; i++) {
+            int digit = records.get(start + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            number = number * 10 + digit;
+        }
+        for (int i = 0; i < lineSeparator.length; i++) {
+            if (records.get(start + NumberLogger.LOG_NUMBER_LENGTH + i) != lineSeparator[i]) {
+                return -1;
+            }
+        }
+        return number;
+    }
+}
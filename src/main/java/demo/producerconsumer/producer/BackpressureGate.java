@@ -0,0 +1,120 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.queue.NumberQueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides when client connections should stop being read because the shared queue is filling up
+ * faster than the log consumer can drain it. Once the queue reaches the high watermark, producers
+ * stop reading from their sockets, so the clients' data backs up in the socket buffers and TCP flow
+ * control slows the clients down. Reading resumes once the queue has drained to the low watermark.
+ * The gap between the two watermarks keeps producers from rapidly switching on and off around a
+ * single threshold.
+ *
+ * Throttling is recorded per connection in a ThrottleStats, and totalled across all connections
+ * here. All operations on this class are thread-safe.
+ */
+public class BackpressureGate {
+    // How often a paused producer checks whether the queue has drained
+    private static final long PAUSED_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final NumberQueue[] watchedQueues;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private volatile boolean paused;
+
+    private final AtomicLong totalThrottleCount;
+    private final AtomicLong totalThrottledNanos;
+
+    public BackpressureGate(NumberQueue sharedNumberQueue, int highWatermark, int lowWatermark) {
+        this(new NumberQueue[] {sharedNumberQueue}, highWatermark, lowWatermark);
+    }
+
+    /**
+     * Gate on several queues, such as the queues of a sharded consumer. The watermarks apply to the
+     * fullest of the queues, since producers cannot make progress once any one of them is full.
+     */
+    public BackpressureGate(NumberQueue[] watchedQueues, int highWatermark, int lowWatermark) {
+        if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("BackpressureGate requires 0 <= lowWatermark < highWatermark");
+        }
+        this.watchedQueues = watchedQueues;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.totalThrottleCount = new AtomicLong();
+        this.totalThrottledNanos = new AtomicLong();
+    }
+
+    /**
+     * Check whether producers should currently stop reading their connections.
+     */
+    public boolean shouldPause() {
+        int queueSize = 0;
+        for (NumberQueue queue : watchedQueues) {
+            queueSize = Math.max(queueSize, queue.size());
+        }
+        if (paused) {
+            if (queueSize <= lowWatermark) {
+                paused = false;
+            }
+        }
+        else if (queueSize >= highWatermark) {
+            paused = true;
+        }
+        return paused;
+    }
+
+    /**
+     * Block the calling producer while the queue is over the watermark, recording the time spent
+     * in the connection's stats.
+     * @param stats: Throttle stats of the connection the caller reads
+     * @param keepWaiting: Checked while paused, waiting stops early when this returns false
+     */
+    public void awaitCapacity(ThrottleStats stats, BooleanSupplier keepWaiting) {
+        if (!shouldPause()) {
+            return;
+        }
+        throttleStarted(stats);
+        while (shouldPause() && keepWaiting.getAsBoolean()) {
+            LockSupport.parkNanos(PAUSED_POLL_NANOS);
+        }
+        throttleEnded(stats);
+    }
+
+    /**
+     * Record that a connection has stopped being read. For producers that manage their own waiting,
+     * such as selector event loops.
+     */
+    public void throttleStarted(ThrottleStats stats) {
+        stats.throttleStarted(System.nanoTime());
+    }
+
+    /**
+     * Record that a connection is being read again.
+     */
+    public void throttleEnded(ThrottleStats stats) {
+        long throttledNanos = stats.throttleEnded(System.nanoTime());
+        if (throttledNanos > 0) {
+            totalThrottleCount.incrementAndGet();
+            totalThrottledNanos.addAndGet(throttledNanos);
+        }
+    }
+
+    /**
+     * @return the number of completed throttles across all connections
+     */
+    public long getTotalThrottleCount() {
+        return totalThrottleCount.get();
+    }
+
+    /**
+     * @return the total time connections have spent throttled, for completed throttles
+     */
+    public long getTotalThrottledNanos() {
+        return totalThrottledNanos.get();
+    }
+}
@@ -0,0 +1,112 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.metrics.ConnectionMetrics;
+import demo.producerconsumer.metrics.LatencyHistogram;
+import demo.producerconsumer.server.signalling.TerminateSignalSender;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Non-blocking counterpart to ClientNumberProducer, used by the NIO connection engine. Instead of
+ * owning a thread, an instance is driven by a selector event loop that calls readAvailable() each
+ * time the client channel has data ready. Input is validated with the same NumberInputParser rules,
+ * valid numbers are queued for the log consumer, and the terminate command signals the server to stop.
+ *
+ * The read buffer and the chunk that parsed numbers are collected into are supplied by the event loop
+ * and shared between all of its connections. This is safe because the chunk is published before the
+ * read returns, and a record split across two reads is carried over in the parser's state, not the buffer.
+ *
+ * While the shared queue is over its high watermark the event loop stops selecting the channel for
+ * reads, and records the time in this connection's ThrottleStats, which are printed when it closes.
+ * The numbers read and invalid-input disconnects are counted in the publisher's PipelineMetrics.
+ *
+ * This class is not thread-safe, and is expected to only be called from the event loop thread that
+ * the channel is registered with.
+ */
+public class ChannelNumberProducer {
+    private final SocketChannel clientChannel;
+    private final NumberPublisher numberPublisher;
+    private final TerminateSignalSender terminateSignalSender;
+    private final NumberChunk parsedNumbers;
+    private final NumberInputParser inputParser;
+    private final ThrottleStats throttleStats;
+    private final ConnectionMetrics connectionMetrics;
+    private final LatencyHistogram parseLatency;
+    private boolean closed;
+
+    /**
+     * @param parsedNumbers: Chunk owned by the event loop that parsed numbers are collected into
+     */
+    public ChannelNumberProducer(SocketChannel clientChannel, NumberPublisher numberPublisher,
+                                 TerminateSignalSender terminateSignalSender, NumberChunk parsedNumbers) {
+        this.clientChannel = clientChannel;
+        this.numberPublisher = numberPublisher;
+        this.terminateSignalSender = terminateSignalSender;
+        this.parsedNumbers = parsedNumbers;
+        this.inputParser = new NumberInputParser(parsedNumbers);
+        this.throttleStats = new ThrottleStats();
+        this.connectionMetrics = numberPublisher.getPipelineMetrics()
+                .openConnection(String.valueOf(clientChannel.socket().getRemoteSocketAddress()));
+        this.parseLatency = numberPublisher.getPipelineMetrics().getStageLatencies().getParseLatency();
+    }
+
+    /**
+     * Read whatever input is currently available on the channel, up to the size of the buffer, and
+     * queue the valid numbers in it. The channel is closed if the client disconnected, sent invalid
+     * input, or sent the terminate command.
+     * @param readBuffer: Array-backed buffer used for the read, its contents are discarded afterwards
+     * @return true if the channel is still open and should continue to be read
+     */
+    public boolean readAvailable(ByteBuffer readBuffer) {
+        NumberInputParser.Status status;
+        try {
+            readBuffer.clear();
+            int bytesRead = clientChannel.read(readBuffer);
+            if (bytesRead < 0) {
+                status = inputParser.endOfInput();
+            }
+            else {
+                long startTime = System.nanoTime();
+                status = inputParser.parse(readBuffer.array(), readBuffer.arrayOffset(), bytesRead);
+                parseLatency.record(System.nanoTime() - startTime);
+                if (status == NumberInputParser.Status.INVALID) {
+                    connectionMetrics.recordInvalidInput();
+                }
+            }
+        } catch (IOException e) {
+            status = NumberInputParser.Status.INVALID;
+        }
+
+        connectionMetrics.recordNumbers(parsedNumbers.getLength());
+        if (!numberPublisher.publish(parsedNumbers)) {
+            status = NumberInputParser.Status.INVALID;
+        }
+        if (status == NumberInputParser.Status.TERMINATE) {
+            terminateSignalSender.signalServerStop();
+        }
+        if (status != NumberInputParser.Status.CONTINUE) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    public ThrottleStats getThrottleStats() {
+        return throttleStats;
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        connectionMetrics.close();
+        if (throttleStats.getThrottleCount() > 0) {
+            System.out.println("Client " + clientChannel.socket().getRemoteSocketAddress() + " " + throttleStats);
+        }
+        IOUtils.closeQuietly(clientChannel, null);
+    }
+}
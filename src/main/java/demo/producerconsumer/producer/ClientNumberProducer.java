@@ -1,14 +1,16 @@
 package demo.producerconsumer.producer;
 
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.metrics.ConnectionMetrics;
+import demo.producerconsumer.metrics.LatencyHistogram;
 import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
 import demo.producerconsumer.server.signalling.TerminateSignalSender;
 import org.apache.commons.io.IOUtils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.Socket;
-import java.util.Queue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -22,64 +24,127 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *
  *   Valid data will be sent to the queue for logging, terminate command will cause the application
  *   to signal the server to disconnect all clients and gracefully stop processing data and shutdown.
+ *
+ *   Raw bytes are read from the socket into a buffer that is reused for the lifetime of the connection,
+ *   and parsed in place by a NumberInputParser. No String or other object is created per record. The numbers
+ *   parsed from each read are collected into a chunk and published to the queue together.
+ *
+ *   When a semaphore of read permits is provided, a permit is held while each chunk of input is processed.
+ *   Waiting for the client to send data does not hold a permit, so any number of idle connections can be
+ *   open while the number of connections actively being processed stays within the number of permits.
+ *
+ *   Before each read the producer waits for the shared queue to have room, as decided by the publisher's
+ *   backpressure gate. While it waits the socket is not read, so TCP flow control slows the client down.
+ *   How often and how long the connection was throttled is printed when it closes.
+ *
+ *   The numbers read from the connection, and whether it was dropped for invalid input, are counted in
+ *   the publisher's PipelineMetrics while the connection is being read.
  */
 public class ClientNumberProducer implements TerminateSignalReceiver {
-    private final BufferedReader inputReader;
-    private final Queue<Integer> sharedNumberQueue;
+    private final InputStream inputStream;
+    private final NumberPublisher numberPublisher;
     private final AtomicBoolean serverActive;
     private final Socket clientSocket;
     private final TerminateSignalSender terminateSignalSender;
+    private final NumberInputParser inputParser;
+    private final byte[] readBuffer;
+    private final Semaphore readPermits;
 
-    private static final String VALID_INPUT_REGEX = "[0-9]{9}";
-    private static final int VALID_INPUT_LENGTH = 9;
-    private static final String VALID_INPUT_TERMINATE = "terminate";
+    private final NumberChunk parsedNumbers;
+    private final ThrottleStats throttleStats;
+    // Set when the connection starts being read
+    private ConnectionMetrics connectionMetrics;
+    private final LatencyHistogram parseLatency;
 
-    public ClientNumberProducer(Socket clientSocket, Queue<Integer> sharedNumberQueue,
+    public ClientNumberProducer(Socket clientSocket, NumberPublisher numberPublisher,
                                 TerminateSignalSender terminateSignalSender) throws IOException {
-        this.sharedNumberQueue = sharedNumberQueue;
+        this(clientSocket, numberPublisher, terminateSignalSender, null);
+    }
+
+    /**
+     * @param readPermits: Permits bounding how many connections are processed at once, or null if the
+     *                   caller already bounds this with the number of threads running producers
+     */
+    public ClientNumberProducer(Socket clientSocket, NumberPublisher numberPublisher,
+                                TerminateSignalSender terminateSignalSender, Semaphore readPermits) throws IOException {
+        this.numberPublisher = numberPublisher;
         this.serverActive = new AtomicBoolean(true);
-        this.inputReader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+        this.inputStream = clientSocket.getInputStream();
         this.clientSocket = clientSocket;
         this.terminateSignalSender = terminateSignalSender;
+        this.parsedNumbers = NumberChunk.forReadBufferSize(ApplicationConstants.CLIENT_READ_BUFFER_SIZE);
+        this.inputParser = new NumberInputParser(parsedNumbers);
+        this.readBuffer = new byte[ApplicationConstants.CLIENT_READ_BUFFER_SIZE];
+        this.readPermits = readPermits;
+        this.throttleStats = new ThrottleStats();
+        this.parseLatency = numberPublisher.getPipelineMetrics().getStageLatencies().getParseLatency();
     }
 
     public void doRun() {
+        connectionMetrics = numberPublisher.getPipelineMetrics()
+                .openConnection(String.valueOf(clientSocket.getRemoteSocketAddress()));
         boolean keepReading = true;
         while(keepReading && serverActive.get()) {
             try {
-                String readVal = inputReader.readLine();
-                if (serverActive.get()) {
-                    keepReading = processInput(readVal);
+                numberPublisher.awaitCapacity(throttleStats);
+                int bytesRead = inputStream.read(readBuffer);
+                if (readPermits != null) {
+                    readPermits.acquireUninterruptibly();
+                }
+                try {
+                    if (serverActive.get()) {
+                        keepReading = processInput(bytesRead);
+                    }
+                } finally {
+                    if (readPermits != null) {
+                        readPermits.release();
+                    }
                 }
             } catch (IOException e) {
                 keepReading = false;
             }
         }
+        if (throttleStats.getThrottleCount() > 0) {
+            System.out.println("Client " + clientSocket.getRemoteSocketAddress() + " " + throttleStats);
+        }
+        connectionMetrics.close();
         IOUtils.closeQuietly(clientSocket, null);
-        IOUtils.closeQuietly(inputReader, null);
+        IOUtils.closeQuietly(inputStream, null);
     }
 
-    private boolean processInput(String input) {
-        if (input == null || input.length() != VALID_INPUT_LENGTH) {
-            return false;
+    public ThrottleStats getThrottleStats() {
+        return throttleStats;
+    }
+
+    private boolean processInput(int bytesRead) {
+        NumberInputParser.Status status;
+        if (bytesRead < 0) {
+            status = inputParser.endOfInput();
         }
-        else if (input.matches(VALID_INPUT_REGEX)) {
-            sharedNumberQueue.offer(Integer.valueOf(input));
-            return true;
+        else {
+            long startTime = System.nanoTime();
+            status = inputParser.parse(readBuffer, 0, bytesRead);
+            parseLatency.record(System.nanoTime() - startTime);
         }
-        else if (VALID_INPUT_TERMINATE.equalsIgnoreCase(input)) {
-            terminateSignalSender.signalServerStop();
-            return false;
+
+        if (status == NumberInputParser.Status.INVALID && bytesRead >= 0) {
+            connectionMetrics.recordInvalidInput();
         }
-        else {
+        // Numbers that were read before an invalid record or terminate command are still logged
+        connectionMetrics.recordNumbers(parsedNumbers.getLength());
+        if (!numberPublisher.publish(parsedNumbers)) {
             return false;
         }
+        if (status == NumberInputParser.Status.TERMINATE) {
+            terminateSignalSender.signalServerStop();
+        }
+        return status == NumberInputParser.Status.CONTINUE;
     }
 
     @Override
     public void receiveTerminateSignal() {
         serverActive.set(false);
         IOUtils.closeQuietly(clientSocket, null);
-        IOUtils.closeQuietly(inputReader, null);
+        IOUtils.closeQuietly(inputStream, null);
     }
 }
@@ -0,0 +1,117 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.queue.ShardRouter;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Reusable buffer that collects the numbers parsed from one read of client input, so that they can
+ * be published to the shared queue in a single operation instead of one at a time.
+ *
+ * When the consumer is sharded, the chunk can be partitioned so the numbers for each shard are grouped
+ * together and can be published to that shard's queue as one batch. The scratch array used to
+ * partition is allocated the first time it is needed and reused afterwards.
+ *
+ * This class is not thread-safe.
+ */
+public class NumberChunk implements IntConsumer {
+
+    // A complete record is at least 9 digits and a line terminator
+    private static final int MIN_RECORD_LENGTH = 10;
+
+    private int[] numbers;
+    private int length;
+    private int[] partitionScratch;
+    private int[] shardEnds;
+
+    public NumberChunk(int capacity) {
+        this.numbers = new int[capacity];
+        this.length = 0;
+    }
+
+    /**
+     * Create a chunk large enough to hold every number that can be parsed from a single read into a
+     * buffer of the given size. The first record in a read may be completed by as little as its line
+     * terminator, and every record after it takes at least MIN_RECORD_LENGTH bytes.
+     */
+    public static NumberChunk forReadBufferSize(int readBufferSize) {
+        return new NumberChunk(readBufferSize / MIN_RECORD_LENGTH + 1);
+    }
+
+    @Override
+    public void accept(int number) {
+        numbers[length++] = number;
+    }
+
+    public int[] getNumbers() {
+        return numbers;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Remove the numbers that the screener has already seen, keeping the unique numbers in their
+     * original order.
+     * @return the number of duplicates removed
+     */
+    public int retainUnique(UniqueDataScreener dataScreener) {
+        int uniqueLength = 0;
+        for (int i = 0; i < length; i++) {
+            int number = numbers[i];
+            if (dataScreener.isUnique(number)) {
+                numbers[uniqueLength++] = number;
+            }
+        }
+        int duplicates = length - uniqueLength;
+        length = uniqueLength;
+        return duplicates;
+    }
+
+    /**
+     * Reorder the numbers so that each shard's numbers are contiguous, in shard order, keeping the
+     * original order of the numbers within each shard.
+     * @return for each shard, the index one past its last number. A shard's numbers start at the
+     *         previous shard's end, or 0 for the first shard. Only valid until the chunk is next changed.
+     */
+    public int[] partition(ShardRouter shardRouter) {
+        int shardCount = shardRouter.getShardCount();
+        if (shardEnds == null || shardEnds.length != shardCount) {
+            shardEnds = new int[shardCount];
+        }
+        if (partitionScratch == null) {
+            partitionScratch = new int[numbers.length];
+        }
+
+        // Counting sort: count each shard's numbers, turn the counts into start positions, then copy
+        // every number to the next free position of its shard
+        int[] shardPositions = shardEnds;
+        Arrays.fill(shardPositions, 0);
+        for (int i = 0; i < length; i++) {
+            shardPositions[shardRouter.shardOf(numbers[i])]++;
+        }
+        int start = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            int count = shardPositions[shard];
+            shardPositions[shard] = start;
+            start += count;
+        }
+        for (int i = 0; i < length; i++) {
+            int number = numbers[i];
+            partitionScratch[shardPositions[shardRouter.shardOf(number)]++] = number;
+        }
+
+        // Each position has now advanced to the end of its shard
+        int[] partitioned = partitionScratch;
+        partitionScratch = numbers;
+        numbers = partitioned;
+        return shardEnds;
+    }
+
+    public void clear() {
+        length = 0;
+    }
+}
@@ -0,0 +1,150 @@
+package demo.producerconsumer.producer;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Incremental parser that validates raw ascii input read from a client connection and extracts
+ * the 9-digit numbers from it without creating any intermediate objects. Bytes can be handed to
+ * the parser in chunks of any size, and a record that is split across two reads is carried over
+ * in the parser state until the rest of it arrives.
+ *
+ * Records are separated by the same line terminators that BufferedReader.readLine() accepts
+ * ("\n", "\r" or "\r\n"), and are validated with the same rules the line-based reader used:
+ *   - A record of exactly 9 digit characters is a number and is passed to the number consumer
+ *   - A record that matches 'terminate' (case insensitive) is a terminate command
+ *   - Anything else, including an empty record, is invalid
+ *
+ * The digits are accumulated into an int as they are read, so a valid number never needs to
+ * be converted from a String. Once a record is known to be invalid the parser stops and reports
+ * it immediately rather than reading the rest of the line.
+ *
+ * This class is not thread-safe. Each client connection is expected to own its own parser.
+ */
+public class NumberInputParser {
+
+    /**
+     * Result of handing a chunk of input to the parser.
+     */
+    public enum Status {
+        // All records seen so far were valid, more input can be provided
+        CONTINUE,
+        // An invalid record was found, the client should be disconnected
+        INVALID,
+        // A terminate command was found, the server should be signalled to stop
+        TERMINATE
+    }
+
+    private static final int VALID_INPUT_LENGTH = 9;
+    private static final byte[] TERMINATE_BYTES = {'t', 'e', 'r', 'm', 'i', 'n', 'a', 't', 'e'};
+
+    // Setting bit 0x20 on an ascii letter converts it to lower case. Any byte that turns into one
+    // of the lower case letters in 'terminate' this way must have been that letter in either case.
+    private static final int ASCII_LOWER_CASE_BIT = 0x20;
+
+    private final IntConsumer numberConsumer;
+
+    // Number of bytes seen in the current record
+    private int recordLength;
+    // Value of the digits seen so far, only meaningful while the record is all digits
+    private int recordValue;
+    private boolean recordIsNumber;
+    private boolean recordIsTerminate;
+    // A '\r' ended the last record, so a '\n' directly after it is part of the same line ending
+    private boolean skipLineFeed;
+
+    /**
+     * @param numberConsumer: Receives each valid number in the order it was read
+     */
+    public NumberInputParser(IntConsumer numberConsumer) {
+        this.numberConsumer = numberConsumer;
+        resetRecord();
+    }
+
+    /**
+     * Parse the next chunk of bytes from the input. Valid numbers are passed to the number
+     * consumer as soon as their line terminator is read. Parsing stops at the first invalid
+     * record or terminate command, and any bytes after it are ignored.
+     * @param buffer: Buffer holding the input
+     * @param offset: Index of the first byte to parse
+     * @param length: Number of bytes to parse
+     * @return CONTINUE if more input can be parsed, otherwise the reason parsing stopped
+     */
+    public Status parse(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+
+            if (b == '\n' || b == '\r') {
+                if (b == '\n' && skipLineFeed) {
+                    skipLineFeed = false;
+                    continue;
+                }
+                skipLineFeed = (b == '\r');
+                Status status = completeRecord();
+                if (status != Status.CONTINUE) {
+                    return status;
+                }
+                continue;
+            }
+            skipLineFeed = false;
+
+            if (recordLength >= VALID_INPUT_LENGTH) {
+                // Too long to be either a number or a terminate command
+                return Status.INVALID;
+            }
+
+            if (recordIsNumber) {
+                int digit = b - '0';
+                if (digit >= 0 && digit <= 9) {
+                    recordValue = recordValue * 10 + digit;
+                }
+                else {
+                    recordIsNumber = false;
+                }
+            }
+            if (recordIsTerminate) {
+                recordIsTerminate = (b | ASCII_LOWER_CASE_BIT) == TERMINATE_BYTES[recordLength];
+            }
+            if (!recordIsNumber && !recordIsTerminate) {
+                return Status.INVALID;
+            }
+            recordLength++;
+        }
+        return Status.CONTINUE;
+    }
+
+    /**
+     * Signal that the input has ended. A final record that was not followed by a line terminator
+     * is still processed, the same way readLine() returns the last line of a stream. Since the
+     * client has disconnected, the result will never be CONTINUE.
+     * @return TERMINATE if the final record was a terminate command, otherwise INVALID
+     */
+    public Status endOfInput() {
+        if (recordLength > 0 && completeRecord() == Status.TERMINATE) {
+            return Status.TERMINATE;
+        }
+        return Status.INVALID;
+    }
+
+    private Status completeRecord() {
+        Status status = Status.INVALID;
+        if (recordLength == VALID_INPUT_LENGTH) {
+            if (recordIsNumber) {
+                numberConsumer.accept(recordValue);
+                status = Status.CONTINUE;
+            }
+            else if (recordIsTerminate) {
+                status = Status.TERMINATE;
+            }
+        }
+        resetRecord();
+        return status;
+    }
+
+    private void resetRecord() {
+        recordLength = 0;
+        recordValue = 0;
+        recordIsNumber = true;
+        recordIsTerminate = true;
+    }
+}
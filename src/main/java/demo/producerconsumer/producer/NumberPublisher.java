@@ -0,0 +1,166 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.consumer.wait.BusySpinWaitStrategy;
+import demo.producerconsumer.consumer.wait.WaitStrategy;
+import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.metrics.PipelineMetrics;
+import demo.producerconsumer.metrics.QueueWaitProbe;
+import demo.producerconsumer.queue.NumberQueue;
+import demo.producerconsumer.queue.ShardRouter;
+import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands chunks of parsed numbers from the client producers to the shared queue. A chunk is offered
+ * to the queue as a batch, so the cost of claiming space in the queue is paid once per chunk rather
+ * than once per number. If the queue does not have room for the whole chunk, the remainder is retried
+ * until the consumer makes room or the server is shutting down. After a chunk is published, the
+ * consumer's wait strategy is signalled in case the consumer is blocked waiting for numbers.
+ *
+ * When a BackpressureGate is provided, producers check it before each read from their connection,
+ * so they stop reading while the queue is over its high watermark rather than filling it further.
+ *
+ * When a producer-side screener is provided, numbers that have been seen before are removed from each
+ * chunk before it is queued, on the producer's own thread, and counted as duplicates in the NumberLogger's
+ * report. The screener must be thread-safe, since every producer screens its input at the same time.
+ * The consumer then only receives unique numbers and does not need to screen them again.
+ *
+ * When the consumer is sharded, each shard has its own queue and wait strategy. Every chunk is
+ * partitioned by a ShardRouter and each shard's part is published to that shard's queue as a batch,
+ * so numbers from one connection stay in order within each shard.
+ *
+ * After a batch is published to a shard, the shard's QueueWaitProbe may sample how long it waits in
+ * the queue.
+ *
+ * The publisher also carries the PipelineMetrics that every producer counts its connection's input in.
+ *
+ * One publisher is shared by all producers. All operations on this class are thread-safe.
+ */
+public class NumberPublisher implements TerminateSignalReceiver {
+    private final NumberQueue[] shardQueues;
+    private final AtomicBoolean serverActive;
+    private final WaitStrategy[] consumerWaitStrategies;
+    private final ShardRouter shardRouter;
+    private final BackpressureGate backpressureGate;
+    private final UniqueDataScreener producerScreener;
+    private final NumberLogger numberLogger;
+    private final PipelineMetrics pipelineMetrics;
+    private final QueueWaitProbe[] queueWaitProbes;
+
+    public NumberPublisher(NumberQueue sharedNumberQueue) {
+        this(new NumberQueue[] {sharedNumberQueue}, new WaitStrategy[] {new BusySpinWaitStrategy()}, null, null,
+                null, null, new PipelineMetrics(new NumberLogger[0], new NumberQueue[] {sharedNumberQueue}));
+    }
+
+    /**
+     * @param shardQueues: Queue of each consumer shard, indexed by shard
+     * @param consumerWaitStrategies: Wait strategy of each consumer shard, indexed by shard
+     * @param shardRouter: Router that picks the shard for each number, or null if there is a single shard
+     * @param backpressureGate: Gate that producers wait on before reading, or null to never pause reads
+     * @param producerScreener: Thread-safe screener that removes duplicates before they are queued, or
+     *                        null to leave screening to the consumer
+     * @param numberLogger: Logger whose report counts the duplicates removed by the producer screener
+     * @param pipelineMetrics: Metrics that producers count the input of their connections in, and whose
+     *                       queue wait probes sample the batches published to each shard
+     */
+    public NumberPublisher(NumberQueue[] shardQueues, WaitStrategy[] consumerWaitStrategies, ShardRouter shardRouter,
+                           BackpressureGate backpressureGate, UniqueDataScreener producerScreener,
+                           NumberLogger numberLogger, PipelineMetrics pipelineMetrics) {
+        this.shardQueues = shardQueues;
+        this.consumerWaitStrategies = consumerWaitStrategies;
+        this.shardRouter = shardRouter;
+        this.backpressureGate = backpressureGate;
+        this.producerScreener = producerScreener;
+        this.numberLogger = numberLogger;
+        this.pipelineMetrics = pipelineMetrics;
+        this.queueWaitProbes = new QueueWaitProbe[shardQueues.length];
+        for (int shard = 0; shard < shardQueues.length; shard++) {
+            queueWaitProbes[shard] = pipelineMetrics.getStageLatencies().getQueueWaitProbe(shard);
+        }
+        this.serverActive = new AtomicBoolean(true);
+    }
+
+    /**
+     * Block while the queue is over its high watermark, until it drains to the low watermark or the
+     * server stops. Called by producers before reading more input from their connection.
+     * @param stats: Throttle stats of the connection the caller reads
+     */
+    public void awaitCapacity(ThrottleStats stats) {
+        if (backpressureGate != null) {
+            backpressureGate.awaitCapacity(stats, serverActive::get);
+        }
+    }
+
+    /**
+     * @return the gate producers wait on before reading, or null if reads are never paused
+     */
+    public BackpressureGate getBackpressureGate() {
+        return backpressureGate;
+    }
+
+    public PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
+    /**
+     * Publish every number in the chunk to the shared queue, preserving their order, and then clear
+     * the chunk. Blocks while the queue is full. With a producer screener, only unique numbers are published.
+     * With multiple shards, the order is only preserved between numbers going to the same shard.
+     * @return true if all numbers were published, false if the server stopped before they could be
+     */
+    public boolean publish(NumberChunk chunk) {
+        if (producerScreener != null) {
+            int duplicates = chunk.retainUnique(producerScreener);
+            if (duplicates > 0) {
+                numberLogger.recordDuplicates(duplicates);
+            }
+        }
+        if (shardRouter == null) {
+            int length = chunk.getLength();
+            chunk.clear();
+            return publishToShard(0, chunk.getNumbers(), 0, length);
+        }
+
+        int[] shardEnds = chunk.partition(shardRouter);
+        int[] numbers = chunk.getNumbers();
+        chunk.clear();
+        int shardStart = 0;
+        for (int shard = 0; shard < shardEnds.length; shard++) {
+            if (!publishToShard(shard, numbers, shardStart, shardEnds[shard] - shardStart)) {
+                return false;
+            }
+            shardStart = shardEnds[shard];
+        }
+        return true;
+    }
+
+    private boolean publishToShard(int shard, int[] numbers, int offset, int remaining) {
+        NumberQueue shardQueue = shardQueues[shard];
+        if (remaining == 0) {
+            return true;
+        }
+        while (remaining > 0) {
+            int accepted = shardQueue.offerBatch(numbers, offset, remaining);
+            offset += accepted;
+            remaining -= accepted;
+            if (accepted > 0) {
+                consumerWaitStrategies[shard].signalNumbersAvailable();
+            }
+            if (remaining > 0) {
+                if (!serverActive.get()) {
+                    return false;
+                }
+                Thread.yield();
+            }
+        }
+        queueWaitProbes[shard].sampleQueued(shardQueue);
+        return true;
+    }
+
+    @Override
+    public void receiveTerminateSignal() {
+        serverActive.set(false);
+    }
+}
@@ -0,0 +1,50 @@
+package demo.producerconsumer.producer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how often and for how long a single client connection stopped being read because the
+ * shared queue was over its high watermark. Only the thread that reads the connection records
+ * throttling, while the totals may be read from any thread.
+ */
+public class ThrottleStats {
+    private volatile long throttleCount;
+    private volatile long throttledNanos;
+    private long throttleStartNanos;
+    private boolean throttled;
+
+    void throttleStarted(long nowNanos) {
+        if (!throttled) {
+            throttled = true;
+            throttleStartNanos = nowNanos;
+            throttleCount++;
+        }
+    }
+
+    /**
+     * @return how long the throttle that just ended lasted, or 0 if the connection was not throttled
+     */
+    long throttleEnded(long nowNanos) {
+        if (!throttled) {
+            return 0;
+        }
+        throttled = false;
+        long duration = nowNanos - throttleStartNanos;
+        throttledNanos += duration;
+        return duration;
+    }
+
+    public long getThrottleCount() {
+        return throttleCount;
+    }
+
+    public long getThrottledNanos() {
+        return throttledNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "was throttled " + throttleCount + " times for "
+                + TimeUnit.NANOSECONDS.toMillis(throttledNanos) + " ms";
+    }
+}
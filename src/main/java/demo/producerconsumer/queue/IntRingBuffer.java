@@ -0,0 +1,156 @@
+package demo.producerconsumer.queue;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Bounded, lock-free, multi-producer/single-consumer NumberQueue that stores numbers as primitive
+ * ints in a pre-allocated array. Nothing is allocated when numbers are offered or drained.
+ *
+ * Producers claim a slot by advancing a shared claim sequence with a compare-and-set, write the
+ * number into the slot, and then publish it by recording the slot's "round" (how many times the
+ * ring has wrapped when that sequence was claimed) in a separate array. The consumer reads slots
+ * in sequence order and only takes a slot once its published round matches, so a slow producer
+ * that has claimed but not yet written a slot can never be read past. After draining, the consumer
+ * advances its own sequence, which frees the slots for producers to claim again. A batch of numbers
+ * is claimed with a single compare-and-set, so the cost of contention between producers is shared
+ * by every number in the batch.
+ *
+ * Claim and consume sequences are written by different threads and are each padded onto their own
+ * cache line to avoid false sharing.
+ *
+ * The capacity must be a power of two so that a sequence can be mapped to a slot with a mask.
+ */
+public class IntRingBuffer implements NumberQueue {
+    private final int capacity;
+    private final int indexMask;
+    private final int roundShift;
+    private final int[] buffer;
+    private final AtomicIntegerArray publishedRounds;
+
+    // Next sequence to be claimed by a producer
+    private final PaddedSequence claimSequence;
+    // Next sequence to be read by the consumer. Only written by the consumer thread.
+    private final PaddedSequence consumeSequence;
+    // Last consume sequence seen by a producer, so producers only read the consumer's cache
+    // line when the ring looks full
+    private final PaddedSequence cachedConsumeSequence;
+
+    public IntRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("IntRingBuffer capacity must be a positive power of two, was: " + capacity);
+        }
+        this.capacity = capacity;
+        this.indexMask = capacity - 1;
+        this.roundShift = Integer.numberOfTrailingZeros(capacity);
+        this.buffer = new int[capacity];
+        this.publishedRounds = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            // Round 0 is the first pass through the ring, so no slot starts out published
+            publishedRounds.set(i, -1);
+        }
+        this.claimSequence = new PaddedSequence(0);
+        this.consumeSequence = new PaddedSequence(0);
+        this.cachedConsumeSequence = new PaddedSequence(0);
+    }
+
+    @Override
+    public boolean offer(int number) {
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (!hasCapacity(sequence + 1)) {
+                return false;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        publish(sequence, number);
+        return true;
+    }
+
+    @Override
+    public int offerBatch(int[] numbers, int offset, int length) {
+        if (length <= 0) {
+            return 0;
+        }
+
+        long sequence;
+        int claimed;
+        do {
+            sequence = claimSequence.get();
+            claimed = Math.min(length, availableCapacity(sequence, length));
+            if (claimed == 0) {
+                return 0;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + claimed));
+
+        for (int i = 0; i < claimed; i++) {
+            publish(sequence + i, numbers[offset + i]);
+        }
+        return claimed;
+    }
+
+    @Override
+    public int drainTo(int[] target, int offset, int maxNumbers) {
+        long sequence = consumeSequence.get();
+        int count = 0;
+        while (count < maxNumbers) {
+            int index = (int) sequence & indexMask;
+            if (publishedRounds.get(index) != (int) (sequence >>> roundShift)) {
+                break;
+            }
+            target[offset + count] = buffer[index];
+            count++;
+            sequence++;
+        }
+
+        if (count > 0) {
+            consumeSequence.lazySet(sequence);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        long size = claimSequence.get() - consumeSequence.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Whether every sequence up to (but not including) endSequence fits in the ring without
+     * overwriting a slot the consumer has not read yet.
+     */
+    private boolean hasCapacity(long endSequence) {
+        long wrapPoint = endSequence - capacity;
+        if (wrapPoint > cachedConsumeSequence.get()) {
+            long consumed = consumeSequence.get();
+            cachedConsumeSequence.set(consumed);
+            return wrapPoint <= consumed;
+        }
+        return true;
+    }
+
+    /**
+     * The number of free slots starting at the given claim sequence. The consumer's sequence is only
+     * re-read when the cached copy shows fewer free slots than are wanted.
+     */
+    private int availableCapacity(long sequence, int wanted) {
+        long available = cachedConsumeSequence.get() + capacity - sequence;
+        if (available < wanted) {
+            long consumed = consumeSequence.get();
+            cachedConsumeSequence.set(consumed);
+            available = consumed + capacity - sequence;
+        }
+        return (int) Math.max(0, available);
+    }
+
+    private void publish(long sequence, int number) {
+        int index = (int) sequence & indexMask;
+        buffer[index] = number;
+        // Ordered write, so the consumer can't see the round before it can see the number
+        publishedRounds.lazySet(index, (int) (sequence >>> roundShift));
+    }
+}
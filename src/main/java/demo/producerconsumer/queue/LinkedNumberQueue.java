@@ -0,0 +1,60 @@
+package demo.producerconsumer.queue;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NumberQueue backed by an unbounded ConcurrentLinkedQueue. Every number is boxed into an Integer
+ * and wrapped in a queue node, so this produces garbage in proportion to the data rate. It is kept
+ * as a simple, unbounded alternative to the ring buffer.
+ *
+ * The size is kept in a separate counter, since ConcurrentLinkedQueue.size() traverses the whole
+ * queue and the size is checked on every read for backpressure. The counter is updated after the
+ * queue itself, so it can briefly lag behind the true size.
+ */
+public class LinkedNumberQueue implements NumberQueue {
+    private final Queue<Integer> numberQueue;
+    private final AtomicInteger size;
+
+    public LinkedNumberQueue() {
+        this.numberQueue = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+    }
+
+    @Override
+    public boolean offer(int number) {
+        numberQueue.offer(number);
+        size.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public int offerBatch(int[] numbers, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            numberQueue.offer(numbers[offset + i]);
+        }
+        size.addAndGet(length);
+        return length;
+    }
+
+    @Override
+    public int drainTo(int[] target, int offset, int maxNumbers) {
+        int count = 0;
+        Integer number;
+        while (count < maxNumbers && (number = numberQueue.poll()) != null) {
+            target[offset + count] = number;
+            count++;
+        }
+        if (count > 0) {
+            size.addAndGet(-count);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        // A drain can be counted before the offer it overtook
+        return Math.max(0, size.get());
+    }
+}
@@ -0,0 +1,49 @@
+package demo.producerconsumer.queue;
+
+/**
+ * Interface for the queue that carries validated numbers from the client producers to the log
+ * consumer. Numbers are passed as primitive ints so that implementations are free to avoid boxing.
+ *
+ * Any number of threads may offer numbers at the same time, but only a single consumer thread may
+ * drain the queue.
+ */
+public interface NumberQueue {
+
+    /**
+     * Add a number to the queue. This call never blocks.
+     * @param number: Number to add
+     * @return true if the number was added, false if the queue is full
+     */
+    public boolean offer(int number);
+
+    /**
+     * Add a batch of numbers to the queue, in order. Implementations should add the whole batch in a
+     * single operation where they can. If there is only room for part of the batch, the numbers from
+     * the start of the batch that fit are added. This call never blocks.
+     * @param numbers: Buffer holding the numbers to add
+     * @param offset: Index in the buffer of the first number to add
+     * @param length: Number of numbers to add
+     * @return the number of numbers added from the start of the batch, 0 if the queue is full
+     */
+    public int offerBatch(int[] numbers, int offset, int length);
+
+    /**
+     * Remove numbers from the head of the queue, in the order they were added, and copy them into
+     * the target buffer. This call never blocks, and returns 0 if the queue is empty. Must only be
+     * called from a single consumer thread.
+     * @param target: Buffer to copy the numbers into
+     * @param offset: Index in the buffer to copy the first number to
+     * @param maxNumbers: Maximum number of numbers to remove
+     * @return the number of numbers removed and copied into the buffer
+     */
+    public int drainTo(int[] target, int offset, int maxNumbers);
+
+    /**
+     * @return an estimate of the number of numbers waiting in the queue
+     */
+    public int size();
+
+    public default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,50 @@
+package demo.producerconsumer.queue;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A volatile long counter padded on both sides so that it sits on its own cache line. Queue
+ * sequences are written by different threads at very high rates, and if two of them shared a cache
+ * line every write by one thread would invalidate the line for the other ("false sharing").
+ *
+ * The padding is split across a class hierarchy because the JVM is free to reorder fields within a
+ * class, but lays out superclass fields before subclass fields.
+ */
+class PaddedSequence extends PaddedSequenceValue {
+    protected long p9, p10, p11, p12, p13, p14, p15;
+
+    private static final AtomicLongFieldUpdater<PaddedSequenceValue> VALUE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(PaddedSequenceValue.class, "value");
+
+    PaddedSequence(long initialValue) {
+        VALUE_UPDATER.set(this, initialValue);
+    }
+
+    long get() {
+        return value;
+    }
+
+    void set(long newValue) {
+        value = newValue;
+    }
+
+    /**
+     * Ordered write that does not wait for the store to become visible to other threads. Writes
+     * made before this call are still guaranteed to be visible before the new value is.
+     */
+    void lazySet(long newValue) {
+        VALUE_UPDATER.lazySet(this, newValue);
+    }
+
+    boolean compareAndSet(long expectedValue, long newValue) {
+        return VALUE_UPDATER.compareAndSet(this, expectedValue, newValue);
+    }
+}
+
+abstract class PaddedSequenceLeftPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class PaddedSequenceValue extends PaddedSequenceLeftPadding {
+    protected volatile long value;
+}
@@ -0,0 +1,11 @@
+package demo.producerconsumer.queue;
+
+/**
+ * The available NumberQueue implementations.
+ */
+public enum QueueType {
+    // Bounded, lock-free ring buffer of primitive ints
+    RING,
+    // Unbounded linked queue of boxed Integers
+    LINKED
+}
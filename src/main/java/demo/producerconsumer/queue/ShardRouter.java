@@ -0,0 +1,51 @@
+package demo.producerconsumer.queue;
+
+/**
+ * Splits the range of valid numbers, 0 to maxValue (inclusive), into a fixed number of equally sized,
+ * contiguous slices, one per consumer shard, and maps each number to the shard that owns its slice.
+ * Since every number always goes to the same shard, each shard can screen for duplicates on its own,
+ * and no two shards can ever log the same number.
+ *
+ * This class is immutable and thread-safe.
+ */
+public final class ShardRouter {
+    private final int shardCount;
+    private final int maxValueInclusive;
+    private final int sliceSize;
+
+    public ShardRouter(int shardCount, int maxValue) {
+        if (shardCount <= 0 || maxValue < 0) {
+            throw new IllegalArgumentException("ShardRouter requires a positive shard count and a non-negative max value");
+        }
+        this.shardCount = shardCount;
+        this.maxValueInclusive = maxValue;
+        // Rounded up so the last slice ends at or past the max value
+        this.sliceSize = (int) (((long) maxValue + shardCount) / shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @param number: A number from 0 to the max value
+     * @return the index of the shard that owns the number
+     */
+    public int shardOf(int number) {
+        return number / sliceSize;
+    }
+
+    /**
+     * @return the smallest number in the shard's slice
+     */
+    public int firstValue(int shard) {
+        return shard * sliceSize;
+    }
+
+    /**
+     * @return the largest number in the shard's slice
+     */
+    public int lastValue(int shard) {
+        return (int) Math.min((long) (shard + 1) * sliceSize - 1, maxValueInclusive);
+    }
+}
@@ -0,0 +1,16 @@
+package demo.producerconsumer.server;
+
+import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
+
+/**
+ * Classes that implement this interface accept client connections and read their input until
+ * the server receives the terminate signal.
+ */
+public interface ConnectionListener extends TerminateSignalReceiver {
+
+    /**
+     * Accept and service client connections. This call blocks until the server has been
+     * signalled to terminate and the client connections have been shut down.
+     */
+    public void listenForClients();
+}
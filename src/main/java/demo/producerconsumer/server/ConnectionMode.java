@@ -0,0 +1,14 @@
+package demo.producerconsumer.server;
+
+/**
+ * The available engines for accepting client connections and reading their input.
+ */
+public enum ConnectionMode {
+    // Blocking sockets, each client is read by a thread from a fixed size pool
+    THREAD_POOL,
+    // Blocking sockets, each client is read by its own virtual thread. Falls back to THREAD_POOL
+    // when the JVM does not support virtual threads.
+    VIRTUAL_THREADS,
+    // Non-blocking channels serviced by a small number of selector event loop threads
+    NIO
+}
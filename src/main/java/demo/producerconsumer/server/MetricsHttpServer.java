@@ -0,0 +1,169 @@
+package demo.producerconsumer.server;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.metrics.PrometheusTextWriter;
+import demo.producerconsumer.metrics.ServerMetrics;
+import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * A minimal HTTP server that serves the ServerMetrics in the Prometheus text format, for monitoring to
+ * scrape. It only listens on the loopback address, and answers GET /metrics (or GET /) with the metrics
+ * and anything else with 404, closing the connection after each response.
+ *
+ * Scrapes are answered one at a time on the server's own thread, which reads each request into the same
+ * buffer and writes each response from the same PrometheusTextWriter. Apart from the socket the JDK
+ * creates for each connection, answering a scrape creates no objects, and it never takes the locks of
+ * the loggers, so scraping does not hold up or add garbage to the pipeline. A client that does not send
+ * its request within the timeout is disconnected, so it cannot hold up other scrapes for long.
+ *
+ * The server stops when the server is terminated.
+ */
+public class MetricsHttpServer implements TerminateSignalReceiver {
+    private static final int MAX_REQUEST_LENGTH = 4096;
+    private static final int RESPONSE_BUFFER_SIZE = 16384;
+    private static final String METRICS_PATH = "/metrics";
+
+    private final ServerSocket serverSocket;
+    private final ServerMetrics serverMetrics;
+    private final Thread serverThread;
+    // Only used by the server thread
+    private final byte[] requestBuffer;
+    private final PrometheusTextWriter body;
+    private final PrometheusTextWriter header;
+
+    /**
+     * @param port: Local port to listen on, or 0 for any free port
+     */
+    public MetricsHttpServer(int port, ServerMetrics serverMetrics) throws IOException {
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.serverMetrics = serverMetrics;
+        this.serverThread = new Thread(this::doServe, "metrics-http");
+        this.serverThread.setDaemon(true);
+        this.requestBuffer = new byte[MAX_REQUEST_LENGTH];
+        this.body = new PrometheusTextWriter(RESPONSE_BUFFER_SIZE);
+        this.header = new PrometheusTextWriter(256);
+    }
+
+    /**
+     * Start answering scrapes. Calling this function when the server is already started will have no
+     * effect.
+     */
+    public synchronized void start() {
+        if (!serverThread.isAlive()) {
+            serverThread.start();
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stop listening, after answering any scrape already being answered.
+     */
+    @Override
+    public void receiveTerminateSignal() {
+        IOUtils.closeQuietly(serverSocket, null);
+    }
+
+    private void doServe() {
+        while (!serverSocket.isClosed()) {
+            Socket clientSocket;
+            try {
+                clientSocket = serverSocket.accept();
+            } catch (IOException e) {
+                // Thrown when the server socket is closed
+                continue;
+            }
+            try {
+                clientSocket.setSoTimeout(ApplicationConstants.METRICS_HTTP_TIMEOUT_MS);
+                answer(clientSocket.getInputStream(), clientSocket.getOutputStream());
+            } catch (IOException ignored) {
+                // The client went away or timed out, there is no one to report it to
+            } finally {
+                IOUtils.closeQuietly(clientSocket, null);
+            }
+        }
+    }
+
+    private void answer(InputStream inputStream, OutputStream outputStream) throws IOException {
+        int requestLength = readRequestHead(inputStream);
+        body.reset();
+        header.reset();
+        if (isMetricsRequest(requestLength)) {
+            serverMetrics.writePrometheus(body);
+            header.append("HTTP/1.1 200 OK\r\nContent-Type: text/plain; version=0.0.4; charset=utf-8\r\n");
+        }
+        else {
+            body.append("Not Found\n");
+            header.append("HTTP/1.1 404 Not Found\r\nContent-Type: text/plain; charset=utf-8\r\n");
+        }
+        header.append("Content-Length: ").append(body.getLength()).append("\r\nConnection: close\r\n\r\n");
+        outputStream.write(header.getBuffer(), 0, header.getLength());
+        outputStream.write(body.getBuffer(), 0, body.getLength());
+        outputStream.flush();
+    }
+
+    /**
+     * Read the request line and headers into the request buffer, up to the blank line that ends them,
+     * the end of the input, or the size of the buffer.
+     * @return the number of bytes read
+     */
+    private int readRequestHead(InputStream inputStream) throws IOException {
+        int length = 0;
+        while (length < requestBuffer.length && !endsWithBlankLine(length)) {
+            int bytesRead = inputStream.read(requestBuffer, length, requestBuffer.length - length);
+            if (bytesRead < 0) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    private boolean endsWithBlankLine(int length) {
+        return length >= 4 && requestBuffer[length - 4] == '\r' && requestBuffer[length - 3] == '\n'
+                && requestBuffer[length - 2] == '\r' && requestBuffer[length - 1] == '\n';
+    }
+
+    /**
+     * @return true if the request is a GET of the metrics path or the root, with or without a query
+     */
+    private boolean isMetricsRequest(int length) {
+        if (!startsWith("GET ", 0, length)) {
+            return false;
+        }
+        int pathStart = 4;
+        int pathEnd = pathStart;
+        if (startsWith(METRICS_PATH, pathStart, length)) {
+            pathEnd += METRICS_PATH.length();
+        }
+        else if (startsWith("/", pathStart, length)) {
+            pathEnd++;
+        }
+        else {
+            return false;
+        }
+        return pathEnd < length && (requestBuffer[pathEnd] == ' ' || requestBuffer[pathEnd] == '?');
+    }
+
+    private boolean startsWith(String prefix, int offset, int length) {
+        if (offset + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (requestBuffer[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
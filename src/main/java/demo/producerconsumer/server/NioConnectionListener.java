@@ -0,0 +1,238 @@
+package demo.producerconsumer.server;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.producer.BackpressureGate;
+import demo.producerconsumer.producer.ChannelNumberProducer;
+import demo.producerconsumer.producer.NumberChunk;
+import demo.producerconsumer.producer.NumberPublisher;
+import demo.producerconsumer.server.signalling.TerminateSignalSender;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Listener module that services client connections with non-blocking channels instead of a thread
+ * per client. The calling thread accepts connections and hands them out round-robin to a small,
+ * fixed number of event loop threads, each of which multiplexes its connections with a Selector.
+ * Every connection is read as soon as it has data available, so an open connection is never left
+ * waiting in a queue with its socket unread.
+ *
+ * The "at most N concurrent consumers" rule is kept as a cap on the number of connections that are
+ * being read and processed at the same time, rather than as a cap on the number of open connections.
+ * Each loop reads one connection at a time, so the cap is enforced by never starting more loops than
+ * maxActiveReads. Each read is limited to the size of the loop's read buffer, so busy connections
+ * sharing a loop take turns.
+ *
+ * While the publisher's backpressure gate reports the shared queue is over its high watermark, each
+ * loop clears the read interest of all of its connections and only wakes periodically to check the
+ * queue again. Unread data backs up in the socket buffers until the queue drains to the low watermark.
+ */
+public class NioConnectionListener implements ConnectionListener {
+    private final ServerSocketChannel serverChannel;
+    private final NumberPublisher numberPublisher;
+    private final TerminateSignalSender terminateSignalSender;
+    private final EventLoop[] eventLoops;
+    private final AtomicBoolean serverActive;
+
+    /**
+     * @param eventLoopThreads: Number of selector threads to start, reduced to maxActiveReads if it is larger
+     * @param maxActiveReads: Maximum number of connections read at the same time
+     */
+    public NioConnectionListener(NumberPublisher numberPublisher, TerminateSignalSender terminateSignalSender,
+                                 int eventLoopThreads, int maxActiveReads) throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(ApplicationConstants.SERVER_PORT));
+        this.numberPublisher = numberPublisher;
+        this.terminateSignalSender = terminateSignalSender;
+        this.serverActive = new AtomicBoolean(true);
+        // Each loop reads a single connection at a time, so the loops are the only read slots
+        this.eventLoops = new EventLoop[Math.min(eventLoopThreads, maxActiveReads)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(i);
+        }
+    }
+
+    @Override
+    public void listenForClients() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.start();
+        }
+
+        int nextEventLoop = 0;
+        try {
+            while (serverActive.get()) {
+                SocketChannel clientChannel = serverChannel.accept();
+                try {
+                    clientChannel.configureBlocking(false);
+                    eventLoops[nextEventLoop].addConnection(clientChannel);
+                    nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                } catch (IOException e) {
+                    IOUtils.closeQuietly(clientChannel, null);
+                }
+            }
+        }
+        catch (IOException ignored) {
+            // Thrown when the terminate signal closes the channel while blocking on accept(), or
+            // on any other error. Closing again will not harm anything.
+            IOUtils.closeQuietly(serverChannel, null);
+        }
+        finally {
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.waitForShutdown();
+            }
+        }
+    }
+
+    @Override
+    public void receiveTerminateSignal() {
+        serverActive.set(false);
+        IOUtils.closeQuietly(serverChannel, null);
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.wakeup();
+        }
+    }
+
+    /**
+     * A single selector thread and the connections registered with it. New connections are handed
+     * over through a queue and registered by the loop thread itself, since registering with a
+     * selector from another thread blocks while that selector is waiting in select().
+     */
+    private class EventLoop {
+        private final Selector selector;
+        private final Thread loopThread;
+        private final Queue<SocketChannel> pendingConnections;
+        private final ByteBuffer readBuffer;
+        private final NumberChunk parsedNumbers;
+        // Only accessed from the loop thread
+        private boolean readsPaused;
+
+        EventLoop(int id) throws IOException {
+            this.selector = Selector.open();
+            this.loopThread = new Thread(this::doLoop, "nio-event-loop-" + id);
+            this.pendingConnections = new ConcurrentLinkedQueue<>();
+            this.readBuffer = ByteBuffer.allocate(ApplicationConstants.CLIENT_READ_BUFFER_SIZE);
+            this.parsedNumbers = NumberChunk.forReadBufferSize(ApplicationConstants.CLIENT_READ_BUFFER_SIZE);
+        }
+
+        void start() {
+            loopThread.start();
+        }
+
+        void addConnection(SocketChannel clientChannel) {
+            pendingConnections.offer(clientChannel);
+            selector.wakeup();
+        }
+
+        void wakeup() {
+            selector.wakeup();
+        }
+
+        void waitForShutdown() {
+            try {
+                loopThread.join(ApplicationConstants.THREADPOOL_EXPECTED_SHUTDOWN_TIME_MS);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private void doLoop() {
+            try {
+                while (serverActive.get()) {
+                    updateReadInterest();
+                    if (readsPaused) {
+                        selector.select(ApplicationConstants.BACKPRESSURE_PAUSED_SELECT_MS);
+                    }
+                    else {
+                        selector.select();
+                    }
+                    registerPendingConnections();
+                    processReadyConnections();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                closeAllConnections();
+            }
+        }
+
+        private void registerPendingConnections() {
+            SocketChannel clientChannel;
+            while ((clientChannel = pendingConnections.poll()) != null) {
+                try {
+                    ChannelNumberProducer clientReader = new ChannelNumberProducer(
+                            clientChannel, numberPublisher, terminateSignalSender, parsedNumbers);
+                    clientChannel.register(selector, readsPaused ? 0 : SelectionKey.OP_READ, clientReader);
+                    if (readsPaused) {
+                        numberPublisher.getBackpressureGate().throttleStarted(clientReader.getThrottleStats());
+                    }
+                } catch (IOException e) {
+                    IOUtils.closeQuietly(clientChannel, null);
+                }
+            }
+        }
+
+        /**
+         * Stop or resume reading every connection on this loop when the backpressure gate changes state.
+         */
+        private void updateReadInterest() {
+            BackpressureGate backpressureGate = numberPublisher.getBackpressureGate();
+            boolean pauseReads = backpressureGate != null && backpressureGate.shouldPause();
+            if (pauseReads == readsPaused) {
+                return;
+            }
+            readsPaused = pauseReads;
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid()) {
+                    continue;
+                }
+                ChannelNumberProducer clientReader = (ChannelNumberProducer) key.attachment();
+                if (pauseReads) {
+                    key.interestOps(0);
+                    backpressureGate.throttleStarted(clientReader.getThrottleStats());
+                }
+                else {
+                    key.interestOps(SelectionKey.OP_READ);
+                    backpressureGate.throttleEnded(clientReader.getThrottleStats());
+                }
+            }
+        }
+
+        private void processReadyConnections() {
+            Iterator<SelectionKey> readyKeys = selector.selectedKeys().iterator();
+            while (readyKeys.hasNext() && serverActive.get()) {
+                SelectionKey key = readyKeys.next();
+                readyKeys.remove();
+
+                ChannelNumberProducer clientReader = (ChannelNumberProducer) key.attachment();
+                if (!clientReader.readAvailable(readBuffer)) {
+                    key.cancel();
+                }
+            }
+        }
+
+        private void closeAllConnections() {
+            BackpressureGate backpressureGate = numberPublisher.getBackpressureGate();
+            for (SelectionKey key : selector.keys()) {
+                ChannelNumberProducer clientReader = (ChannelNumberProducer) key.attachment();
+                if (backpressureGate != null) {
+                    backpressureGate.throttleEnded(clientReader.getThrottleStats());
+                }
+                clientReader.close();
+            }
+            SocketChannel clientChannel;
+            while ((clientChannel = pendingConnections.poll()) != null) {
+                IOUtils.closeQuietly(clientChannel, null);
+            }
+            IOUtils.closeQuietly(selector, null);
+        }
+    }
+}
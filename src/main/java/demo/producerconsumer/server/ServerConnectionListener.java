@@ -2,37 +2,69 @@ package demo.producerconsumer.server;
 
 import demo.producerconsumer.constants.ApplicationConstants;
 import demo.producerconsumer.producer.ClientNumberProducer;
-import demo.producerconsumer.server.signalling.TerminateSignalReceiver;
+import demo.producerconsumer.producer.NumberPublisher;
 import demo.producerconsumer.server.signalling.TerminateSignalSender;
 import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Listener module responsible for handling incoming connections and creating a new client thread
- * to process data from the connected socket. Uses a thread pool with a fixed size of 5 allowed
- * connections. Additional connections will wait in the executor queue until a thread is available.
+ * to process data from the connected socket. Uses a thread pool with a fixed size of allowed
+ * connections, 5 by default. Additional connections will wait in the executor queue until a thread
+ * is available.
+ *
+ * Alternatively, each client can be run on its own virtual thread when the JVM supports them (Java 21
+ * and later). Connections then never wait in a queue, and the limit on concurrent clients is enforced
+ * by a semaphore that each client holds only while it is processing input it has read. Idle
+ * connections cost little more than their socket. On older JVMs this falls back to the fixed pool.
  */
-public class ServerConnectionListener implements TerminateSignalReceiver {
+public class ServerConnectionListener implements ConnectionListener {
     private final ServerSocket serverSocket;
     private final ExecutorService threadPoolExecutor;
-    private final Queue<Integer> numberMessageQueue;
+    private final NumberPublisher numberPublisher;
     private final TerminateSignalSender terminateSignalSender;
+    // Only used when running on virtual threads, null when the pool size limits the clients
+    private final Semaphore readPermits;
+
+    public ServerConnectionListener(NumberPublisher numberPublisher, TerminateSignalSender terminateSignalSender,
+                                    int maxClientThreads) throws IOException {
+        this(numberPublisher, terminateSignalSender, maxClientThreads, false);
+    }
+
+    /**
+     * @param useVirtualThreads: Run each client on its own virtual thread if the JVM supports it
+     */
+    public ServerConnectionListener(NumberPublisher numberPublisher, TerminateSignalSender terminateSignalSender,
+                                    int maxClientThreads, boolean useVirtualThreads) throws IOException {
+        ExecutorService virtualThreadExecutor = useVirtualThreads ? newVirtualThreadExecutor() : null;
+        if (useVirtualThreads && virtualThreadExecutor == null) {
+            System.out.println("Virtual threads are not supported by this JVM, using a fixed pool of "
+                    + maxClientThreads + " client threads");
+        }
 
-    public ServerConnectionListener(Queue<Integer> numberMessageQueue, TerminateSignalSender terminateSignalSender) throws IOException {
         this.serverSocket = new ServerSocket(ApplicationConstants.SERVER_PORT);
-        this.threadPoolExecutor = Executors.newFixedThreadPool(ApplicationConstants.MAX_CLIENT_THREADS);
-        this.numberMessageQueue = numberMessageQueue;
+        if (virtualThreadExecutor != null) {
+            this.threadPoolExecutor = virtualThreadExecutor;
+            this.readPermits = new Semaphore(maxClientThreads);
+        }
+        else {
+            this.threadPoolExecutor = Executors.newFixedThreadPool(maxClientThreads);
+            this.readPermits = null;
+        }
+        this.numberPublisher = numberPublisher;
         this.terminateSignalSender = terminateSignalSender;
     }
 
+    @Override
     public void listenForClients() {
         try {
             while (!threadPoolExecutor.isShutdown()) {
@@ -41,7 +73,7 @@ public class ServerConnectionListener implements TerminateSignalReceiver {
                     // Create a new client handler, register it with the signal receiver, and
                     // send to the execution service.
                     ClientNumberProducer clientReader = new ClientNumberProducer(
-                            clientSocket, numberMessageQueue, terminateSignalSender);
+                            clientSocket, numberPublisher, terminateSignalSender, readPermits);
                     terminateSignalSender.registerSignalReceiver(clientReader);
                     submitClientForExecution(clientReader);
                 } catch (RejectedExecutionException | IOException e) {
@@ -65,6 +97,21 @@ public class ServerConnectionListener implements TerminateSignalReceiver {
         }
     }
 
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() at runtime, so that the application can
+     * still be built and run on Java 8.
+     * @return the executor, or null if virtual threads are not available on this JVM
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Not present before Java 21, and throws on Java 19/20 unless preview features are enabled
+            return null;
+        }
+    }
+
     private synchronized void submitClientForExecution(ClientNumberProducer client) {
         threadPoolExecutor.execute(() -> {
             client.doRun();
@@ -1,26 +1,253 @@
 package demo.producerconsumer.server;
 
+import demo.producerconsumer.consumer.wait.BusySpinWaitStrategy;
+import demo.producerconsumer.consumer.wait.WaitStrategy;
+import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.data.UniqueDataScreenerCompressedImpl;
+import demo.producerconsumer.data.UniqueDataScreenerSliceImpl;
+import demo.producerconsumer.logging.AsyncLogWriter;
+import demo.producerconsumer.logging.LogDurability;
+import demo.producerconsumer.logging.LogWriter;
 import demo.producerconsumer.logging.NumberLogger;
 import demo.producerconsumer.logging.NumberReport;
+import demo.producerconsumer.metrics.LatencyHistogram;
+import demo.producerconsumer.metrics.PipelineMetrics;
+import demo.producerconsumer.metrics.StageLatencies;
+import demo.producerconsumer.producer.BackpressureGate;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Responsible for outputting the server metrics every 10 seconds. Extends from a TimerTask so
- * that it can be run in a timer.
+ * that it can be run in a timer. Each report covers the time since the last one, and lists:
+ * - the unique numbers and duplicates received, in total and by each consumer shard
+ * - how often the consumers spun, yielded and parked while waiting for input
+ * - how often and for how long client connections were throttled by backpressure
+ * - for an asynchronous log writer, how long buffers took to hand over and write, and how often loggers
+ *   stalled waiting for a free buffer
+ * - for a log forced to disk, the distribution of fsync times
+ * - for compressed screeners, the number of each type of container and the memory they use
+ * - from the PipelineMetrics: numbers received, duplicate rate, log flushes, queue depth, connections,
+ *   invalid-input disconnects, the busiest connections, and the latency of each pipeline stage
+ * None of the reports take the locks of the loggers.
  */
 public class ServerReporter extends TimerTask {
-    private final NumberLogger logger;
+    // Connections listed in each report, busiest first
+    private static final int REPORTED_CONNECTIONS = 5;
+
+    private final NumberLogger[] shardLoggers;
+    private final WaitStrategy[] consumerWaitStrategies;
+    private final BackpressureGate backpressureGate;
+    private final LogWriter logWriter;
+    private final UniqueDataScreener[] shardScreeners;
+    private final PipelineMetrics pipelineMetrics;
+
+    // Only accessed from the timer thread, and from the main thread once the timer is cancelled
+    private long lastIdleSpinCount;
+    private long lastYieldCount;
+    private long lastParkCount;
+    private long lastThrottleCount;
+    private long lastThrottledNanos;
+    private long lastSwapCount;
+    private long lastSwapNanos;
+    private long lastStallCount;
+    private long lastStallNanos;
+    private long lastBuffersWritten;
+    private long lastWriteNanos;
 
     public ServerReporter(NumberLogger logger) {
-        this.logger = logger;
+        this(new NumberLogger[] {logger}, new WaitStrategy[] {new BusySpinWaitStrategy()}, null, null,
+                new UniqueDataScreener[0], null);
+    }
+
+    /**
+     * Report on a sharded consumer. The metrics of all shards are added together, and the uniques
+     * received by each shard are listed so an uneven spread of input across shards can be seen.
+     * @param shardLoggers: Logger of each consumer shard
+     * @param consumerWaitStrategies: Wait strategy of each consumer shard
+     * @param backpressureGate: Gate whose throttling is reported, or null if backpressure is not used
+     * @param logWriter: Writer whose buffer and fsync stats are reported, or null to not report them
+     * @param shardScreeners: Screener of each consumer shard, whose containers are reported if compressed
+     * @param pipelineMetrics: Metrics of the pipeline that are reported, or null to only report the numbers logged
+     */
+    public ServerReporter(NumberLogger[] shardLoggers, WaitStrategy[] consumerWaitStrategies,
+                          BackpressureGate backpressureGate, LogWriter logWriter,
+                          UniqueDataScreener[] shardScreeners, PipelineMetrics pipelineMetrics) {
+        this.shardLoggers = shardLoggers;
+        this.consumerWaitStrategies = consumerWaitStrategies;
+        this.backpressureGate = backpressureGate;
+        this.logWriter = logWriter;
+        this.shardScreeners = shardScreeners;
+        this.pipelineMetrics = pipelineMetrics;
     }
 
     @Override
     public void run() {
-        NumberReport report = logger.getReport();
-        System.out.println("Received " + report.getUniquesThisRun() + " unique numbers, "
-                + report.getDupesThisRun() + " duplicates. Total uniques: "
-                + report.getTotalUniques());
+        long uniquesThisRun = 0;
+        long dupesThisRun = 0;
+        long totalUniques = 0;
+        StringBuilder shardUniques = new StringBuilder("Shard uniques:");
+        for (NumberLogger shardLogger : shardLoggers) {
+            NumberReport report = shardLogger.getReport();
+            uniquesThisRun += report.getUniquesThisRun();
+            dupesThisRun += report.getDupesThisRun();
+            totalUniques += report.getTotalUniques();
+            shardUniques.append(' ').append(report.getUniquesThisRun());
+        }
+        System.out.println("Received " + uniquesThisRun + " unique numbers, "
+                + dupesThisRun + " duplicates. Total uniques: "
+                + totalUniques);
+        if (shardLoggers.length > 1) {
+            System.out.println(shardUniques);
+        }
+        if (pipelineMetrics != null) {
+            reportPipeline(pipelineMetrics.getReport(new NumberReport(dupesThisRun, uniquesThisRun, totalUniques)));
+            reportStageLatencies(pipelineMetrics.getStageLatencies());
+        }
+
+        long idleSpinCount = 0;
+        long yieldCount = 0;
+        long parkCount = 0;
+        for (WaitStrategy consumerWaitStrategy : consumerWaitStrategies) {
+            idleSpinCount += consumerWaitStrategy.getIdleSpinCount();
+            yieldCount += consumerWaitStrategy.getYieldCount();
+            parkCount += consumerWaitStrategy.getParkCount();
+        }
+        System.out.println("Consumer idle: " + (idleSpinCount - lastIdleSpinCount) + " spins, "
+                + (yieldCount - lastYieldCount) + " yields, " + (parkCount - lastParkCount) + " parks");
+        lastIdleSpinCount = idleSpinCount;
+        lastYieldCount = yieldCount;
+        lastParkCount = parkCount;
+
+        if (backpressureGate != null) {
+            long throttleCount = backpressureGate.getTotalThrottleCount();
+            long throttledNanos = backpressureGate.getTotalThrottledNanos();
+            System.out.println("Backpressure: clients throttled " + (throttleCount - lastThrottleCount) + " times for "
+                    + TimeUnit.NANOSECONDS.toMillis(throttledNanos - lastThrottledNanos) + " ms");
+            lastThrottleCount = throttleCount;
+            lastThrottledNanos = throttledNanos;
+        }
+
+        if (logWriter instanceof AsyncLogWriter) {
+            reportAsyncLogWriter((AsyncLogWriter) logWriter);
+        }
+        if (logWriter != null) {
+            reportLogSyncs();
+        }
+        reportCompressedScreeners();
+    }
+
+    private void reportPipeline(NumberReport report) {
+        System.out.println(String.format(Locale.ROOT, "Pipeline: received %d numbers, %.1f%% duplicates, %d log flushes, "
+                        + "queue depth %d, %d open connections, %d invalid-input disconnects",
+                report.getNumbersReceivedThisRun(), report.getDuplicateRate() * 100, report.getFlushesThisRun(),
+                report.getQueueDepth(), report.getOpenConnections(), report.getInvalidDisconnectsThisRun()));
+
+        List<Map.Entry<String, Long>> connections = new ArrayList<>(report.getConnectionNumbersThisRun().entrySet());
+        if (connections.isEmpty()) {
+            return;
+        }
+        connections.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        StringBuilder busiest = new StringBuilder("Busiest connections:");
+        for (Map.Entry<String, Long> connection : connections.subList(0, Math.min(REPORTED_CONNECTIONS, connections.size()))) {
+            busiest.append(' ').append(connection.getKey()).append(' ').append(connection.getValue());
+        }
+        if (connections.size() > REPORTED_CONNECTIONS) {
+            busiest.append(" and ").append(connections.size() - REPORTED_CONNECTIONS).append(" more");
+        }
+        System.out.println(busiest);
+    }
+
+    private void reportStageLatencies(StageLatencies stageLatencies) {
+        reportLatency("parse", stageLatencies.getParseLatency().getAndReset());
+        reportLatency("queue wait", stageLatencies.getQueueWaitLatency().getAndReset());
+        reportLatency("dedup", stageLatencies.getDedupLatency().getAndReset());
+        reportLatency("buffer", stageLatencies.getBufferResidency().getAndReset());
+        if (logWriter != null) {
+            reportLatency("write", logWriter.getWriteLatency().getAndReset());
+        }
+    }
+
+    private static void reportLatency(String stage, LatencyHistogram.Snapshot latency) {
+        if (latency.getCount() > 0) {
+            System.out.println("Latency " + stage + ": " + formatLatency(latency));
+        }
+    }
+
+    private void reportCompressedScreeners() {
+        int screeners = 0;
+        int arrayContainers = 0;
+        int bitmapContainers = 0;
+        int runContainers = 0;
+        long memoryBytes = 0;
+        for (UniqueDataScreener screener : shardScreeners) {
+            if (screener instanceof UniqueDataScreenerSliceImpl) {
+                screener = ((UniqueDataScreenerSliceImpl) screener).getSliceScreener();
+            }
+            if (screener instanceof UniqueDataScreenerCompressedImpl) {
+                UniqueDataScreenerCompressedImpl compressed = (UniqueDataScreenerCompressedImpl) screener;
+                screeners++;
+                arrayContainers += compressed.getArrayContainerCount();
+                bitmapContainers += compressed.getBitmapContainerCount();
+                runContainers += compressed.getRunContainerCount();
+                memoryBytes += compressed.getMemoryBytes();
+            }
+        }
+        if (screeners > 0) {
+            System.out.println("Screener containers: " + arrayContainers + " array, " + bitmapContainers
+                    + " bitmap, " + runContainers + " run, using " + (memoryBytes >> 10) + " KB");
+        }
+    }
+
+    private void reportLogSyncs() {
+        LatencyHistogram.Snapshot syncLatency = logWriter.getSyncLatency().getAndReset();
+        if (syncLatency.getCount() == 0 && logWriter.getDurability() == LogDurability.NONE) {
+            return;
+        }
+        System.out.println("Log fsync (" + logWriter.getDurability().name().toLowerCase(Locale.ROOT) + "): "
+                + formatLatency(syncLatency));
+    }
+
+    private void reportAsyncLogWriter(AsyncLogWriter asyncLogWriter) {
+        long swapCount = asyncLogWriter.getSwapCount();
+        long swapNanos = asyncLogWriter.getTotalSwapNanos();
+        long stallCount = asyncLogWriter.getStallCount();
+        long stallNanos = asyncLogWriter.getTotalStallNanos();
+        long buffersWritten = asyncLogWriter.getBuffersWritten();
+        long writeNanos = asyncLogWriter.getTotalWriteNanos();
+        long swaps = swapCount - lastSwapCount;
+        long writes = buffersWritten - lastBuffersWritten;
+        System.out.println("Log writer: " + swaps + " buffer swaps averaging "
+                + averageMicros(swapNanos - lastSwapNanos, swaps) + " us, " + writes + " writes averaging "
+                + averageMicros(writeNanos - lastWriteNanos, writes) + " us (max "
+                + TimeUnit.NANOSECONDS.toMicros(asyncLogWriter.getAndResetMaxWriteNanos()) + " us), stalled "
+                + (stallCount - lastStallCount) + " times for "
+                + TimeUnit.NANOSECONDS.toMillis(stallNanos - lastStallNanos) + " ms");
+        lastSwapCount = swapCount;
+        lastSwapNanos = swapNanos;
+        lastStallCount = stallCount;
+        lastStallNanos = stallNanos;
+        lastBuffersWritten = buffersWritten;
+        lastWriteNanos = writeNanos;
+    }
+
+    private static String formatLatency(LatencyHistogram.Snapshot latency) {
+        return String.format(Locale.ROOT, "%d samples, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                latency.getCount(), toMicros(latency.getValueAtPercentile(50)),
+                toMicros(latency.getValueAtPercentile(99)), toMicros(latency.getValueAtPercentile(99.9)),
+                toMicros(latency.getMax()));
+    }
+
+    private static double toMicros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static long averageMicros(long totalNanos, long count) {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / count);
     }
 }
@@ -0,0 +1,105 @@
+package demo.producerconsumer.tools;
+
+import demo.producerconsumer.logging.BinaryLogReader;
+import demo.producerconsumer.logging.LogRecordFormatter;
+import demo.producerconsumer.logging.NumberLogger;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line tool that writes the numbers in one or more log files to standard output in the classic
+ * text format, 9 digits per line. Binary logs are decoded one block at a time, and text logs are copied
+ * as they are, so logs of any size can be exported. Files ending in .gz are decompressed as they are read.
+ * Given a segment manifest, the segments it lists are exported in order.
+ *
+ * Usage: java -cp java-producer-consumer-demo.jar demo.producerconsumer.tools.LogExporter
+ *        numbers.log|numbers.manifest [more files...] > numbers.txt
+ */
+public class LogExporter {
+    private static final int OUTPUT_BUFFER_SIZE = 65536;
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: LogExporter <log file or manifest>...");
+            System.exit(1);
+        }
+        OutputStream output = new BufferedOutputStream(System.out, OUTPUT_BUFFER_SIZE);
+        for (String arg : args) {
+            for (Path logFile : expandManifest(Paths.get(arg))) {
+                export(logFile, output);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Write the numbers in the log file to the output as text.
+     * @param logFile: Text or binary log file, optionally gzipped
+     */
+    public static void export(Path logFile, OutputStream output) throws IOException {
+        InputStream fileStream = Files.newInputStream(logFile);
+        if (logFile.getFileName().toString().endsWith(".gz")) {
+            fileStream = new GZIPInputStream(fileStream, OUTPUT_BUFFER_SIZE);
+        }
+        try (PushbackInputStream logStream = new PushbackInputStream(fileStream, 1)) {
+            int firstByte = logStream.read();
+            if (firstByte == -1) {
+                return;
+            }
+            logStream.unread(firstByte);
+            // Text logs only hold digits and line separators, binary logs start with their magic
+            if (firstByte >= '0' && firstByte <= '9') {
+                IOUtils.copy(logStream, output, OUTPUT_BUFFER_SIZE);
+            }
+            else {
+                exportBinary(logStream, output);
+            }
+        }
+    }
+
+    private static void exportBinary(InputStream logStream, OutputStream output) throws IOException {
+        BinaryLogReader reader = new BinaryLogReader(logStream);
+        byte[] text = new byte[0];
+        int[] numbers;
+        while ((numbers = reader.readBlock()) != null) {
+            int records = reader.getBlockLength();
+            if (text.length < records * NumberLogger.LOG_RECORD_LENGTH) {
+                text = new byte[records * NumberLogger.LOG_RECORD_LENGTH];
+            }
+            int length = 0;
+            for (int i = 0; i < records; i++) {
+                length = LogRecordFormatter.writeRecord(numbers[i], text, length);
+            }
+            output.write(text, 0, length);
+        }
+    }
+
+    private static List<Path> expandManifest(Path file) throws IOException {
+        List<Path> logFiles = new ArrayList<>();
+        if (!file.getFileName().toString().endsWith(MANIFEST_EXTENSION)) {
+            logFiles.add(file);
+            return logFiles;
+        }
+        // Each line is a segment file name followed by its record count
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty()) {
+                logFiles.add(file.resolveSibling(trimmed.split(" ")[0]));
+            }
+        }
+        return logFiles;
+    }
+}
@@ -0,0 +1,47 @@
+package demo.producerconsumer.tools;
+
+import demo.producerconsumer.constants.ApplicationConstants;
+import demo.producerconsumer.logging.LogFormat;
+import demo.producerconsumer.logging.SortedLogExporter;
+import demo.producerconsumer.persistence.Checkpoint;
+import demo.producerconsumer.persistence.CheckpointStore;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line tool that writes every number marked in a screener checkpoint to a sorted log, without
+ * the server running. The checkpoint is mapped rather than read, so this takes about as long as the
+ * sorted log takes to write.
+ *
+ * Usage: java -cp java-producer-consumer-demo.jar demo.producerconsumer.tools.SortedExport
+ *        screener.checkpoint [numbers.sorted.log] [text|binary]
+ */
+public class SortedExport {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SortedExport <checkpoint file> [sorted log file] [text|binary]");
+            System.exit(1);
+        }
+        String exportFile = args.length > 1 ? args[1] : ApplicationConstants.SORTED_LOGFILE_NAME;
+        LogFormat logFormat = args.length > 2
+                ? LogFormat.valueOf(args[2].trim().toUpperCase(Locale.ROOT)) : LogFormat.TEXT;
+
+        Checkpoint checkpoint = new CheckpointStore(Paths.get(args[0])).load();
+        if (checkpoint == null) {
+            System.err.println("No usable checkpoint in " + args[0]);
+            System.exit(1);
+        }
+
+        long startTime = System.nanoTime();
+        long exported = new SortedLogExporter(logFormat).export(
+                Collections.singletonList(new SortedLogExporter.MarkerSlice(0, checkpoint.getMarkers())),
+                Paths.get(exportFile));
+        System.out.println("Exported " + exported + " numbers in sorted order to " + exportFile + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+    }
+}
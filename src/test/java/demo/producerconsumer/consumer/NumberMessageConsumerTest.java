@@ -1,17 +1,19 @@
 package demo.producerconsumer.consumer;
 
 import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.NumberQueue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
 
 @ExtendWith(MockitoExtension.class)
 public class NumberMessageConsumerTest {
@@ -21,12 +23,15 @@ public class NumberMessageConsumerTest {
 
     private NumberMessageConsumer underTest;
 
-    private Queue<Integer> sharedQueue;
+    private NumberQueue sharedQueue;
+
+    private final AtomicInteger numbersLogged = new AtomicInteger();
 
     @Test
     public void testSimpleInput() throws InterruptedException {
-        sharedQueue = new ConcurrentLinkedQueue<>();
+        sharedQueue = new IntRingBuffer(1024);
 
+        countLoggedNumbers();
         underTest = new NumberMessageConsumer(sharedQueue, mockLogger);
         underTest.startConsumer();
 
@@ -40,13 +45,14 @@ public class NumberMessageConsumerTest {
         underTest.receiveTerminateSignal();
         underTest.waitForConsumerToFinish();
 
-        verify(mockLogger, times(6)).logNumber(any());
+        assertEquals(6, numbersLogged.get());
     }
 
     @Test
     public void testMultipleInput() throws InterruptedException {
-        sharedQueue = new ConcurrentLinkedQueue<>();
+        sharedQueue = new IntRingBuffer(1024);
 
+        countLoggedNumbers();
         underTest = new NumberMessageConsumer(sharedQueue, mockLogger);
         underTest.startConsumer();
 
@@ -76,7 +82,14 @@ public class NumberMessageConsumerTest {
         underTest.receiveTerminateSignal();
         underTest.waitForConsumerToFinish();
 
-        verify(mockLogger, times(20)).logNumber(any());
+        assertEquals(20, numbersLogged.get());
+    }
+
+    private void countLoggedNumbers() {
+        doAnswer(invocation -> {
+            numbersLogged.addAndGet(invocation.getArgument(2));
+            return null;
+        }).when(mockLogger).logNumbers(any(), anyInt(), anyInt());
     }
 
     private Thread createMockProducer(String...numbers) {
@@ -0,0 +1,87 @@
+package demo.producerconsumer.consumer.wait;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WaitStrategyTest {
+
+    @Test
+    public void testBusySpin() {
+        BusySpinWaitStrategy underTest = new BusySpinWaitStrategy();
+        int idleCount = 0;
+        for (int i = 0; i < 10; i++) {
+            idleCount = underTest.idle(idleCount);
+        }
+        assertEquals(10, underTest.getIdleSpinCount());
+        assertEquals(0, underTest.getParkCount());
+    }
+
+    @Test
+    public void testYieldingSpinsFirst() {
+        YieldingWaitStrategy underTest = new YieldingWaitStrategy(3);
+        int idleCount = 0;
+        for (int i = 0; i < 5; i++) {
+            idleCount = underTest.idle(idleCount);
+        }
+        assertEquals(3, underTest.getIdleSpinCount());
+        assertEquals(2, underTest.getYieldCount());
+        // The count stops growing once past the spins, so it can't overflow back into spinning
+        assertEquals(3, idleCount);
+        assertEquals(Integer.MAX_VALUE, underTest.idle(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testParkingBacksOffToMaximum() {
+        ParkingWaitStrategy underTest = new ParkingWaitStrategy(2, 1000, 8000);
+        int idleCount = 0;
+        for (int i = 0; i < 10; i++) {
+            idleCount = underTest.idle(idleCount);
+        }
+        assertEquals(2, underTest.getIdleSpinCount());
+        assertEquals(8, underTest.getParkCount());
+        // 2 spins, then parks of 1, 2, 4 and 8 microseconds. The count stops growing at the maximum.
+        assertEquals(5, idleCount);
+    }
+
+    @Test
+    public void testBlockingWakesOnSignal() throws InterruptedException {
+        BlockingWaitStrategy underTest = new BlockingWaitStrategy(0, TimeUnit.SECONDS.toNanos(30));
+
+        long startTime = System.nanoTime();
+        Thread consumer = new Thread(() -> underTest.idle(0));
+        consumer.start();
+        Thread.sleep(200);
+        underTest.signalNumbersAvailable();
+        consumer.join(5000);
+
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime) < 5);
+        assertEquals(1, underTest.getParkCount());
+    }
+
+    @Test
+    public void testBlockingDoesNotLoseEarlySignal() {
+        BlockingWaitStrategy underTest = new BlockingWaitStrategy(0, TimeUnit.SECONDS.toNanos(30));
+
+        // A signal sent before the consumer waits means numbers may already be in the queue
+        underTest.signalNumbersAvailable();
+        underTest.idle(0);
+
+        assertEquals(0, underTest.getParkCount());
+    }
+
+    @Test
+    public void testBlockingIdleCountDoesNotOverflow() {
+        BlockingWaitStrategy underTest = new BlockingWaitStrategy(2, TimeUnit.SECONDS.toNanos(30));
+        assertEquals(1, underTest.idle(0));
+
+        // Signalled first so the wait returns straight away
+        underTest.signalNumbersAvailable();
+        assertEquals(2, underTest.idle(2));
+        underTest.signalNumbersAvailable();
+        assertEquals(Integer.MAX_VALUE, underTest.idle(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,115 @@
+package demo.producerconsumer.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UniqueDataScreenerCompressedImplTest {
+    @Test
+    public void testUnique() {
+        UniqueDataScreenerCompressedImpl underTest = new UniqueDataScreenerCompressedImpl();
+
+        assertTrue(underTest.isUnique(111224));
+        assertFalse(underTest.isUnique(111224));
+
+        assertTrue(underTest.isUnique(0));
+        assertFalse(underTest.isUnique(0));
+
+        assertTrue(underTest.isUnique(999999999));
+        assertFalse(underTest.isUnique(999999999));
+
+        assertEquals(3, underTest.getArrayContainerCount());
+    }
+
+    @Test
+    public void testOutOfRange() {
+        UniqueDataScreenerCompressedImpl underTest = new UniqueDataScreenerCompressedImpl(1000);
+
+        assertFalse(underTest.isUnique(-1));
+        assertFalse(underTest.isUnique(1001));
+        assertTrue(underTest.isUnique(1000));
+    }
+
+    @Test
+    public void testScatteredValuesUseBitmap() {
+        UniqueDataScreenerCompressedImpl underTest = new UniqueDataScreenerCompressedImpl();
+
+        // Every other value, so there are as many runs as values
+        for (int value = 0; value < 8000; value += 2) {
+            assertTrue(underTest.isUnique(value));
+        }
+        assertEquals(1, underTest.getArrayContainerCount());
+
+        for (int value = 8000; value < 20000; value += 2) {
+            assertTrue(underTest.isUnique(value));
+        }
+        assertEquals(0, underTest.getArrayContainerCount());
+        assertEquals(1, underTest.getBitmapContainerCount());
+        for (int value = 0; value < 20000; value++) {
+            assertEquals(value % 2 == 1, underTest.isUnique(value));
+        }
+    }
+
+    @Test
+    public void testConsecutiveValuesUseRuns() {
+        UniqueDataScreenerCompressedImpl underTest = new UniqueDataScreenerCompressedImpl();
+
+        // A whole chunk, out of order so that runs have to be joined
+        for (int value = 65536; value < 131072; value += 2) {
+            assertTrue(underTest.isUnique(value));
+        }
+        for (int value = 131071; value > 65536; value -= 2) {
+            assertTrue(underTest.isUnique(value));
+        }
+        for (int value = 65536; value < 131072; value++) {
+            assertFalse(underTest.isUnique(value));
+        }
+        assertEquals(1, underTest.getRunContainerCount());
+        assertEquals(0, underTest.getBitmapContainerCount());
+        assertTrue(underTest.getMemoryBytes() < 1000000);
+    }
+
+    @Test
+    public void testRandomValuesMatchMarkerImpl() {
+        UniqueDataScreenerCompressedImpl underTest = new UniqueDataScreenerCompressedImpl(10000000);
+        UniqueDataScreenerMarkerImpl expected = new UniqueDataScreenerMarkerImpl(10000000);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 500000; i++) {
+            // Clustered around a few ranges of different widths, so that every container type is used
+            int value = (random.nextInt(4) * 2000000) + random.nextInt(1 << (8 + random.nextInt(12)));
+            assertEquals(expected.isUnique(value), underTest.isUnique(value));
+        }
+        assertEquals(expected.getMarkers(), underTest.getMarkers());
+    }
+
+    @Test
+    public void testLoadMarkers() {
+        UniqueDataScreenerMarkerImpl saved = new UniqueDataScreenerMarkerImpl(1000000);
+        for (int value = 0; value < 100000; value++) {
+            saved.isUnique(value);
+        }
+        saved.isUnique(200000);
+        for (int value = 300000; value < 310000; value += 3) {
+            saved.isUnique(value);
+        }
+        saved.isUnique(1000000);
+
+        UniqueDataScreenerCompressedImpl underTest = new UniqueDataScreenerCompressedImpl(1000000);
+        underTest.isUnique(500000);
+        underTest.loadMarkers(saved.getMarkers());
+
+        assertEquals(saved.getMarkers(), underTest.getMarkers());
+        assertTrue(underTest.isUnique(500000));
+        assertFalse(underTest.isUnique(99999));
+        assertTrue(underTest.isUnique(100000));
+        assertFalse(underTest.isUnique(300003));
+        assertTrue(underTest.isUnique(300004));
+        assertFalse(underTest.isUnique(1000000));
+        assertEquals(2, underTest.getRunContainerCount());
+    }
+}
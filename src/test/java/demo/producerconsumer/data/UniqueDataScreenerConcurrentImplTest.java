@@ -0,0 +1,99 @@
+package demo.producerconsumer.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UniqueDataScreenerConcurrentImplTest {
+
+    @Test
+    public void testUnique() {
+        UniqueDataScreenerConcurrentImpl underTest = new UniqueDataScreenerConcurrentImpl();
+
+        for (int data = 111224; data < 111300; data++) {
+            assertTrue(underTest.isUnique(data));
+            assertFalse(underTest.isUnique(data));
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        UniqueDataScreenerConcurrentImpl underTest = new UniqueDataScreenerConcurrentImpl();
+        assertTrue(underTest.isUnique(0));
+        assertFalse(underTest.isUnique(0));
+
+        assertTrue(underTest.isUnique(63));
+        assertTrue(underTest.isUnique(64));
+        assertFalse(underTest.isUnique(63));
+
+        assertTrue(underTest.isUnique(999999999));
+        assertFalse(underTest.isUnique(999999999));
+    }
+
+    @Test
+    public void testIllegalConstructorArgument() {
+        assertThrows(IllegalArgumentException.class, () -> new UniqueDataScreenerConcurrentImpl(-1));
+    }
+
+    @Test
+    public void testIllegalInput() {
+        UniqueDataScreenerConcurrentImpl underTest = new UniqueDataScreenerConcurrentImpl();
+
+        assertFalse(underTest.isUnique(1000000000));
+        assertFalse(underTest.isUnique(-1));
+    }
+
+    @Test
+    public void testConcurrentFirstSeen() throws Exception {
+        // Every thread screens the same values, so each value must be reported unique exactly once
+        int numThreads = 4;
+        int numValues = 200000;
+        UniqueDataScreenerConcurrentImpl underTest = new UniqueDataScreenerConcurrentImpl(numValues);
+        AtomicInteger uniqueCount = new AtomicInteger();
+        CyclicBarrier startTogether = new CyclicBarrier(numThreads);
+
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    startTogether.await();
+                } catch (Exception e) {
+                    return;
+                }
+                int uniques = 0;
+                for (int data = 0; data < numValues; data++) {
+                    if (underTest.isUnique(data)) {
+                        uniques++;
+                    }
+                }
+                uniqueCount.addAndGet(uniques);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(numValues, uniqueCount.get());
+    }
+
+    @Test
+    public void testMarkersMatchMarkerImpl() {
+        UniqueDataScreenerConcurrentImpl underTest = new UniqueDataScreenerConcurrentImpl(1000);
+        UniqueDataScreenerMarkerImpl markerImpl = new UniqueDataScreenerMarkerImpl(1000);
+        for (int data : new int[] {0, 7, 63, 64, 500, 999, 1000}) {
+            underTest.isUnique(data);
+            markerImpl.isUnique(data);
+        }
+        assertEquals(markerImpl.getMarkers(), underTest.getMarkers());
+
+        UniqueDataScreenerConcurrentImpl loaded = new UniqueDataScreenerConcurrentImpl(1000);
+        loaded.loadMarkers(markerImpl.getMarkers());
+        assertFalse(loaded.isUnique(1000));
+        assertFalse(loaded.isUnique(64));
+        assertTrue(loaded.isUnique(65));
+    }
+}
@@ -2,6 +2,11 @@ package demo.producerconsumer.data;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -34,4 +39,43 @@ public class UniqueDataScreenerHashImplTest {
         assertTrue(underTest.isUnique(111231));
         assertFalse(underTest.isUnique(111231));
     }
+
+    @Test
+    public void testZeroAndNegative() {
+        UniqueDataScreenerHashImpl underTest = new UniqueDataScreenerHashImpl();
+
+        assertTrue(underTest.isUnique(0));
+        assertFalse(underTest.isUnique(0));
+
+        assertTrue(underTest.isUnique(-1));
+        assertFalse(underTest.isUnique(-1));
+
+        assertTrue(underTest.isUnique(Integer.MIN_VALUE));
+        assertFalse(underTest.isUnique(Integer.MIN_VALUE));
+        assertTrue(underTest.isUnique(Integer.MAX_VALUE));
+        assertFalse(underTest.isUnique(Integer.MAX_VALUE));
+
+        assertEquals(4, underTest.size());
+    }
+
+    @Test
+    public void testResize() {
+        // Starts with room for 2 values, so it resizes many times
+        UniqueDataScreenerHashImpl underTest = new UniqueDataScreenerHashImpl(1);
+        Set<Integer> expected = new HashSet<>();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int value = random.nextInt(100000) - 50000;
+            assertEquals(expected.add(value), underTest.isUnique(value));
+        }
+        // Multiples of a large power of two only differ in their high bits
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(expected.add(i << 20), underTest.isUnique(i << 20));
+        }
+        assertEquals(expected.size(), underTest.size());
+        for (int value : expected) {
+            assertFalse(underTest.isUnique(value));
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package demo.producerconsumer.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UniqueDataScreenerMappedImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testUnique() throws IOException {
+        UniqueDataScreenerMappedImpl underTest = new UniqueDataScreenerMappedImpl(tempDir.resolve("markers"));
+
+        for (int data = 111224; data < 111300; data++) {
+            assertTrue(underTest.isUnique(data));
+            assertFalse(underTest.isUnique(data));
+        }
+        underTest.close();
+    }
+
+    @Test
+    public void testEdgeCases() throws IOException {
+        UniqueDataScreenerMappedImpl underTest = new UniqueDataScreenerMappedImpl(tempDir.resolve("markers"));
+        assertTrue(underTest.isUnique(0));
+        assertFalse(underTest.isUnique(0));
+
+        assertTrue(underTest.isUnique(999999999));
+        assertFalse(underTest.isUnique(999999999));
+
+        assertFalse(underTest.isUnique(1000000000));
+        assertFalse(underTest.isUnique(-1));
+        underTest.close();
+    }
+
+    @Test
+    public void testStartsEmpty() throws IOException {
+        Path markerFile = tempDir.resolve("markers");
+        UniqueDataScreenerMappedImpl first = new UniqueDataScreenerMappedImpl(markerFile, 1000);
+        assertTrue(first.isUnique(500));
+        first.close();
+
+        UniqueDataScreenerMappedImpl underTest = new UniqueDataScreenerMappedImpl(markerFile, 1000);
+        assertTrue(underTest.isUnique(500));
+        underTest.close();
+    }
+
+    @Test
+    public void testIllegalConstructorArgument() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UniqueDataScreenerMappedImpl(tempDir.resolve("markers"), -1));
+    }
+}
@@ -45,6 +45,14 @@ public class UniqueDataScreenerMarkerImplTest {
         assertFalse(underTest.isUnique(999999999));
     }
 
+    @Test
+    public void testMaxValueMultipleOfEight() {
+        UniqueDataScreenerMarkerImpl underTest = new UniqueDataScreenerMarkerImpl(16);
+        assertTrue(underTest.isUnique(16));
+        assertFalse(underTest.isUnique(16));
+        assertFalse(underTest.isUnique(17));
+    }
+
     @Test
     public void testIllegalConstructorArgument() {
         try {
@@ -0,0 +1,162 @@
+package demo.producerconsumer.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLogWriterTest {
+
+    @Test
+    public void testSubmitSwapsBuffers() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AsyncLogWriter logWriter = new AsyncLogWriter(outputStream, 1, 2);
+
+        ByteBuffer first = ByteBuffer.wrap("first\n".getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer second = logWriter.submit(first, 1);
+        assertNotSame(first, second);
+        assertEquals(first.capacity(), second.capacity());
+        assertEquals(0, second.position());
+
+        second.put("secnd\n".getBytes(StandardCharsets.US_ASCII)).flip();
+        ByteBuffer third = logWriter.submit(second, 1);
+        // With two buffers, the first is handed back once it has been written
+        assertSame(first, third);
+
+        logWriter.awaitWritten();
+        assertEquals("first\nsecnd\n", new String(outputStream.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(12, logWriter.getPosition());
+        assertEquals(2, logWriter.getSwapCount());
+        assertEquals(2, logWriter.getBuffersWritten());
+        logWriter.close();
+    }
+
+    @Test
+    public void testCloseWritesPendingBuffers() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AsyncLogWriter logWriter = new AsyncLogWriter(outputStream, 2, 3);
+        StringBuilder expected = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        for (int i = 0; i < 100; i++) {
+            String line = String.format("%03d\n", i).substring(0, 4);
+            expected.append(line);
+            buffer.put(line.getBytes(StandardCharsets.US_ASCII)).flip();
+            buffer = logWriter.submit(buffer, 1);
+        }
+
+        // Only written out once both loggers sharing the writer have closed it
+        logWriter.close();
+        logWriter.close();
+        assertEquals(expected.toString(), new String(outputStream.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(100, logWriter.getBuffersWritten());
+    }
+
+    @Test
+    public void testWriteFailureIsReported() {
+        OutputStream failingStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        AsyncLogWriter logWriter = new AsyncLogWriter(failingStream, 1, 2);
+        assertThrows(IOException.class, () -> {
+            logWriter.submit(ByteBuffer.wrap(new byte[] {'1', '\n'}), 1);
+            logWriter.awaitWritten();
+        });
+        assertThrows(IOException.class, () -> logWriter.submit(ByteBuffer.wrap(new byte[] {'2', '\n'}), 1));
+        logWriter.close();
+    }
+
+    @Test
+    public void testSubmitDoesNotWaitForWrite() throws Exception {
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch releaseWrite = new CountDownLatch(1);
+        OutputStream slowStream = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                writeStarted.countDown();
+                awaitQuietly(releaseWrite);
+            }
+        };
+        AsyncLogWriter logWriter = new AsyncLogWriter(slowStream, 1, 3);
+        assertSubmitReturnsWhileBlocked(logWriter, writeStarted, releaseWrite);
+    }
+
+    @Test
+    public void testBatchDurabilitySubmitDoesNotWaitForForce() throws Exception {
+        CountDownLatch forceStarted = new CountDownLatch(1);
+        CountDownLatch releaseForce = new CountDownLatch(1);
+        AsyncLogWriter logWriter = new AsyncLogWriter(new ByteArrayOutputStream(), 1, 3, LogDurability.BATCH,
+                LogWriter.NO_FILE_HEADER) {
+            @Override
+            protected synchronized long force() throws IOException {
+                forceStarted.countDown();
+                awaitQuietly(releaseForce);
+                return super.force();
+            }
+        };
+        assertSubmitReturnsWhileBlocked(logWriter, forceStarted, releaseForce);
+    }
+
+    /**
+     * Submit a buffer, wait for the I/O thread to block on it, and check that the next submit and the
+     * metrics do not wait for the I/O thread while a spare buffer is free.
+     */
+    private static void assertSubmitReturnsWhileBlocked(AsyncLogWriter logWriter, CountDownLatch blocked,
+                                                        CountDownLatch release) throws Exception {
+        // Released after a while regardless, so a submit that waits fails the test instead of hanging it
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ignored) {
+            }
+            release.countDown();
+        });
+        releaser.start();
+
+        try {
+            ByteBuffer buffer = logWriter.submit(ByteBuffer.wrap(new byte[] {'1', '\n'}), 1);
+            assertTrue(blocked.await(1, TimeUnit.SECONDS));
+            long startTime = System.nanoTime();
+            buffer.put(new byte[] {'2', '\n'}).flip();
+            logWriter.submit(buffer, 1);
+            assertEquals(0, logWriter.getBuffersWritten());
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            assertTrue(elapsedMs < 1000, "submit waited " + elapsedMs + " ms for the I/O thread");
+            assertEquals(0, logWriter.getStallCount());
+
+            release.countDown();
+            logWriter.awaitWritten();
+            assertEquals(2, logWriter.getBuffersWritten());
+        } finally {
+            release.countDown();
+            logWriter.close();
+            releaser.interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testRequiresTwoBuffers() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncLogWriter(new ByteArrayOutputStream(), 1, 1));
+    }
+}
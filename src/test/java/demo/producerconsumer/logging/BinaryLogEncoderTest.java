@@ -0,0 +1,78 @@
+package demo.producerconsumer.logging;
+
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryLogEncoderTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] log = logNumbers(3, 999999999, 5, 0, 123456, 5, 7, 1000000);
+
+        BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(log));
+        int[] block = reader.readBlock();
+        assertArrayEquals(new int[] {0, 5, 999999999}, Arrays.copyOf(block, reader.getBlockLength()));
+        block = reader.readBlock();
+        assertArrayEquals(new int[] {7, 123456, 1000000}, Arrays.copyOf(block, reader.getBlockLength()));
+        assertNull(reader.readBlock());
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        int[] numbers = new int[1000];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = 500000000 + i * 3;
+        }
+        byte[] log = logNumbers(numbers.length, numbers);
+        // One byte for each delta, plus the first number and the headers
+        assertTrue(log.length < numbers.length + 40, "binary log was " + log.length + " bytes");
+    }
+
+    @Test
+    public void testCorruptBlock() throws IOException {
+        byte[] log = logNumbers(3, 10, 20, 30);
+        log[log.length - 1] ^= 0x01;
+        BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(log));
+        assertThrows(IOException.class, reader::readBlock);
+    }
+
+    @Test
+    public void testTruncatedBlock() throws IOException {
+        byte[] log = logNumbers(3, 10, 20, 30);
+        BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(Arrays.copyOf(log, log.length - 1)));
+        assertThrows(IOException.class, reader::readBlock);
+    }
+
+    @Test
+    public void testNotBinaryLog() {
+        byte[] textLog = "000000001\n000000002\n".getBytes();
+        assertThrows(IOException.class, () -> new BinaryLogReader(new ByteArrayInputStream(textLog)));
+    }
+
+    @Test
+    public void testEmptyLog() throws IOException {
+        BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(new byte[0]));
+        assertNull(reader.readBlock());
+    }
+
+    private static byte[] logNumbers(int batchSize, int... numbers) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryLogEncoder encoder = new BinaryLogEncoder(batchSize);
+        LogWriter logWriter = new LogWriter(outputStream, 1, LogDurability.NONE, encoder.getFileHeader());
+        NumberLogger logger = new NumberLogger(logWriter, new UniqueDataScreenerMarkerImpl(), batchSize,
+                null, encoder, null);
+        for (int number : numbers) {
+            logger.logNumber(number);
+        }
+        logger.flushLog();
+        logger.closeLog();
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,35 @@
+package demo.producerconsumer.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogRecordFormatterTest {
+
+    @Test
+    public void testWriteRecord() {
+        int[] numbers = {0, 7, 10, 99, 100, 123456789, 100000000, 999999999, 12003040};
+        byte[] buffer = new byte[NumberLogger.LOG_RECORD_LENGTH + 2];
+        for (int number : numbers) {
+            int end = LogRecordFormatter.writeRecord(number, buffer, 1);
+            assertEquals(1 + NumberLogger.LOG_RECORD_LENGTH, end);
+            assertEquals(String.format("%09d", number) + System.lineSeparator(),
+                    new String(buffer, 1, NumberLogger.LOG_RECORD_LENGTH, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testConsecutiveRecords() {
+        byte[] buffer = new byte[3 * NumberLogger.LOG_RECORD_LENGTH];
+        int end = LogRecordFormatter.writeRecord(1, buffer, 0);
+        end = LogRecordFormatter.writeRecord(22, buffer, end);
+        end = LogRecordFormatter.writeRecord(333, buffer, end);
+
+        assertEquals(buffer.length, end);
+        String separator = System.lineSeparator();
+        assertEquals("000000001" + separator + "000000022" + separator + "000000333" + separator,
+                new String(buffer, StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,143 @@
+package demo.producerconsumer.logging;
+
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogSegmentsTest {
+    private static final String SEPARATOR = System.lineSeparator();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRotateBySize() throws IOException {
+        // Room for two records in each segment
+        LogSegments segments = new LogSegments(tempDir.resolve("numbers.log"),
+                2 * NumberLogger.LOG_RECORD_LENGTH, 0, SegmentCompression.NONE);
+        LogWriter logWriter = new LogWriter(segments, 1, LogDurability.NONE,
+                LogWriter.NO_FILE_HEADER);
+        for (int i = 1; i <= 5; i++) {
+            logWriter.write(record(i), 1);
+        }
+        assertEquals(3, segments.getSegmentNumber());
+        assertEquals(5L * NumberLogger.LOG_RECORD_LENGTH, logWriter.getPosition());
+        logWriter.close();
+
+        assertEquals(Arrays.asList("numbers.000001.log 2", "numbers.000002.log 2", "numbers.000003.log 1"),
+                Files.readAllLines(tempDir.resolve("numbers.manifest")));
+        assertEquals(lines(1, 2), new String(Files.readAllBytes(tempDir.resolve("numbers.000001.log")),
+                StandardCharsets.US_ASCII));
+        assertEquals(lines(5), new String(Files.readAllBytes(tempDir.resolve("numbers.000003.log")),
+                StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testRotateByTimeWithoutWrites() throws Exception {
+        LogSegments segments = new LogSegments(tempDir.resolve("numbers.log"), 0, 50, SegmentCompression.NONE);
+        LogWriter logWriter = new LogWriter(segments, 1, LogDurability.NONE,
+                LogWriter.NO_FILE_HEADER);
+        NumberLogger logger = new NumberLogger(logWriter, new UniqueDataScreenerMarkerImpl(1000), 10, null,
+                new TextLogEncoder(), null);
+        LogRotateTask underTest = new LogRotateTask(new NumberLogger[] {logger}, logWriter);
+        // An empty segment is left open however long it has been
+        Thread.sleep(60);
+        underTest.run();
+        assertEquals(1, segments.getSegmentNumber());
+
+        // Left in the output buffer, since the batch is not full, and no further numbers arrive
+        logger.logNumbers(new int[] {1, 2}, 0, 2);
+        Thread.sleep(60);
+        underTest.run();
+        assertEquals(2, segments.getSegmentNumber());
+        assertEquals(Arrays.asList("numbers.000001.log 2"), Files.readAllLines(tempDir.resolve("numbers.manifest")));
+        assertEquals(lines(1, 2), new String(Files.readAllBytes(tempDir.resolve("numbers.000001.log")),
+                StandardCharsets.US_ASCII));
+        logger.closeLog();
+    }
+
+    @Test
+    public void testRotateByTimeFlushesBufferedNumbers() throws Exception {
+        LogSegments segments = new LogSegments(tempDir.resolve("numbers.log"), 0, 50, SegmentCompression.NONE);
+        LogWriter logWriter = new LogWriter(segments, 1, LogDurability.NONE,
+                LogWriter.NO_FILE_HEADER);
+        NumberLogger logger = new NumberLogger(logWriter, new UniqueDataScreenerMarkerImpl(1000), 10, null,
+                new TextLogEncoder(), null);
+        logger.logNumbers(new int[] {1, 2}, 0, 2);
+        logger.flushLog();
+        // Left in the output buffer, since the batch is not full
+        logger.logNumber(3);
+        Thread.sleep(60);
+        new LogRotateTask(new NumberLogger[] {logger}, logWriter).run();
+
+        // Like any batch written after the time limit, the buffered number starts the next segment
+        assertEquals(2, segments.getSegmentNumber());
+        assertEquals(lines(3), new String(Files.readAllBytes(tempDir.resolve("numbers.000002.log")),
+                StandardCharsets.US_ASCII));
+        logger.closeLog();
+        assertEquals(Arrays.asList("numbers.000001.log 2", "numbers.000002.log 1"),
+                Files.readAllLines(tempDir.resolve("numbers.manifest")));
+    }
+
+    @Test
+    public void testCompressClosedSegments() throws IOException {
+        LogSegments segments = new LogSegments(tempDir.resolve("numbers.log"),
+                2 * NumberLogger.LOG_RECORD_LENGTH, 0, SegmentCompression.GZIP);
+        LogWriter logWriter = new LogWriter(segments, 1, LogDurability.NONE,
+                LogWriter.NO_FILE_HEADER);
+        for (int i = 1; i <= 3; i++) {
+            logWriter.write(record(i), 1);
+        }
+        logWriter.close();
+
+        List<String> manifest = Files.readAllLines(tempDir.resolve("numbers.manifest"));
+        assertEquals(Arrays.asList("numbers.000001.log.gz 2", "numbers.000002.log.gz 1"), manifest);
+        assertFalse(Files.exists(tempDir.resolve("numbers.000001.log")));
+        try (InputStream segment = new GZIPInputStream(Files.newInputStream(tempDir.resolve("numbers.000001.log.gz")))) {
+            assertEquals(lines(1, 2), IOUtils.toString(segment, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testDeletePreviousSegments() throws IOException {
+        Files.write(tempDir.resolve("numbers.000007.log.gz"), new byte[] {1});
+        Files.write(tempDir.resolve("numbers.manifest"), new byte[] {1});
+        Files.write(tempDir.resolve("other.log"), new byte[] {1});
+
+        LogSegments segments = new LogSegments(tempDir.resolve("numbers.log"), 0, 0, SegmentCompression.NONE);
+        assertFalse(Files.exists(tempDir.resolve("numbers.000007.log.gz")));
+        assertFalse(Files.exists(tempDir.resolve("numbers.manifest")));
+        assertTrue(Files.exists(tempDir.resolve("other.log")));
+
+        // An empty last segment is deleted rather than listed
+        LogWriter logWriter = new LogWriter(segments, 1, LogDurability.NONE,
+                LogWriter.NO_FILE_HEADER);
+        logWriter.close();
+        assertFalse(Files.exists(tempDir.resolve("numbers.000001.log")));
+    }
+
+    private static ByteBuffer record(int number) {
+        return ByteBuffer.wrap(lines(number).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String lines(int... numbers) {
+        StringBuilder lines = new StringBuilder();
+        for (int number : numbers) {
+            lines.append(String.format("%09d", number)).append(SEPARATOR);
+        }
+        return lines.toString();
+    }
+}
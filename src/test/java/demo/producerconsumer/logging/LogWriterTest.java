@@ -0,0 +1,120 @@
+package demo.producerconsumer.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSyncOnlyWhenAsked() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        LogWriter logWriter = new LogWriter(new FileOutputStream(logFile.toFile()), 1, LogDurability.NONE,
+                LogWriter.NO_FILE_HEADER);
+        logWriter.write(lines("000000001\n000000002\n"), 2);
+        assertEquals(20, logWriter.getPosition());
+        assertEquals(0, logWriter.getDurablePosition());
+
+        assertEquals(20, logWriter.sync());
+        assertEquals(20, logWriter.getDurablePosition());
+        // Nothing new to force
+        logWriter.sync();
+        assertEquals(1, logWriter.getSyncLatency().getAndReset().getCount());
+        logWriter.close();
+    }
+
+    @Test
+    public void testSyncEveryBatch() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        LogWriter logWriter = new LogWriter(new FileOutputStream(logFile.toFile()), 1, LogDurability.BATCH,
+                LogWriter.NO_FILE_HEADER);
+        logWriter.write(lines("000000001\n"), 1);
+        assertEquals(10, logWriter.getDurablePosition());
+        logWriter.write(lines("000000002\n"), 1);
+        assertEquals(20, logWriter.getDurablePosition());
+        assertEquals(2, logWriter.getSyncLatency().getAndReset().getCount());
+        logWriter.close();
+        assertEquals("000000001\n000000002\n", new String(Files.readAllBytes(logFile), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testSyncOnClose() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        LogWriter logWriter = new LogWriter(new FileOutputStream(logFile.toFile()), 1, LogDurability.TERMINATE,
+                LogWriter.NO_FILE_HEADER);
+        logWriter.write(lines("000000001\n"), 1);
+        assertEquals(0, logWriter.getDurablePosition());
+        logWriter.close();
+        assertEquals(10, logWriter.getDurablePosition());
+    }
+
+    @Test
+    public void testAsyncSyncWaitsForPendingBuffers() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        AsyncLogWriter logWriter = new AsyncLogWriter(new FileOutputStream(logFile.toFile()), 1, 2,
+                LogDurability.INTERVAL, LogWriter.NO_FILE_HEADER);
+        ByteBuffer buffer = logWriter.submit(lines("000000001\n"), 1);
+        buffer.put("000000002\n".getBytes(StandardCharsets.US_ASCII)).flip();
+        logWriter.submit(buffer, 1);
+        assertEquals(20, logWriter.sync());
+        logWriter.close();
+    }
+
+    @Test
+    public void testWriteWhileIntervalSyncForces() throws Exception {
+        Path logFile = tempDir.resolve("numbers.log");
+        CountDownLatch forceStarted = new CountDownLatch(1);
+        CountDownLatch releaseForce = new CountDownLatch(1);
+        LogWriter logWriter = new LogWriter(new FileOutputStream(logFile.toFile()), 1, LogDurability.INTERVAL,
+                LogWriter.NO_FILE_HEADER) {
+            @Override
+            protected void forceChannel(FileChannel channel) throws IOException {
+                forceStarted.countDown();
+                try {
+                    // Released after a while regardless, so a write that waits fails the test instead of hanging it
+                    releaseForce.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                super.forceChannel(channel);
+            }
+        };
+        logWriter.write(lines("000000001\n"), 1);
+        Thread syncThread = new Thread(new LogSyncTask(logWriter));
+        syncThread.start();
+
+        try {
+            assertTrue(forceStarted.await(1, TimeUnit.SECONDS));
+            long startTime = System.nanoTime();
+            logWriter.write(lines("000000002\n"), 1);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            assertTrue(elapsedMs < 1000, "write waited " + elapsedMs + " ms for the sync");
+            assertEquals(20, logWriter.getPosition());
+            assertEquals(0, logWriter.getDurablePosition());
+        } finally {
+            releaseForce.countDown();
+            syncThread.join();
+        }
+        // Only the bytes written before the force started are known to be durable
+        assertEquals(10, logWriter.getDurablePosition());
+        assertEquals(20, logWriter.sync());
+        logWriter.close();
+    }
+
+    private static ByteBuffer lines(String lines) {
+        return ByteBuffer.wrap(lines.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -1,13 +1,22 @@
 package demo.producerconsumer.logging;
 
 import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.data.UniqueDataScreenerPassThroughImpl;
+import demo.producerconsumer.persistence.Checkpoint;
+import demo.producerconsumer.persistence.CheckpointStore;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -19,6 +28,9 @@ public class NumberLoggerTest {
     @Mock
     private UniqueDataScreener mockDataScreener;
 
+    @TempDir
+    Path tempDir;
+
     @Test
     public void testLogNumber() throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -99,6 +111,26 @@ public class NumberLoggerTest {
         outputStream.close();
     }
 
+    @Test
+    public void testLogNumbers() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        NumberLogger numberLogger = new NumberLogger(outputStream, mockDataScreener, 0);
+        when(mockDataScreener.isUnique(anyInt())).thenReturn(true, false, true);
+
+        int[] numbers = {111111111, 123456789, 123456789, 222222, 333333333};
+        numberLogger.logNumbers(numbers, 1, 3);
+
+        assertEquals("123456789" + System.lineSeparator() + "000222222" + System.lineSeparator(),
+                outputStream.toString());
+
+        NumberReport report = numberLogger.getReport();
+        assertEquals(2, report.getTotalUniques());
+        assertEquals(2, report.getUniquesThisRun());
+        assertEquals(1, report.getDupesThisRun());
+
+        outputStream.close();
+    }
+
     @Test
     public void testMultipleReportCalls() throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -128,4 +160,61 @@ public class NumberLoggerTest {
 
         outputStream.close();
     }
+
+    @Test
+    public void testRecordDuplicates() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        NumberLogger numberLogger = new NumberLogger(outputStream, new UniqueDataScreenerPassThroughImpl(), 0);
+
+        numberLogger.logNumber(123456789);
+        numberLogger.recordDuplicates(5);
+        numberLogger.recordDuplicates(2);
+
+        assertEquals(new NumberReport(7, 1, 1), numberLogger.getReport());
+        assertEquals(new NumberReport(0, 0, 1), numberLogger.getReport());
+    }
+
+    @Test
+    public void testLogNumbersWhileCheckpointSaves() throws Exception {
+        CountDownLatch saveStarted = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        CheckpointStore checkpointStore = new CheckpointStore(tempDir.resolve("checkpoint")) {
+            @Override
+            public void save(int maxValue, ByteBuffer markers, long logOffset) throws IOException {
+                saveStarted.countDown();
+                try {
+                    // Released after a while regardless, so logging that waits fails the test instead of hanging it
+                    releaseSave.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                super.save(maxValue, markers, logOffset);
+            }
+        };
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        NumberLogger numberLogger = new NumberLogger(new LogWriter(outputStream), new UniqueDataScreenerMarkerImpl(1000),
+                10, checkpointStore, new TextLogEncoder(), null);
+        numberLogger.logNumbers(new int[] {1, 2}, 0, 2);
+        Thread checkpointThread = new Thread(numberLogger::checkpoint);
+        checkpointThread.start();
+
+        try {
+            assertTrue(saveStarted.await(1, TimeUnit.SECONDS));
+            long startTime = System.nanoTime();
+            numberLogger.logNumbers(new int[] {3, 2}, 0, 2);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            assertTrue(elapsedMs < 1000, "logNumbers waited " + elapsedMs + " ms for the checkpoint");
+            assertEquals(new NumberReport(1, 3, 3), numberLogger.getReport());
+        } finally {
+            releaseSave.countDown();
+            checkpointThread.join();
+        }
+
+        // The checkpoint holds the markers as they were copied, before 3 was logged
+        Checkpoint checkpoint = checkpointStore.load();
+        assertEquals(2L * NumberLogger.LOG_RECORD_LENGTH, checkpoint.getLogOffset());
+        UniqueDataScreenerMarkerImpl restored = new UniqueDataScreenerMarkerImpl(1000);
+        restored.loadMarkers(checkpoint.getMarkers());
+        assertFalse(restored.isUnique(2));
+        assertTrue(restored.isUnique(3));
+    }
 }
@@ -0,0 +1,117 @@
+package demo.producerconsumer.logging;
+
+import demo.producerconsumer.data.UniqueDataScreener;
+import demo.producerconsumer.data.UniqueDataScreenerConcurrentImpl;
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.data.UniqueDataScreenerPassThroughImpl;
+import demo.producerconsumer.data.UniqueDataScreenerSliceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortedLogExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testExportText() throws IOException {
+        // Chunks of 8 bytes, and a last partial word, so values cross chunk and word boundaries
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(200);
+        int[] numbers = {200, 0, 63, 64, 127, 128, 1, 191, 192};
+        for (int number : numbers) {
+            screener.isUnique(number);
+        }
+        Path exportFile = tempDir.resolve("numbers.sorted.log");
+        long exported = new SortedLogExporter(LogFormat.TEXT, 8).export(Collections.singletonList(
+                new SortedLogExporter.MarkerSlice(0, screener.getMarkers())), exportFile);
+
+        assertEquals(numbers.length, exported);
+        Arrays.sort(numbers);
+        List<String> expected = new ArrayList<>();
+        for (int number : numbers) {
+            expected.add(String.format("%09d", number));
+        }
+        assertEquals(expected, Files.readAllLines(exportFile, StandardCharsets.US_ASCII));
+        assertFalse(Files.exists(tempDir.resolve("numbers.sorted.log.tmp")));
+    }
+
+    @Test
+    public void testExportSlicesBinary() throws IOException {
+        UniqueDataScreenerConcurrentImpl firstSlice = new UniqueDataScreenerConcurrentImpl(99);
+        UniqueDataScreenerConcurrentImpl secondSlice = new UniqueDataScreenerConcurrentImpl(99);
+        firstSlice.isUnique(42);
+        firstSlice.isUnique(7);
+        secondSlice.isUnique(0);
+        secondSlice.isUnique(99);
+        List<SortedLogExporter.MarkerSlice> slices = Arrays.asList(
+                new SortedLogExporter.MarkerSlice(0, firstSlice.getMarkers()),
+                new SortedLogExporter.MarkerSlice(100, secondSlice.getMarkers()));
+        Path exportFile = tempDir.resolve("numbers.sorted.log");
+        assertEquals(4, new SortedLogExporter(LogFormat.BINARY).export(slices, exportFile));
+
+        List<Integer> exported = new ArrayList<>();
+        try (InputStream exportStream = Files.newInputStream(exportFile)) {
+            BinaryLogReader reader = new BinaryLogReader(exportStream);
+            int[] block;
+            while ((block = reader.readBlock()) != null) {
+                for (int i = 0; i < reader.getBlockLength(); i++) {
+                    exported.add(block[i]);
+                }
+            }
+        }
+        assertEquals(Arrays.asList(7, 42, 100, 199), exported);
+    }
+
+    @Test
+    public void testExportEmpty() throws IOException {
+        Path exportFile = tempDir.resolve("numbers.sorted.log");
+        assertEquals(0, new SortedLogExporter(LogFormat.TEXT).export(Collections.singletonList(
+                new SortedLogExporter.MarkerSlice(0, new UniqueDataScreenerMarkerImpl(1000).getMarkers())), exportFile));
+        assertEquals(0, Files.size(exportFile));
+    }
+
+    @Test
+    public void testExportProducerModeMatchesLog() throws IOException {
+        // Producers screen and queue 1 to 10, but the server terminates with 7 to 10 still queued
+        UniqueDataScreenerConcurrentImpl producerScreener = new UniqueDataScreenerConcurrentImpl(999);
+        for (int number = 1; number <= 10; number++) {
+            producerScreener.isUnique(number);
+        }
+        UniqueDataScreener[] loggerScreeners = {
+                new UniqueDataScreenerMarkerImpl(499), new UniqueDataScreenerSliceImpl(500, new UniqueDataScreenerMarkerImpl(499))};
+        ByteArrayOutputStream logStream = new ByteArrayOutputStream();
+        NumberLogger logger = new NumberLogger(logStream, loggerScreeners[0], 100);
+        for (int number = 6; number >= 1; number--) {
+            logger.logNumber(number);
+        }
+        logger.flushLog();
+        logger.closeLog();
+
+        Path exportFile = tempDir.resolve("numbers.sorted.log");
+        long exported = new SortedLogExporter(LogFormat.TEXT).export(SortedLogExporter.slicesOf(loggerScreeners), exportFile);
+        assertEquals(6, exported);
+        List<String> logged = new ArrayList<>(Arrays.asList(
+                new String(logStream.toByteArray(), StandardCharsets.US_ASCII).split(System.lineSeparator())));
+        Collections.sort(logged);
+        assertEquals(logged, Files.readAllLines(exportFile, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testSlicesOfRequiresMarkers() {
+        assertThrows(IllegalArgumentException.class, () -> SortedLogExporter.slicesOf(
+                new UniqueDataScreener[] {new UniqueDataScreenerPassThroughImpl()}));
+    }
+}
@@ -0,0 +1,94 @@
+package demo.producerconsumer.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.getAndReset();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1000000, snapshot.getMax());
+        // 1000 falls in the bucket from 992 to 1023
+        assertEquals(1023, snapshot.getValueAtPercentile(50));
+        assertEquals(1023, snapshot.getValueAtPercentile(99));
+        // The top bucket is capped at the largest latency recorded
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testGetAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.getAndReset();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+
+        snapshot = histogram.getAndReset();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(i < 500 ? 7 : 1000000);
+        }
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.getAndReset();
+        // Small latencies are exact
+        assertEquals(7, snapshot.getValueAtPercentile(40));
+        // 1000000 falls in the bucket from 983040 to 1015807
+        assertEquals(1015807, snapshot.getValueAtPercentile(99));
+        assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBucketBounds() {
+        for (long latency : new long[] {0, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(latency);
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) >= latency);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < latency);
+        }
+    }
+
+    @Test
+    public void testTotalsAreNotReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(2000);
+        assertEquals(2, histogram.getAndReset().getCount());
+        histogram.record(3000);
+
+        assertEquals(1, histogram.getAndReset().getCount());
+        assertEquals(3, histogram.getTotalCount());
+        assertEquals(6000, histogram.getTotalNanos());
+    }
+
+    @Test
+    public void testTotalCountAtOrBelow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(7);
+        histogram.record(1000);
+        histogram.record(1000000);
+
+        assertEquals(0, histogram.getTotalCountAtOrBelow(6));
+        assertEquals(1, histogram.getTotalCountAtOrBelow(7));
+        // 1000 falls in the bucket from 992 to 1023, which only counts once the bound covers all of it
+        assertEquals(1, histogram.getTotalCountAtOrBelow(1000));
+        assertEquals(2, histogram.getTotalCountAtOrBelow(1023));
+        assertEquals(3, histogram.getTotalCountAtOrBelow(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,51 @@
+package demo.producerconsumer.metrics;
+
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.logging.NumberReport;
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.NumberQueue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PipelineMetricsTest {
+    @Test
+    public void testReportSinceLastReport() {
+        NumberLogger numberLogger = new NumberLogger(new ByteArrayOutputStream(), new UniqueDataScreenerMarkerImpl(1000), 2);
+        NumberQueue numberQueue = new IntRingBuffer(16);
+        PipelineMetrics underTest = new PipelineMetrics(new NumberLogger[] {numberLogger}, new NumberQueue[] {numberQueue});
+
+        ConnectionMetrics first = underTest.openConnection("first");
+        ConnectionMetrics second = underTest.openConnection("second");
+        first.recordNumbers(3);
+        second.recordNumbers(2);
+        second.recordInvalidInput();
+        second.close();
+        numberLogger.logNumbers(new int[] {1, 2, 2, 3, 4}, 0, 5);
+        numberQueue.offer(5);
+
+        Map<String, Long> connectionNumbers = new HashMap<>();
+        connectionNumbers.put("first", 3L);
+        connectionNumbers.put("second", 2L);
+        assertEquals(new NumberReport(1, 4, 4, 5, 1, 2, 1, 1, connectionNumbers),
+                underTest.getReport(numberLogger.getReport()));
+
+        first.recordNumbers(1);
+        assertEquals(new NumberReport(0, 0, 4, 1, 0, 0, 1, 1, Collections.singletonMap("first", 1L)),
+                underTest.getReport(numberLogger.getReport()));
+        assertEquals(1, underTest.getOpenConnectionCount());
+        assertEquals(6, underTest.getNumbersReceived());
+    }
+
+    @Test
+    public void testDuplicateRate() {
+        assertEquals(0.25, new NumberReport(1, 3, 3).getDuplicateRate(), 0.0001);
+        assertEquals(0.0, new NumberReport(0, 0, 3).getDuplicateRate(), 0.0001);
+    }
+}
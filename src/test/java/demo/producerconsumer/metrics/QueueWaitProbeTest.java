@@ -0,0 +1,101 @@
+package demo.producerconsumer.metrics;
+
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.NumberQueue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QueueWaitProbeTest {
+    @Test
+    public void testRecordsOnceBatchIsDrained() {
+        LatencyHistogram queueWait = new LatencyHistogram();
+        QueueWaitProbe underTest = new QueueWaitProbe(queueWait);
+        NumberQueue numberQueue = new IntRingBuffer(16);
+        numberQueue.offerBatch(new int[] {1, 2, 3}, 0, 3);
+
+        underTest.sampleQueued(numberQueue);
+        underTest.recordDrained(2);
+        assertEquals(0, queueWait.getAndReset().getCount());
+        underTest.recordDrained(2);
+        assertEquals(1, queueWait.getAndReset().getCount());
+
+        // Nothing more is recorded until the next sample
+        underTest.recordDrained(1);
+        assertEquals(0, queueWait.getAndReset().getCount());
+    }
+
+    @Test
+    public void testOneSampleInProgress() {
+        LatencyHistogram queueWait = new LatencyHistogram();
+        QueueWaitProbe underTest = new QueueWaitProbe(queueWait);
+        NumberQueue numberQueue = new IntRingBuffer(16);
+        numberQueue.offerBatch(new int[] {1, 2}, 0, 2);
+
+        underTest.sampleQueued(numberQueue);
+        numberQueue.offerBatch(new int[] {3, 4, 5}, 0, 3);
+        // Ignored, since the first sample is still in progress
+        underTest.sampleQueued(numberQueue);
+        underTest.recordDrained(5);
+        assertEquals(1, queueWait.getAndReset().getCount());
+
+        underTest.sampleQueued(numberQueue);
+        underTest.recordDrained(5);
+        assertEquals(1, queueWait.getAndReset().getCount());
+    }
+
+    @Test
+    public void testEmptyQueueIsNotSampled() {
+        LatencyHistogram queueWait = new LatencyHistogram();
+        QueueWaitProbe underTest = new QueueWaitProbe(queueWait);
+
+        underTest.sampleQueued(new IntRingBuffer(16));
+        underTest.recordDrained(1);
+        assertEquals(0, queueWait.getAndReset().getCount());
+    }
+
+    @Test
+    public void testBatchDrainedWhileSampleIsTaken() {
+        LatencyHistogram queueWait = new LatencyHistogram();
+        QueueWaitProbe underTest = new QueueWaitProbe(queueWait);
+        IntRingBuffer numberQueue = new IntRingBuffer(16);
+        numberQueue.offerBatch(new int[] {1, 2, 3}, 0, 3);
+        // The consumer drains the whole batch just after the producer reads the queue size, before the
+        // sample is pending, so its drain is counted while the sample is still being taken
+        NumberQueue drainingQueue = new NumberQueue() {
+            @Override
+            public boolean offer(int number) {
+                return numberQueue.offer(number);
+            }
+
+            @Override
+            public int offerBatch(int[] numbers, int offset, int length) {
+                return numberQueue.offerBatch(numbers, offset, length);
+            }
+
+            @Override
+            public int drainTo(int[] target, int offset, int maxNumbers) {
+                return numberQueue.drainTo(target, offset, maxNumbers);
+            }
+
+            @Override
+            public int size() {
+                int size = numberQueue.size();
+                underTest.recordDrained(numberQueue.drainTo(new int[16], 0, 16));
+                return size;
+            }
+        };
+
+        underTest.sampleQueued(drainingQueue);
+        // Recorded straight away, rather than left pending until later traffic
+        assertEquals(1, queueWait.getAndReset().getCount());
+        underTest.recordDrained(1);
+        assertEquals(0, queueWait.getAndReset().getCount());
+
+        // The probe is free for the next sample
+        numberQueue.offerBatch(new int[] {4, 5}, 0, 2);
+        underTest.sampleQueued(numberQueue);
+        underTest.recordDrained(2);
+        assertEquals(1, queueWait.getAndReset().getCount());
+    }
+}
@@ -0,0 +1,66 @@
+package demo.producerconsumer.metrics;
+
+import demo.producerconsumer.consumer.wait.BusySpinWaitStrategy;
+import demo.producerconsumer.consumer.wait.WaitStrategy;
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.logging.LogWriter;
+import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.logging.TextLogEncoder;
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.NumberQueue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerMetricsTest {
+    @Test
+    public void testPrometheusText() {
+        LogWriter logWriter = new LogWriter(new ByteArrayOutputStream());
+        NumberLogger numberLogger = new NumberLogger(logWriter, new UniqueDataScreenerMarkerImpl(1000), 10, null,
+                new TextLogEncoder(), null);
+        NumberQueue numberQueue = new IntRingBuffer(16);
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(new NumberLogger[] {numberLogger}, new NumberQueue[] {numberQueue});
+        ServerMetrics underTest = new ServerMetrics(new NumberLogger[] {numberLogger},
+                new WaitStrategy[] {new BusySpinWaitStrategy()}, null, logWriter, pipelineMetrics);
+
+        pipelineMetrics.openConnection("client").recordNumbers(4);
+        numberLogger.logNumbers(new int[] {1, 2, 2, 3}, 0, 4);
+        numberQueue.offer(5);
+        pipelineMetrics.getStageLatencies().getParseLatency().record(2500);
+        pipelineMetrics.getStageLatencies().getParseLatency().record(1500000000L);
+
+        PrometheusTextWriter writer = new PrometheusTextWriter(16);
+        underTest.writePrometheus(writer);
+        String text = new String(writer.getBuffer(), 0, writer.getLength(), StandardCharsets.US_ASCII);
+
+        assertTrue(text.contains("# TYPE producerconsumer_numbers_received_total counter\nproducerconsumer_numbers_received_total 4\n"));
+        assertTrue(text.contains("\nproducerconsumer_unique_numbers 3\n"));
+        assertTrue(text.contains("\nproducerconsumer_duplicates_total 1\n"));
+        assertTrue(text.contains("\nproducerconsumer_queue_depth 1\n"));
+        assertTrue(text.contains("\nproducerconsumer_open_connections 1\n"));
+        assertTrue(text.contains("\nproducerconsumer_stage_latency_seconds_bucket{stage=\"parse\",le=\"0.000001\"} 0\n"));
+        assertTrue(text.contains("\nproducerconsumer_stage_latency_seconds_bucket{stage=\"parse\",le=\"0.000005\"} 1\n"));
+        assertTrue(text.contains("\nproducerconsumer_stage_latency_seconds_bucket{stage=\"parse\",le=\"1\"} 1\n"));
+        assertTrue(text.contains("\nproducerconsumer_stage_latency_seconds_bucket{stage=\"parse\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("\nproducerconsumer_stage_latency_seconds_sum{stage=\"parse\"} 1.500002500\n"));
+        assertTrue(text.contains("\nproducerconsumer_stage_latency_seconds_count{stage=\"fsync\"} 0\n"));
+
+        // Reading the metrics again gives the same totals, and reports are unaffected
+        writer.reset();
+        underTest.writePrometheus(writer);
+        assertEquals(text, new String(writer.getBuffer(), 0, writer.getLength(), StandardCharsets.US_ASCII));
+        assertEquals(2, pipelineMetrics.getStageLatencies().getParseLatency().getAndReset().getCount());
+    }
+
+    @Test
+    public void testWriteNumbers() {
+        PrometheusTextWriter underTest = new PrometheusTextWriter(1);
+        underTest.append(0L).append(' ').append(-42L).append(' ').append(Long.MIN_VALUE).append(' ').append(Long.MAX_VALUE);
+        assertEquals("0 -42 -9223372036854775808 9223372036854775807",
+                new String(underTest.getBuffer(), 0, underTest.getLength(), StandardCharsets.US_ASCII));
+    }
+}
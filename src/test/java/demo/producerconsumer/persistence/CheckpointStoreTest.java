@@ -0,0 +1,71 @@
+package demo.producerconsumer.persistence;
+
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckpointStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        CheckpointStore underTest = new CheckpointStore(tempDir.resolve("checkpoint"));
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+        screener.isUnique(7);
+        screener.isUnique(1000);
+        underTest.save(screener, 20);
+
+        Checkpoint checkpoint = underTest.load();
+        assertNotNull(checkpoint);
+        assertEquals(1000, checkpoint.getMaxValue());
+        assertEquals(20, checkpoint.getLogOffset());
+
+        UniqueDataScreenerMarkerImpl restored = new UniqueDataScreenerMarkerImpl(1000);
+        restored.loadMarkers(checkpoint.getMarkers());
+        assertFalse(restored.isUnique(7));
+        assertFalse(restored.isUnique(1000));
+        assertTrue(restored.isUnique(8));
+    }
+
+    @Test
+    public void testSaveReplacesPrevious() throws IOException {
+        CheckpointStore underTest = new CheckpointStore(tempDir.resolve("checkpoint"));
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+        underTest.save(screener, 10);
+        screener.isUnique(5);
+        underTest.save(screener, 20);
+
+        assertEquals(20, underTest.load().getLogOffset());
+    }
+
+    @Test
+    public void testMissing() throws IOException {
+        assertNull(new CheckpointStore(tempDir.resolve("checkpoint")).load());
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+        Path checkpointFile = tempDir.resolve("checkpoint");
+        CheckpointStore underTest = new CheckpointStore(checkpointFile);
+        underTest.save(new UniqueDataScreenerMarkerImpl(1000), 10);
+
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFile.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            file.write(0xFF);
+        }
+        assertNull(underTest.load());
+
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFile.toFile(), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+        assertNull(underTest.load());
+    }
+}
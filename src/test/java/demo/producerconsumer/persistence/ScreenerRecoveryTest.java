@@ -0,0 +1,130 @@
+package demo.producerconsumer.persistence;
+
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.logging.NumberLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenerRecoveryTest {
+    private static final String NEWLINE = System.lineSeparator();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReplayWholeLogWithoutCheckpoint() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        writeLog(logFile, "000000001" + NEWLINE + "000000500" + NEWLINE);
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+
+        new ScreenerRecovery(logFile, new CheckpointStore(tempDir.resolve("checkpoint"))).recover(screener);
+
+        assertFalse(screener.isUnique(1));
+        assertFalse(screener.isUnique(500));
+        assertTrue(screener.isUnique(2));
+    }
+
+    @Test
+    public void testReplayTailAfterCheckpoint() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        CheckpointStore checkpointStore = new CheckpointStore(tempDir.resolve("checkpoint"));
+        UniqueDataScreenerMarkerImpl saved = new UniqueDataScreenerMarkerImpl(1000);
+        saved.isUnique(1);
+        checkpointStore.save(saved, NumberLogger.LOG_RECORD_LENGTH);
+        // The first record is covered by the checkpoint. It is changed here to show it is not read again.
+        writeLog(logFile, "000000003" + NEWLINE + "000000500" + NEWLINE);
+
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+        new ScreenerRecovery(logFile, checkpointStore).recover(screener);
+
+        assertFalse(screener.isUnique(1));
+        assertFalse(screener.isUnique(500));
+        assertTrue(screener.isUnique(3));
+    }
+
+    @Test
+    public void testTornRecordTruncated() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        writeLog(logFile, "000000001" + NEWLINE + "0000005");
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+
+        new ScreenerRecovery(logFile, new CheckpointStore(tempDir.resolve("checkpoint"))).recover(screener);
+
+        assertEquals(NumberLogger.LOG_RECORD_LENGTH, Files.size(logFile));
+        assertFalse(screener.isUnique(1));
+        assertTrue(screener.isUnique(5));
+    }
+
+    @Test
+    public void testCheckpointAheadOfLogIgnored() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        CheckpointStore checkpointStore = new CheckpointStore(tempDir.resolve("checkpoint"));
+        UniqueDataScreenerMarkerImpl saved = new UniqueDataScreenerMarkerImpl(1000);
+        saved.isUnique(9);
+        checkpointStore.save(saved, 5L * NumberLogger.LOG_RECORD_LENGTH);
+        writeLog(logFile, "000000001" + NEWLINE);
+
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+        new ScreenerRecovery(logFile, checkpointStore).recover(screener);
+
+        assertFalse(screener.isUnique(1));
+        assertTrue(screener.isUnique(9));
+    }
+
+    @Test
+    public void testReplayInParallelChunks() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        StringBuilder log = new StringBuilder();
+        for (int number = 0; number < 1000; number += 3) {
+            log.append(String.format("%09d", number)).append(NEWLINE);
+        }
+        writeLog(logFile, log.toString());
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+
+        new ScreenerRecovery(logFile, new CheckpointStore(tempDir.resolve("checkpoint")), 7).recover(screener);
+
+        for (int number = 0; number < 1000; number++) {
+            assertEquals(number % 3 != 0, screener.isUnique(number));
+        }
+    }
+
+    @Test
+    public void testInvalidLastRecordTruncated() throws IOException {
+        // A crash can leave the last record full length but not yet written, followed by part of another
+        Path logFile = tempDir.resolve("numbers.log");
+        writeLog(logFile, "000000001" + NEWLINE + "000000002" + NEWLINE + "\0\0\0\0\0\0\0\0\0" + NEWLINE + "00");
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+
+        new ScreenerRecovery(logFile, new CheckpointStore(tempDir.resolve("checkpoint")), 1).recover(screener);
+
+        assertEquals(2L * NumberLogger.LOG_RECORD_LENGTH, Files.size(logFile));
+        assertFalse(screener.isUnique(1));
+        assertFalse(screener.isUnique(2));
+        assertTrue(screener.isUnique(0));
+    }
+
+    @Test
+    public void testInvalidRecordBeforeValidRecordsFails() throws IOException {
+        Path logFile = tempDir.resolve("numbers.log");
+        String log = "000000001" + NEWLINE + "00000x002" + NEWLINE + "000000003" + NEWLINE + "000000004" + NEWLINE;
+        writeLog(logFile, log);
+        UniqueDataScreenerMarkerImpl screener = new UniqueDataScreenerMarkerImpl(1000);
+
+        ScreenerRecovery recovery = new ScreenerRecovery(logFile, new CheckpointStore(tempDir.resolve("checkpoint")), 1);
+        assertThrows(IOException.class, () -> recovery.recover(screener));
+
+        // A corrupt record in the middle of the log is left for the operator, not truncated with what follows it
+        assertEquals(log, new String(Files.readAllBytes(logFile), StandardCharsets.US_ASCII));
+    }
+
+    private static void writeLog(Path logFile, String contents) throws IOException {
+        Files.write(logFile, contents.getBytes(StandardCharsets.US_ASCII));
+    }
+}
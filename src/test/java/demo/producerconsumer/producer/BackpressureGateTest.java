@@ -0,0 +1,88 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.queue.IntRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackpressureGateTest {
+
+    @Test
+    public void testWatermarkHysteresis() {
+        IntRingBuffer queue = new IntRingBuffer(16);
+        BackpressureGate underTest = new BackpressureGate(queue, 12, 4);
+        int[] drained = new int[16];
+
+        for (int i = 0; i < 11; i++) {
+            queue.offer(i);
+        }
+        assertFalse(underTest.shouldPause());
+        queue.offer(11);
+        assertTrue(underTest.shouldPause());
+
+        // Stays paused until the queue drains down to the low watermark
+        queue.drainTo(drained, 0, 7);
+        assertTrue(underTest.shouldPause());
+        queue.drainTo(drained, 0, 1);
+        assertFalse(underTest.shouldPause());
+
+        // And stays unpaused until the high watermark is reached again
+        for (int i = 0; i < 7; i++) {
+            queue.offer(i);
+        }
+        assertFalse(underTest.shouldPause());
+    }
+
+    @Test
+    public void testAwaitCapacityRecordsThrottle() throws InterruptedException {
+        IntRingBuffer queue = new IntRingBuffer(8);
+        BackpressureGate underTest = new BackpressureGate(queue, 4, 1);
+        ThrottleStats stats = new ThrottleStats();
+
+        underTest.awaitCapacity(stats, () -> true);
+        assertEquals(0, stats.getThrottleCount());
+
+        for (int i = 0; i < 4; i++) {
+            queue.offer(i);
+        }
+        CountDownLatch resumed = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            underTest.awaitCapacity(stats, () -> true);
+            resumed.countDown();
+        });
+        producer.start();
+
+        assertFalse(resumed.await(50, TimeUnit.MILLISECONDS));
+        queue.drainTo(new int[8], 0, 3);
+        assertTrue(resumed.await(5, TimeUnit.SECONDS));
+        producer.join();
+
+        assertEquals(1, stats.getThrottleCount());
+        assertTrue(stats.getThrottledNanos() > 0);
+        assertEquals(1, underTest.getTotalThrottleCount());
+        assertEquals(stats.getThrottledNanos(), underTest.getTotalThrottledNanos());
+    }
+
+    @Test
+    public void testAwaitCapacityStopsWhenToldTo() {
+        IntRingBuffer queue = new IntRingBuffer(8);
+        BackpressureGate underTest = new BackpressureGate(queue, 4, 1);
+        ThrottleStats stats = new ThrottleStats();
+        for (int i = 0; i < 4; i++) {
+            queue.offer(i);
+        }
+
+        underTest.awaitCapacity(stats, () -> false);
+        assertEquals(1, stats.getThrottleCount());
+    }
+
+    @Test
+    public void testIllegalWatermarks() {
+        IntRingBuffer queue = new IntRingBuffer(8);
+        assertThrows(IllegalArgumentException.class, () -> new BackpressureGate(queue, 4, 4));
+        assertThrows(IllegalArgumentException.class, () -> new BackpressureGate(queue, 4, -1));
+    }
+}
@@ -1,5 +1,7 @@
 package demo.producerconsumer.producer;
 
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.NumberQueue;
 import demo.producerconsumer.server.signalling.TerminateSignalSender;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,9 +12,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
@@ -44,8 +45,8 @@ public class ClientNumberProducerTest {
         ByteArrayInputStream inputStream = buildInputSequenceForStream("123456789");
         when(mockSocket1.getInputStream()).thenReturn(inputStream);
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
-        underTest = new ClientNumberProducer(mockSocket1, sharedNumberQueue, mockTerminateSignalSender);
+        NumberQueue sharedNumberQueue = new IntRingBuffer(1024);
+        underTest = new ClientNumberProducer(mockSocket1, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
 
         Thread readerThread = new Thread(underTest::doRun);
         readerThread.start();
@@ -53,8 +54,7 @@ public class ClientNumberProducerTest {
         readerThread.join();
         inputStream.close();
 
-        assertEquals(1, sharedNumberQueue.size());
-        assertEquals(123456789, sharedNumberQueue.poll());
+        assertArrayEquals(new int[] {123456789}, drainQueue(sharedNumberQueue));
         verify(mockTerminateSignalSender, times(0)).signalServerStop();
         verify(mockSocket1, times(1)).close();
     }
@@ -64,8 +64,8 @@ public class ClientNumberProducerTest {
         ByteArrayInputStream inputStream = buildInputSequenceForStream("12345678");
         when(mockSocket1.getInputStream()).thenReturn(inputStream);
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
-        underTest = new ClientNumberProducer(mockSocket1, sharedNumberQueue, mockTerminateSignalSender);
+        NumberQueue sharedNumberQueue = new IntRingBuffer(1024);
+        underTest = new ClientNumberProducer(mockSocket1, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
 
         Thread readerThread = new Thread(underTest::doRun);
         readerThread.start();
@@ -83,8 +83,8 @@ public class ClientNumberProducerTest {
         ByteArrayInputStream inputStream = buildInputSequenceForStream("12345678x");
         when(mockSocket1.getInputStream()).thenReturn(inputStream);
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
-        underTest = new ClientNumberProducer(mockSocket1, sharedNumberQueue, mockTerminateSignalSender);
+        NumberQueue sharedNumberQueue = new IntRingBuffer(1024);
+        underTest = new ClientNumberProducer(mockSocket1, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
 
         Thread readerThread = new Thread(underTest::doRun);
         readerThread.start();
@@ -102,8 +102,8 @@ public class ClientNumberProducerTest {
         ByteArrayInputStream inputStream = buildInputSequenceForStream("terminate");
         when(mockSocket1.getInputStream()).thenReturn(inputStream);
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
-        underTest = new ClientNumberProducer(mockSocket1, sharedNumberQueue, mockTerminateSignalSender);
+        NumberQueue sharedNumberQueue = new IntRingBuffer(1024);
+        underTest = new ClientNumberProducer(mockSocket1, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
 
         Thread readerThread = new Thread(underTest::doRun);
         readerThread.start();
@@ -121,8 +121,8 @@ public class ClientNumberProducerTest {
         ByteArrayInputStream inputStream = buildInputSequenceForStream("123456789", "000111222", "123x", "333333333");
         when(mockSocket1.getInputStream()).thenReturn(inputStream);
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
-        underTest = new ClientNumberProducer(mockSocket1, sharedNumberQueue, mockTerminateSignalSender);
+        NumberQueue sharedNumberQueue = new IntRingBuffer(1024);
+        underTest = new ClientNumberProducer(mockSocket1, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
 
         Thread readerThread = new Thread(underTest::doRun);
         readerThread.start();
@@ -130,9 +130,7 @@ public class ClientNumberProducerTest {
         readerThread.join();
         inputStream.close();
 
-        assertEquals(2, sharedNumberQueue.size());
-        assertEquals(123456789, sharedNumberQueue.poll());
-        assertEquals(111222, sharedNumberQueue.poll());
+        assertArrayEquals(new int[] {123456789, 111222}, drainQueue(sharedNumberQueue));
         verify(mockTerminateSignalSender, times(0)).signalServerStop();
         verify(mockSocket1, times(1)).close();
     }
@@ -155,13 +153,13 @@ public class ClientNumberProducerTest {
         ByteArrayInputStream inputStream5 = buildInputSequenceForStream("800800800");
         when(mockSocket5.getInputStream()).thenReturn(inputStream5);
 
-        Queue<Integer> sharedNumberQueue = new ConcurrentLinkedQueue<>();
+        NumberQueue sharedNumberQueue = new IntRingBuffer(1024);
 
-        ClientNumberProducer inputReader1 = new ClientNumberProducer(mockSocket1, sharedNumberQueue, mockTerminateSignalSender);
-        ClientNumberProducer inputReader2 = new ClientNumberProducer(mockSocket2, sharedNumberQueue, mockTerminateSignalSender);
-        ClientNumberProducer inputReader3 = new ClientNumberProducer(mockSocket3, sharedNumberQueue, mockTerminateSignalSender);
-        ClientNumberProducer inputReader4 = new ClientNumberProducer(mockSocket4, sharedNumberQueue, mockTerminateSignalSender);
-        ClientNumberProducer inputReader5 = new ClientNumberProducer(mockSocket5, sharedNumberQueue, mockTerminateSignalSender);
+        ClientNumberProducer inputReader1 = new ClientNumberProducer(mockSocket1, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
+        ClientNumberProducer inputReader2 = new ClientNumberProducer(mockSocket2, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
+        ClientNumberProducer inputReader3 = new ClientNumberProducer(mockSocket3, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
+        ClientNumberProducer inputReader4 = new ClientNumberProducer(mockSocket4, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
+        ClientNumberProducer inputReader5 = new ClientNumberProducer(mockSocket5, new NumberPublisher(sharedNumberQueue), mockTerminateSignalSender);
 
         Thread inputThread1 = new Thread(inputReader1::doRun);
         Thread inputThread2 = new Thread(inputReader2::doRun);
@@ -196,6 +194,12 @@ public class ClientNumberProducerTest {
         verify(mockTerminateSignalSender, times(0)).signalServerStop();
     }
 
+    private int[] drainQueue(NumberQueue queue) {
+        int[] numbers = new int[queue.size()];
+        assertEquals(numbers.length, queue.drainTo(numbers, 0, numbers.length));
+        return numbers;
+    }
+
     private ByteArrayInputStream buildInputSequenceForStream(String...inputs) {
         StringBuilder builder = new StringBuilder();
         for(String input : inputs) {
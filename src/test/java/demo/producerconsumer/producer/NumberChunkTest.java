@@ -0,0 +1,47 @@
+package demo.producerconsumer.producer;
+
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.queue.ShardRouter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NumberChunkTest {
+
+    @Test
+    public void testRetainUnique() {
+        NumberChunk underTest = new NumberChunk(8);
+        int[] input = {5, 7, 5, 9, 7, 1};
+        for (int number : input) {
+            underTest.accept(number);
+        }
+
+        assertEquals(2, underTest.retainUnique(new UniqueDataScreenerMarkerImpl(10)));
+        assertEquals(4, underTest.getLength());
+        assertArrayEquals(new int[] {5, 7, 9, 1}, Arrays.copyOf(underTest.getNumbers(), 4));
+    }
+
+    @Test
+    public void testPartition() {
+        NumberChunk underTest = new NumberChunk(8);
+        // Shards of 0-33, 34-67, 68-99
+        ShardRouter shardRouter = new ShardRouter(3, 99);
+        int[] input = {70, 10, 40, 99, 0, 41, 5};
+        for (int number : input) {
+            underTest.accept(number);
+        }
+
+        int[] shardEnds = underTest.partition(shardRouter);
+        assertArrayEquals(new int[] {3, 5, 7}, shardEnds);
+        assertEquals(7, underTest.getLength());
+        assertArrayEquals(new int[] {10, 0, 5, 40, 41, 70, 99}, Arrays.copyOf(underTest.getNumbers(), 7));
+
+        // The chunk can be reused after partitioning
+        underTest.clear();
+        underTest.accept(50);
+        assertArrayEquals(new int[] {0, 1, 1}, underTest.partition(shardRouter));
+        assertEquals(50, underTest.getNumbers()[0]);
+    }
+}
@@ -0,0 +1,103 @@
+package demo.producerconsumer.producer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NumberInputParserTest {
+
+    private final List<Integer> parsedNumbers = new ArrayList<>();
+
+    private final NumberInputParser underTest = new NumberInputParser(parsedNumbers::add);
+
+    @Test
+    public void testValidNumbers() {
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("123456789\n000111222\n"));
+
+        assertEquals(2, parsedNumbers.size());
+        assertEquals(123456789, parsedNumbers.get(0));
+        assertEquals(111222, parsedNumbers.get(1));
+    }
+
+    @Test
+    public void testLineSeparators() {
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("111111111\r\n222222222\r333333333\n"));
+
+        assertEquals(3, parsedNumbers.size());
+        assertEquals(333333333, parsedNumbers.get(2));
+    }
+
+    @Test
+    public void testRecordSplitAcrossReads() {
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("1234"));
+        assertTrue(parsedNumbers.isEmpty());
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("56789\r"));
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("\n987654321\n"));
+
+        assertEquals(2, parsedNumbers.size());
+        assertEquals(123456789, parsedNumbers.get(0));
+        assertEquals(987654321, parsedNumbers.get(1));
+    }
+
+    @Test
+    public void testInvalidLength() {
+        assertEquals(NumberInputParser.Status.INVALID, parse("12345678\n"));
+        assertTrue(parsedNumbers.isEmpty());
+    }
+
+    @Test
+    public void testTooLong() {
+        assertEquals(NumberInputParser.Status.INVALID, parse("1234567890\n"));
+        assertTrue(parsedNumbers.isEmpty());
+    }
+
+    @Test
+    public void testInvalidChars() {
+        assertEquals(NumberInputParser.Status.INVALID, parse("111111111\n12345678x\n222222222\n"));
+
+        assertEquals(1, parsedNumbers.size());
+        assertEquals(111111111, parsedNumbers.get(0));
+    }
+
+    @Test
+    public void testEmptyLine() {
+        assertEquals(NumberInputParser.Status.INVALID, parse("\n"));
+    }
+
+    @Test
+    public void testTerminate() {
+        assertEquals(NumberInputParser.Status.TERMINATE, parse("123456789\nTerMINate\n555555555\n"));
+
+        assertEquals(1, parsedNumbers.size());
+    }
+
+    @Test
+    public void testPartialTerminate() {
+        assertEquals(NumberInputParser.Status.INVALID, parse("terminat\n"));
+    }
+
+    @Test
+    public void testEndOfInput() {
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("123456789\n987654321"));
+        assertEquals(NumberInputParser.Status.INVALID, underTest.endOfInput());
+
+        assertEquals(2, parsedNumbers.size());
+        assertEquals(987654321, parsedNumbers.get(1));
+    }
+
+    @Test
+    public void testTerminateAtEndOfInput() {
+        assertEquals(NumberInputParser.Status.CONTINUE, parse("terminate"));
+        assertEquals(NumberInputParser.Status.TERMINATE, underTest.endOfInput());
+    }
+
+    private NumberInputParser.Status parse(String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.US_ASCII);
+        return underTest.parse(bytes, 0, bytes.length);
+    }
+}
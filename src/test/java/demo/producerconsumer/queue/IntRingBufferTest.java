@@ -0,0 +1,144 @@
+package demo.producerconsumer.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntRingBufferTest {
+
+    @Test
+    public void testOfferAndDrain() {
+        IntRingBuffer underTest = new IntRingBuffer(8);
+        assertTrue(underTest.isEmpty());
+
+        assertTrue(underTest.offer(123456789));
+        assertTrue(underTest.offer(0));
+        assertTrue(underTest.offer(999999999));
+        assertEquals(3, underTest.size());
+
+        int[] drained = new int[8];
+        assertEquals(3, underTest.drainTo(drained, 0, drained.length));
+        assertEquals(123456789, drained[0]);
+        assertEquals(0, drained[1]);
+        assertEquals(999999999, drained[2]);
+        assertTrue(underTest.isEmpty());
+        assertEquals(0, underTest.drainTo(drained, 0, drained.length));
+    }
+
+    @Test
+    public void testFull() {
+        IntRingBuffer underTest = new IntRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(underTest.offer(i));
+        }
+        assertFalse(underTest.offer(4));
+        assertEquals(4, underTest.size());
+
+        int[] drained = new int[4];
+        assertEquals(1, underTest.drainTo(drained, 0, 1));
+        assertTrue(underTest.offer(4));
+        assertFalse(underTest.offer(5));
+    }
+
+    @Test
+    public void testOfferBatch() {
+        IntRingBuffer underTest = new IntRingBuffer(8);
+        int[] numbers = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        assertEquals(3, underTest.offerBatch(numbers, 0, 3));
+        // Only 5 slots are left, so only the start of the batch is added
+        assertEquals(5, underTest.offerBatch(numbers, 3, 7));
+        assertEquals(0, underTest.offerBatch(numbers, 8, 2));
+
+        int[] drained = new int[8];
+        assertEquals(8, underTest.drainTo(drained, 0, drained.length));
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5, 6, 7, 8}, drained);
+
+        assertEquals(2, underTest.offerBatch(numbers, 8, 2));
+        assertEquals(2, underTest.drainTo(drained, 0, drained.length));
+        assertEquals(9, drained[0]);
+        assertEquals(10, drained[1]);
+    }
+
+    @Test
+    public void testWrapAround() {
+        IntRingBuffer underTest = new IntRingBuffer(4);
+        int[] drained = new int[3];
+        for (int round = 0; round < 10; round++) {
+            assertTrue(underTest.offer(round * 3));
+            assertTrue(underTest.offer(round * 3 + 1));
+            assertTrue(underTest.offer(round * 3 + 2));
+            assertEquals(3, underTest.drainTo(drained, 0, drained.length));
+            assertArrayEquals(new int[] {round * 3, round * 3 + 1, round * 3 + 2}, drained);
+        }
+    }
+
+    @Test
+    public void testIllegalCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new IntRingBuffer(0));
+        assertThrows(IllegalArgumentException.class, () -> new IntRingBuffer(1000));
+    }
+
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        IntRingBuffer underTest = new IntRingBuffer(64);
+        int numProducers = 5;
+        int numbersPerProducer = 100000;
+
+        Thread[] producers = new Thread[numProducers];
+        for (int p = 0; p < numProducers; p++) {
+            int firstNumber = p * numbersPerProducer;
+            producers[p] = new Thread(() -> {
+                // Mix single offers with batches of varying size
+                int[] batch = new int[7];
+                int i = 0;
+                while (i < numbersPerProducer) {
+                    if (i % 3 == 0) {
+                        while (!underTest.offer(firstNumber + i)) {
+                            Thread.yield();
+                        }
+                        i++;
+                        continue;
+                    }
+                    int batchLength = Math.min(1 + i % batch.length, numbersPerProducer - i);
+                    for (int b = 0; b < batchLength; b++) {
+                        batch[b] = firstNumber + i + b;
+                    }
+                    int offered = 0;
+                    while (offered < batchLength) {
+                        offered += underTest.offerBatch(batch, offered, batchLength - offered);
+                        Thread.yield();
+                    }
+                    i += batchLength;
+                }
+            });
+            producers[p].start();
+        }
+
+        // Every number must come out exactly once, and in order for each producer
+        boolean[] seen = new boolean[numProducers * numbersPerProducer];
+        int[] lastSeen = new int[numProducers];
+        Arrays.fill(lastSeen, -1);
+        int[] drained = new int[16];
+        int total = 0;
+        while (total < seen.length) {
+            int count = underTest.drainTo(drained, 0, drained.length);
+            for (int i = 0; i < count; i++) {
+                int number = drained[i];
+                assertFalse(seen[number]);
+                seen[number] = true;
+                int producer = number / numbersPerProducer;
+                assertTrue(number > lastSeen[producer]);
+                lastSeen[producer] = number;
+            }
+            total += count;
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(underTest.isEmpty());
+    }
+}
@@ -0,0 +1,36 @@
+package demo.producerconsumer.queue;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    @Test
+    public void testSlicesCoverRange() {
+        ShardRouter underTest = new ShardRouter(3, 999999999);
+        assertEquals(0, underTest.firstValue(0));
+        assertEquals(999999999, underTest.lastValue(2));
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(shard, underTest.shardOf(underTest.firstValue(shard)));
+            assertEquals(shard, underTest.shardOf(underTest.lastValue(shard)));
+            if (shard > 0) {
+                assertEquals(underTest.lastValue(shard - 1) + 1, underTest.firstValue(shard));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleShard() {
+        ShardRouter underTest = new ShardRouter(1, 999999999);
+        assertEquals(0, underTest.shardOf(0));
+        assertEquals(0, underTest.shardOf(999999999));
+        assertEquals(999999999, underTest.lastValue(0));
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(2, -1));
+    }
+}
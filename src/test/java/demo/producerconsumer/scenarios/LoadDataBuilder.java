@@ -0,0 +1,147 @@
+package demo.producerconsumer.scenarios;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Builds the input a load generator connection sends, encoded up front as ASCII records of 9 digits
+ * and a newline, so that sending it is only a matter of writing bytes. The digits are written straight
+ * into the byte array, rather than formatting a String for every number.
+ *
+ * Numbers are drawn from the distribution, then a given fraction of them are replaced by a repeat of a
+ * recent number from the same connection, and a given fraction of records are replaced by an invalid
+ * record. The server disconnects a client after an invalid record, so the position after each invalid
+ * record is noted, for the connection to reconnect there.
+ */
+public class LoadDataBuilder {
+    public enum Distribution {
+        // Consecutive numbers from a slice of the range that belongs to the connection
+        SEQUENTIAL,
+        // Uniform over the whole range
+        UNIFORM,
+        // A few numbers are far more common than the rest, spread across the whole range
+        ZIPFIAN
+    }
+
+    public static final int RECORD_LENGTH = 10;
+    static final int MAX_VALUE = 999999999;
+    // Records the server must reject: the right length, but not all digits and not "terminate"
+    private static final byte[] INVALID_RECORD = {'1', '2', '3', '4', '5', '6', '7', '8', 'x', '\n'};
+    private static final int RECENT_NUMBERS = 4096;
+    private static final long ZIPFIAN_ITEMS = 10_000_000L;
+    private static final double ZIPFIAN_THETA = 0.99;
+    // Coprime with 10^9, so multiplying by it modulo 10^9 spreads the Zipfian ranks across the range
+    // without mapping two ranks to the same number
+    private static final long RANK_SCRAMBLE = 0x9E3779B1L;
+
+    private static ZipfianGenerator zipfianGenerator;
+
+    private final Distribution distribution;
+    private final double duplicateRatio;
+    private final double invalidRatio;
+
+    /**
+     * @param duplicateRatio: Fraction of numbers, from 0 to 1, that repeat a recent number
+     * @param invalidRatio: Fraction of records, from 0 to 1, that are invalid
+     */
+    public LoadDataBuilder(Distribution distribution, double duplicateRatio, double invalidRatio) {
+        this.distribution = distribution;
+        this.duplicateRatio = duplicateRatio;
+        this.invalidRatio = invalidRatio;
+        if (distribution == Distribution.ZIPFIAN) {
+            getZipfianGenerator();
+        }
+    }
+
+    private static synchronized ZipfianGenerator getZipfianGenerator() {
+        // Summing the terms for every item takes a while, so it is only done once for all connections
+        if (zipfianGenerator == null) {
+            zipfianGenerator = new ZipfianGenerator(ZIPFIAN_ITEMS, ZIPFIAN_THETA);
+        }
+        return zipfianGenerator;
+    }
+
+    /**
+     * Encoded input for one connection, and the positions its connection has to reconnect at.
+     */
+    public static class LoadData {
+        private final byte[] records;
+        private final int[] invalidRecordEnds;
+
+        LoadData(byte[] records, int[] invalidRecordEnds) {
+            this.records = records;
+            this.invalidRecordEnds = invalidRecordEnds;
+        }
+
+        public byte[] getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the position just after each invalid record, in ascending order
+         */
+        public int[] getInvalidRecordEnds() {
+            return invalidRecordEnds;
+        }
+    }
+
+    /**
+     * @param connection: Index of the connection, which decides its slice of the range for sequential numbers
+     * @param connections: Number of connections the range is split between
+     * @param recordCount: Number of records to encode
+     */
+    public LoadData build(int connection, int connections, int recordCount, long seed) {
+        Random random = new Random(seed + connection);
+        byte[] records = new byte[recordCount * RECORD_LENGTH];
+        int[] invalidRecordEnds = new int[16];
+        int invalidRecords = 0;
+        int[] recent = new int[RECENT_NUMBERS];
+        int recentCount = 0;
+
+        long sliceSize = (MAX_VALUE + 1L) / connections;
+        long sliceStart = sliceSize * connection;
+        long sequence = 0;
+        for (int record = 0; record < recordCount; record++) {
+            int position = record * RECORD_LENGTH;
+            if (invalidRatio > 0 && random.nextDouble() < invalidRatio) {
+                System.arraycopy(INVALID_RECORD, 0, records, position, RECORD_LENGTH);
+                if (invalidRecords == invalidRecordEnds.length) {
+                    invalidRecordEnds = Arrays.copyOf(invalidRecordEnds, invalidRecords * 2);
+                }
+                invalidRecordEnds[invalidRecords++] = position + RECORD_LENGTH;
+                continue;
+            }
+
+            int number;
+            if (recentCount > 0 && duplicateRatio > 0 && random.nextDouble() < duplicateRatio) {
+                number = recent[random.nextInt(Math.min(recentCount, RECENT_NUMBERS))];
+            }
+            else {
+                switch (distribution) {
+                    case SEQUENTIAL:
+                        number = (int) (sliceStart + sequence++ % sliceSize);
+                        break;
+                    case UNIFORM:
+                        number = random.nextInt(MAX_VALUE + 1);
+                        break;
+                    default:
+                        long rank = getZipfianGenerator().next(random);
+                        number = (int) (rank * RANK_SCRAMBLE % (MAX_VALUE + 1L));
+                        break;
+                }
+                recent[recentCount++ % RECENT_NUMBERS] = number;
+            }
+            encode(number, records, position);
+        }
+        return new LoadData(records, Arrays.copyOf(invalidRecordEnds, invalidRecords));
+    }
+
+    private static void encode(int number, byte[] records, int position) {
+        int remaining = number;
+        for (int digit = RECORD_LENGTH - 2; digit >= 0; digit--) {
+            records[position + digit] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        records[position + RECORD_LENGTH - 1] = '\n';
+    }
+}
@@ -0,0 +1,453 @@
+package demo.producerconsumer.scenarios;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates load on the server from any number of connections, either at a target rate or as fast as the
+ * server accepts it. The input of every connection is built and encoded before any is sent, then sender
+ * threads write it through non-blocking channels, each thread serving its share of the connections with
+ * one selector. Since a channel only accepts what fits in the socket's send buffer, the generator never
+ * sends faster than the server reads, so it measures the rate the server sustains rather than queueing
+ * up input in the generator.
+ *
+ * The options are given as name=value, in any order, after the scenario name:
+ * @param host: Server to connect to (default localhost)
+ * @param port: Port the server listens on (default 4000)
+ * @param connections: Number of connections to send from (default 5)
+ * @param threads: Number of sender threads the connections are shared between, at most the connections and
+ *               any rate (default 1)
+ * @param numbers: Records to build for each connection (default 2000000)
+ * @param rate: Target records per second over all connections, or 0 to send as fast as possible (default 0)
+ * @param seconds: Keep sending for this many seconds, starting the input again when it runs out, or 0 to
+ *               send the input once (default 0)
+ * @param distribution: sequential, uniform or zipfian (default sequential)
+ * @param duplicates: Fraction of numbers that repeat a recent number from the same connection (default 0)
+ * @param invalid: Fraction of records that are invalid, after each of which the server disconnects the
+ *               client and the connection reconnects (default 0)
+ * @param seed: Seed for the random numbers (default 1)
+ * @param metricsPort: Port of the server's metrics endpoint, to report the rate the server received
+ *               numbers at, or 0 to not report it (default 0). The endpoint only listens on the loopback
+ *               address, so this only works with a local server.
+ * @param terminate: Send terminate when done (default false)
+ */
+public class LoadGeneratorScenario {
+    private static final long REPORT_INTERVAL_MS = 1000;
+    // The server is taken to be done with the input once its received count stops changing for this long
+    private static final long SERVER_IDLE_MS = 2000;
+    private static final long SERVER_DRAIN_TIMEOUT_MS = 60000;
+    private static final long PACING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final String NUMBERS_RECEIVED_METRIC = "producerconsumer_numbers_received_total";
+
+    private String host = NumberCreatorSimulator.DEFAULT_SERVERIP;
+    private int port = 4000;
+    private int connections = 5;
+    private int threads = 1;
+    private int numbers = 2000000;
+    private long rate = 0;
+    private long seconds = 0;
+    private LoadDataBuilder.Distribution distribution = LoadDataBuilder.Distribution.SEQUENTIAL;
+    private double duplicates = 0;
+    private double invalid = 0;
+    private long seed = 1;
+    private int metricsPort = 0;
+    private boolean terminate = false;
+
+    public void runScenario(String[] args) throws InterruptedException, IOException {
+        parseOptions(args);
+        InetSocketAddress serverAddress = new InetSocketAddress(host, port);
+
+        System.out.println("Building " + numbers + " " + distribution.name().toLowerCase(Locale.ROOT)
+                + " records for each of " + connections + " connections");
+        LoadDataBuilder dataBuilder = new LoadDataBuilder(distribution, duplicates, invalid);
+        List<List<Connection>> connectionsPerSender = new ArrayList<>();
+        for (int sender = 0; sender < threads; sender++) {
+            connectionsPerSender.add(new ArrayList<>());
+        }
+        for (int connection = 0; connection < connections; connection++) {
+            LoadDataBuilder.LoadData data = dataBuilder.build(connection, connections, numbers, seed);
+            connectionsPerSender.get(connection % threads).add(new Connection(serverAddress, data));
+        }
+
+        long serverStartCount = readNumbersReceived();
+        long deadlineNanos = seconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds) : Long.MAX_VALUE;
+        List<Sender> senders = new ArrayList<>();
+        for (int sender = 0; sender < threads; sender++) {
+            // Split the rate so the shares add up to it exactly
+            long senderRate = rate * (sender + 1) / threads - rate * sender / threads;
+            senders.add(new Sender(connectionsPerSender.get(sender), senderRate, deadlineNanos));
+        }
+
+        System.out.println("Sending from " + connections + " connections on " + threads + " threads"
+                + (rate > 0 ? " at " + rate + " numbers/s" : " as fast as possible"));
+        long startNanos = System.nanoTime();
+        for (Sender sender : senders) {
+            sender.start();
+        }
+        long lastSent = 0;
+        long lastServerCount = serverStartCount;
+        while (isAnyAlive(senders)) {
+            joinAll(senders, REPORT_INTERVAL_MS);
+            long sent = getRecordsSent(senders);
+            if (sent == lastSent && !isAnyAlive(senders)) {
+                break;
+            }
+            long serverCount = readNumbersReceived();
+            System.out.println("Sent " + (sent - lastSent) + " records"
+                    + (serverCount >= 0 ? ", server received " + (serverCount - lastServerCount) + " numbers" : ""));
+            lastSent = sent;
+            lastServerCount = serverCount;
+        }
+        long sendNanos = System.nanoTime() - startNanos;
+
+        long sent = getRecordsSent(senders);
+        long reconnects = 0;
+        for (Sender sender : senders) {
+            reconnects += sender.reconnects;
+        }
+        System.out.println("Sent " + sent + " records in " + formatSeconds(sendNanos) + ": "
+                + formatRate(sent, sendNanos) + " records/s, "
+                + formatRate(sent * LoadDataBuilder.RECORD_LENGTH / 1_000_000.0, sendNanos) + " MB/s"
+                + (invalid > 0 ? ", " + reconnects + " reconnects after invalid records" : ""));
+        reportServerThroughput(serverStartCount, startNanos);
+
+        if (terminate) {
+            System.out.println("Sending terminate command");
+            try (Socket clientSocket = new Socket(host, port)) {
+                OutputStream out = clientSocket.getOutputStream();
+                out.write(("terminate" + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+        }
+    }
+
+    private void parseOptions(String[] args) {
+        // The first argument is the scenario name
+        for (int i = 1; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Load generator options must be given as name=value: " + args[i]);
+            }
+            String name = args[i].substring(0, separator);
+            String value = args[i].substring(separator + 1);
+            switch (name) {
+                case "host": host = value; break;
+                case "port": port = Integer.parseInt(value); break;
+                case "connections": connections = Integer.parseInt(value); break;
+                case "threads": threads = Integer.parseInt(value); break;
+                case "numbers": numbers = Integer.parseInt(value); break;
+                case "rate": rate = Long.parseLong(value); break;
+                case "seconds": seconds = Long.parseLong(value); break;
+                case "distribution":
+                    distribution = LoadDataBuilder.Distribution.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "duplicates": duplicates = Double.parseDouble(value); break;
+                case "invalid": invalid = Double.parseDouble(value); break;
+                case "seed": seed = Long.parseLong(value); break;
+                case "metricsPort": metricsPort = Integer.parseInt(value); break;
+                case "terminate": terminate = Boolean.parseBoolean(value); break;
+                default: throw new IllegalArgumentException("Unknown load generator option: " + name);
+            }
+        }
+        if (connections < 1 || threads < 1 || numbers < 1 || rate < 0 || seconds < 0
+                || (long) numbers * LoadDataBuilder.RECORD_LENGTH > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Load generator needs at least 1 connection, thread and number, "
+                    + "at most " + Integer.MAX_VALUE / LoadDataBuilder.RECORD_LENGTH + " numbers per connection, "
+                    + "and a rate and seconds of at least 0");
+        }
+        threads = Math.min(threads, connections);
+        // Each sender needs a share of at least 1 record per second, or it would send without a limit
+        if (rate > 0 && rate < threads) {
+            System.out.println("Using " + rate + " threads, so each sends at least 1 of the " + rate + " numbers/s");
+            threads = (int) rate;
+        }
+    }
+
+    /**
+     * Wait for the server to stop receiving numbers, then report the rate it received them at, from the
+     * start of sending to the last time its count changed.
+     */
+    private void reportServerThroughput(long serverStartCount, long startNanos) throws InterruptedException {
+        if (serverStartCount < 0) {
+            if (metricsPort > 0) {
+                System.out.println("Could not read the server's metrics on port " + metricsPort);
+            }
+            return;
+        }
+        long lastCount = readNumbersReceived();
+        long lastChangeNanos = System.nanoTime();
+        long drainDeadline = lastChangeNanos + TimeUnit.MILLISECONDS.toNanos(SERVER_DRAIN_TIMEOUT_MS);
+        while (System.nanoTime() - lastChangeNanos < TimeUnit.MILLISECONDS.toNanos(SERVER_IDLE_MS)
+                && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+            long count = readNumbersReceived();
+            if (count != lastCount) {
+                lastCount = count;
+                lastChangeNanos = System.nanoTime();
+            }
+        }
+        long received = lastCount - serverStartCount;
+        long receiveNanos = lastChangeNanos - startNanos;
+        System.out.println("Server received " + received + " numbers in " + formatSeconds(receiveNanos) + ": "
+                + formatRate(received, receiveNanos) + " numbers/s");
+    }
+
+    /**
+     * @return the numbers the server has received, from its metrics endpoint, or -1 if it is not known
+     */
+    private long readNumbersReceived() {
+        if (metricsPort <= 0) {
+            return -1;
+        }
+        try (Socket socket = new Socket(host, metricsPort)) {
+            socket.setSoTimeout((int) REPORT_INTERVAL_MS);
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            // The server closes the connection after the response
+            InputStream in = socket.getInputStream();
+            StringBuilder response = new StringBuilder();
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) >= 0) {
+                response.append(new String(buffer, 0, bytesRead, StandardCharsets.US_ASCII));
+            }
+            for (String line : response.toString().split("\n")) {
+                if (line.startsWith(NUMBERS_RECEIVED_METRIC + " ")) {
+                    return Long.parseLong(line.substring(NUMBERS_RECEIVED_METRIC.length() + 1).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
+    private static boolean isAnyAlive(List<Sender> senders) {
+        for (Sender sender : senders) {
+            if (sender.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void joinAll(List<Sender> senders, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Sender sender : senders) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return;
+            }
+            sender.join(remaining);
+        }
+    }
+
+    private static long getRecordsSent(List<Sender> senders) {
+        long bytesSent = 0;
+        for (Sender sender : senders) {
+            bytesSent += sender.bytesSent.get();
+        }
+        return bytesSent / LoadDataBuilder.RECORD_LENGTH;
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.2f s", nanos / 1e9);
+    }
+
+    private static String formatRate(double amount, long nanos) {
+        return String.format(Locale.ROOT, "%.0f", nanos > 0 ? amount * 1e9 / nanos : 0);
+    }
+
+    /**
+     * One connection to the server and the encoded input it sends. The input is split into segments that
+     * each end with an invalid record or the end of the input. The connection is closed after sending a
+     * segment, since the server disconnects the client after an invalid record, and a new one is opened
+     * for the next segment.
+     */
+    private static class Connection {
+        private final InetSocketAddress serverAddress;
+        private final ByteBuffer records;
+        private final int[] segmentEnds;
+        private final int invalidRecords;
+        private int segment;
+        private SocketChannel channel;
+
+        Connection(InetSocketAddress serverAddress, LoadDataBuilder.LoadData data) {
+            this.serverAddress = serverAddress;
+            byte[] encoded = data.getRecords();
+            // A direct buffer is written to the socket without first being copied to native memory
+            this.records = ByteBuffer.allocateDirect(encoded.length);
+            this.records.put(encoded).flip();
+            int[] invalidRecordEnds = data.getInvalidRecordEnds();
+            this.invalidRecords = invalidRecordEnds.length;
+            if (invalidRecordEnds.length > 0 && invalidRecordEnds[invalidRecordEnds.length - 1] == encoded.length) {
+                this.segmentEnds = invalidRecordEnds;
+            }
+            else {
+                this.segmentEnds = Arrays.copyOf(invalidRecordEnds, invalidRecordEnds.length + 1);
+                this.segmentEnds[invalidRecordEnds.length] = encoded.length;
+            }
+        }
+
+        void connect(Selector selector) throws IOException {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(serverAddress)) {
+                channel.register(selector, SelectionKey.OP_WRITE, this);
+            }
+            else {
+                channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        /**
+         * Write up to maxBytes of the current segment.
+         * @return the number of bytes written
+         */
+        int write(long maxBytes) throws IOException {
+            int position = records.position();
+            records.limit(position + (int) Math.min(segmentEnds[segment] - position, maxBytes));
+            return channel.write(records);
+        }
+
+        boolean isSegmentSent() {
+            return records.position() == segmentEnds[segment];
+        }
+
+        boolean isSegmentInvalid() {
+            return segment < invalidRecords;
+        }
+
+        /**
+         * Move on to the next segment, going back to the start of the input after the last one if repeat
+         * is set.
+         * @return false if there are no more segments to send
+         */
+        boolean nextSegment(boolean repeat) {
+            segment++;
+            if (segment == segmentEnds.length) {
+                if (!repeat) {
+                    return false;
+                }
+                segment = 0;
+                records.position(0);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Writes the input of its connections as the channels accept it, spreading any rate limit evenly over
+     * time, until every connection has sent its input or the deadline has passed.
+     */
+    private static class Sender extends Thread {
+        private final List<Connection> connections;
+        private final long bytesPerSecond;
+        private final long deadlineNanos;
+        final AtomicLong bytesSent = new AtomicLong();
+        volatile long reconnects;
+
+        /**
+         * @param rate: Records per second to send over all connections, or 0 for no limit
+         */
+        Sender(List<Connection> connections, long rate, long deadlineNanos) {
+            super("load-sender");
+            this.connections = connections;
+            this.bytesPerSecond = rate * LoadDataBuilder.RECORD_LENGTH;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void run() {
+            boolean repeat = deadlineNanos != Long.MAX_VALUE;
+            try (Selector selector = Selector.open()) {
+                for (Connection connection : connections) {
+                    connection.connect(selector);
+                }
+                long startNanos = System.nanoTime();
+                long sent = 0;
+                while (!selector.keys().isEmpty() && System.nanoTime() < deadlineNanos) {
+                    long allowance = Long.MAX_VALUE;
+                    if (bytesPerSecond > 0) {
+                        allowance = (System.nanoTime() - startNanos) * bytesPerSecond / 1_000_000_000L - sent;
+                        if (allowance <= 0) {
+                            LockSupport.parkNanos(PACING_PARK_NANOS);
+                            continue;
+                        }
+                    }
+                    selector.select(REPORT_INTERVAL_MS);
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext() && allowance > 0) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        int written = send(selector, key, connection, repeat, allowance);
+                        sent += written;
+                        allowance -= written;
+                    }
+                    bytesSent.set(sent);
+                }
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private int send(Selector selector, SelectionKey key, Connection connection, boolean repeat, long allowance)
+                throws IOException {
+            int written;
+            try {
+                if (key.isConnectable()) {
+                    connection.channel.finishConnect();
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return 0;
+                }
+                written = connection.write(allowance);
+            } catch (IOException e) {
+                // Each segment ends with the only record the server disconnects for, so losing the
+                // connection before that means the server is gone
+                System.out.println("Lost connection to the server: " + e.getMessage());
+                connection.close();
+                return 0;
+            }
+            if (connection.isSegmentSent()) {
+                boolean reconnect = connection.isSegmentInvalid();
+                if (!connection.nextSegment(repeat)) {
+                    connection.close();
+                }
+                else if (reconnect) {
+                    connection.close();
+                    reconnects++;
+                    connection.connect(selector);
+                }
+            }
+            return written;
+        }
+    }
+}
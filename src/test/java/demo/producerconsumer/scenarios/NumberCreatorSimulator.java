@@ -16,6 +16,10 @@ public class NumberCreatorSimulator {
             System.out.println("Running endurance test with single producer");
             new EnduranceTestSingleProducerScenario().runScenario(args);
         }
+        else if (scenario.equalsIgnoreCase("load")) {
+            System.out.println("Running load generator");
+            new LoadGeneratorScenario().runScenario(args);
+        }
         else {
             System.out.println("Running basic scenario test");
             new BasicTestScenario().runScenario(args);
@@ -0,0 +1,52 @@
+package demo.producerconsumer.scenarios;
+
+import java.util.Random;
+
+/**
+ * Draws ranks from 0 to items - 1 with a Zipfian distribution, so that rank 0 is drawn most often and
+ * each rank after it less often, using the method from "Quickly Generating Billion-Record Synthetic
+ * Databases" (Gray et al.). Setting up the generator sums a term for every item, after which each draw
+ * takes constant time.
+ */
+public class ZipfianGenerator {
+    private final long items;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    /**
+     * @param items: Number of ranks to draw from
+     * @param theta: Skew of the distribution, between 0 and 1 (exclusive), where larger is more skewed
+     */
+    public ZipfianGenerator(long items, double theta) {
+        if (items < 2 || theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("ZipfianGenerator needs at least 2 items and a theta between 0 and 1");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1 / (1 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+
+    private static double zeta(long items, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= items; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    public long next(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+}
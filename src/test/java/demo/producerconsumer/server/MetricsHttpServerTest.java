@@ -0,0 +1,54 @@
+package demo.producerconsumer.server;
+
+import demo.producerconsumer.consumer.wait.BusySpinWaitStrategy;
+import demo.producerconsumer.consumer.wait.WaitStrategy;
+import demo.producerconsumer.data.UniqueDataScreenerMarkerImpl;
+import demo.producerconsumer.logging.NumberLogger;
+import demo.producerconsumer.metrics.PipelineMetrics;
+import demo.producerconsumer.metrics.ServerMetrics;
+import demo.producerconsumer.queue.IntRingBuffer;
+import demo.producerconsumer.queue.NumberQueue;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsHttpServerTest {
+    @Test
+    public void testScrape() throws IOException {
+        NumberLogger numberLogger = new NumberLogger(new ByteArrayOutputStream(), new UniqueDataScreenerMarkerImpl(1000), 10);
+        PipelineMetrics pipelineMetrics = new PipelineMetrics(new NumberLogger[] {numberLogger},
+                new NumberQueue[] {new IntRingBuffer(16)});
+        pipelineMetrics.openConnection("client").recordNumbers(3);
+        MetricsHttpServer underTest = new MetricsHttpServer(0, new ServerMetrics(new NumberLogger[] {numberLogger},
+                new WaitStrategy[] {new BusySpinWaitStrategy()}, null, null, pipelineMetrics));
+        underTest.start();
+        try {
+            String response = get(underTest.getPort(), "GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(response.contains("\nproducerconsumer_numbers_received_total 3\n"));
+
+            // Scrapes are answered one after another
+            assertTrue(get(underTest.getPort(), "GET /?name=x HTTP/1.0\r\n\r\n").startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(get(underTest.getPort(), "GET /other HTTP/1.1\r\n\r\n").startsWith("HTTP/1.1 404 Not Found\r\n"));
+        } finally {
+            underTest.receiveTerminateSignal();
+        }
+    }
+
+    private static String get(int port, String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(request.getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+            return IOUtils.toString(socket.getInputStream(), StandardCharsets.US_ASCII);
+        }
+    }
+}